@@ -80,11 +80,19 @@ dependencies {
     implementation("com.squareup.okhttp3:logging-interceptor:4.12.0")
     implementation("com.github.bumptech.glide:glide:4.12.0")
     annotationProcessor("com.github.bumptech.glide:compiler:4.12.0")
+    implementation("com.github.bumptech.glide:recyclerview-integration:4.12.0") {
+        isTransitive = false // uses the app's own Glide and RecyclerView
+    }
 
     //Room
     implementation("androidx.room:room-runtime:2.6.1")
     annotationProcessor("androidx.room:room-compiler:2.6.1")
 
+    //Paging
+    implementation("androidx.paging:paging-runtime:3.2.1")
+    implementation("androidx.paging:paging-guava:3.2.1")
+    implementation("com.google.guava:guava:32.1.3-android")
+
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
@@ -0,0 +1,30 @@
+package com.example.android_app;
+
+import android.app.Application;
+
+import com.example.android_app.data.network.ApiClient;
+import com.example.android_app.data.repository.DraftStore;
+import com.example.android_app.data.repository.RetentionManager;
+import com.example.android_app.data.repository.SendQueue;
+import com.example.android_app.utils.AppExecutors;
+
+// App-wide setup that has to happen before any screen makes a request.
+public class MailApplication extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        ApiClient.init(this);
+        RetentionManager.getInstance(this).trim(); // cached bodies back under budget after an update or budget change
+        DraftStore.getInstance(this).drain(); // drafts edited offline or just before the app was killed
+        SendQueue.getInstance(this).drain(); // mails sent offline or just before the app was killed
+    }
+
+    // the app just went to the background: a good moment to see how the shared executors did
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (BuildConfig.DEBUG && level == TRIM_MEMORY_UI_HIDDEN) {
+            AppExecutors.getInstance().logMetrics();
+        }
+    }
+}
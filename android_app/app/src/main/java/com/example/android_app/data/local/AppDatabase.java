@@ -2,28 +2,50 @@ package com.example.android_app.data.local;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
-import androidx.room.TypeConverters;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 // This class represents the AppDatabase which is the main database for the application.
 // It contains the entities and provides access to the DAOs. 
-@Database(entities = {MailEntity.class, UserEntity.class}, version = 3, exportSchema = false)
-@TypeConverters(LabelIdConverter.class)
+@Database(entities = {MailEntity.class, MailBodyEntity.class, MailFtsEntity.class, UserEntity.class, PendingOpEntity.class, LabelEntity.class, MailLabelEntity.class, DraftEntity.class, OutgoingMailEntity.class}, version = 14, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
     private static AppDatabase instance;
 
     public abstract MailDAO mailDao();
     public abstract UserDao userDao();
+    public abstract PendingOpDao pendingOpDao();
+    public abstract LabelDao labelDao();
+    public abstract DraftDao draftDao();
+    public abstract OutgoingMailDao outgoingMailDao();
 
     public static synchronized AppDatabase getInstance(Context context) {
         if (instance == null) {
             instance = Room.databaseBuilder(context.getApplicationContext(),
                             AppDatabase.class, "mail_database")
                     .fallbackToDestructiveMigration()
+                    .addCallback(new Callback() {
+                        @Override
+                        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                            createSearchTriggers(db);
+                        }
+                    })
                     .build();
         }
         return instance;
     }
+
+    // Keeps subject and sender of mail_fts in step with mail_headers. Created on every open (IF NOT
+    // EXISTS) so they come back after a destructive migration recreates the tables.
+    private static void createSearchTriggers(SupportSQLiteDatabase db) {
+        String sender = "coalesce(new.senderName, '') || ' ' || coalesce(new.`from`, '')";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS mail_fts_after_insert AFTER INSERT ON mail_headers BEGIN "
+                + "INSERT INTO mail_fts(docid, subject, sender) VALUES (new.rowid, new.subject, " + sender + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS mail_fts_after_update AFTER UPDATE OF subject, senderName, `from` ON mail_headers BEGIN "
+                + "UPDATE mail_fts SET subject = new.subject, sender = " + sender + " WHERE docid = new.rowid; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS mail_fts_after_delete AFTER DELETE ON mail_headers BEGIN "
+                + "DELETE FROM mail_fts WHERE docid = old.rowid; END");
+    }
 }
@@ -0,0 +1,7 @@
+package com.example.android_app.data.local;
+
+// One row of MailDAO.getEvictableBodiesNow: a cached body and the bytes it takes on disk.
+public class BodySize {
+    public String id;
+    public long size;
+}
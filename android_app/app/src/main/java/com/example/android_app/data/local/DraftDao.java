@@ -0,0 +1,52 @@
+package com.example.android_app.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+// Queries on the local drafts; see DraftEntity and DraftStore.
+@Dao
+public interface DraftDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(DraftEntity draft);
+
+    @Query("SELECT * FROM drafts WHERE localId = :localId")
+    DraftEntity getNow(String localId);
+
+    @Query("SELECT * FROM drafts WHERE serverId = :serverId")
+    DraftEntity getByServerIdNow(String serverId);
+
+    @Query("DELETE FROM drafts WHERE localId = :localId")
+    void delete(String localId);
+
+    // an edit: the new content goes out `nextAttemptAt`, unless another edit comes first
+    @Query("UPDATE drafts SET `to` = :to, subject = :subject, body = :body, version = version + 1, " +
+            "attempts = 0, nextAttemptAt = :nextAttemptAt WHERE localId = :localId")
+    void edit(String localId, String to, String subject, String body, long nextAttemptAt);
+
+    @Query("UPDATE drafts SET nextAttemptAt = 0 WHERE localId = :localId")
+    void sendNow(String localId);
+
+    @Query("SELECT * FROM drafts WHERE owner = :owner AND version > syncedVersion AND nextAttemptAt <= :now " +
+            "ORDER BY nextAttemptAt")
+    List<DraftEntity> getDueNow(String owner, long now);
+
+    @Query("SELECT MIN(nextAttemptAt) FROM drafts WHERE owner = :owner AND version > syncedVersion")
+    Long getNextAttemptAtNow(String owner);
+
+    // The server has `version` (and every edit before it) under serverId
+    @Query("UPDATE drafts SET serverId = :serverId, syncedVersion = MAX(syncedVersion, :version), attempts = 0 " +
+            "WHERE localId = :localId")
+    void markSynced(String localId, String serverId, long version);
+
+    // The server draft is gone: the next sync creates a new one. Only the id changes, so an edit saved
+    // while the request was out is kept, and nothing happens if the row already points elsewhere.
+    @Query("UPDATE drafts SET serverId = NULL WHERE localId = :localId AND serverId = :serverId")
+    void clearServerId(String localId, String serverId);
+
+    @Query("UPDATE drafts SET attempts = :attempts, nextAttemptAt = :nextAttemptAt WHERE localId = :localId")
+    void reschedule(String localId, int attempts, long nextAttemptAt);
+}
@@ -0,0 +1,32 @@
+package com.example.android_app.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// A draft being composed, saved on every edit (see DraftStore). The row exists before the server has
+// heard of the draft: localId is ours, serverId is filled in once the server created it. Each edit
+// bumps version; the server has everything up to syncedVersion, so a row with version > syncedVersion
+// still has to go out, at nextAttemptAt (pushed back on every edit, which debounces typing).
+@Entity(tableName = "drafts", indices = {
+        @Index(value = {"owner", "nextAttemptAt"}),
+        @Index(value = {"serverId"}, unique = true)
+})
+public class DraftEntity {
+    public static final String LOCAL_PREFIX = "draft-";
+
+    @PrimaryKey
+    @NonNull
+    public String localId = "";
+
+    public String serverId; // null until the server created the draft
+    public String owner;
+    public String to;
+    public String subject;
+    public String body;
+    public long version;
+    public long syncedVersion;
+    public int attempts;
+    public long nextAttemptAt; // ms since epoch
+}
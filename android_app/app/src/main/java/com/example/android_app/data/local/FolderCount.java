@@ -0,0 +1,11 @@
+package com.example.android_app.data.local;
+
+// One row of MailDAO.countByFolderNow: how many cached mails of an owner live in a folder, and how
+// many of those are sent by the owner, starred or important.
+public class FolderCount {
+    public String folder;
+    public int total;
+    public int sent;
+    public int starred;
+    public int important;
+}
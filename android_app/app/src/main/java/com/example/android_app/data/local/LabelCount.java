@@ -0,0 +1,9 @@
+package com.example.android_app.data.local;
+
+// One row of MailDAO.observeLabelCounts: how many of the owner's visible cached mails carry a label,
+// and how many of those are unread.
+public class LabelCount {
+    public String labelId;
+    public int total;
+    public int unread;
+}
@@ -0,0 +1,84 @@
+package com.example.android_app.data.local;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// Queries on the cached labels; see LabelEntity and LabelStore.
+@Dao
+public interface LabelDao {
+    @Query("SELECT * FROM labels WHERE owner = :owner ORDER BY position, id")
+    LiveData<List<LabelEntity>> observeLabels(String owner);
+
+    @Query("SELECT * FROM labels WHERE owner = :owner ORDER BY position, id")
+    List<LabelEntity> getLabelsNow(String owner);
+
+    @Query("SELECT * FROM labels WHERE id = :id")
+    LabelEntity getNow(String id);
+
+    @Query("SELECT COALESCE(MAX(position), -1) + 1 FROM labels WHERE owner = :owner")
+    int nextPositionNow(String owner);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(LabelEntity label);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<LabelEntity> labels);
+
+    @Query("UPDATE labels SET name = :name WHERE id = :id")
+    void rename(String id, String name);
+
+    @Query("UPDATE labels SET id = :serverId WHERE id = :localId")
+    void updateId(String localId, String serverId);
+
+    // The server created a label added here: its id replaces the temporary one. A refresh that landed
+    // first has already stored it under the server's id, and then the local row is only dropped.
+    @Transaction
+    default void replaceId(String localId, String serverId) {
+        if (getNow(serverId) != null) {
+            delete(localId);
+        } else {
+            updateId(localId, serverId);
+        }
+    }
+
+    @Query("DELETE FROM labels WHERE id = :id")
+    void delete(String id);
+
+    // labels created here that the server has not confirmed yet are kept
+    @Query("DELETE FROM labels WHERE owner = :owner AND id NOT LIKE '" + LabelEntity.LOCAL_PREFIX + "%'")
+    void deleteConfirmed(String owner);
+
+    // The server's list replaces the cached one in one transaction, so observers see one change
+    @Transaction
+    default void replaceAll(String owner, List<LabelEntity> labels) {
+        deleteConfirmed(owner);
+        insertAll(labels);
+    }
+
+    // Same as replaceAll, but writes only when the list differs from the confirmed labels in ids,
+    // names or order, so a refresh that changed nothing does not wake the observers
+    @Transaction
+    default void replaceIfChanged(String owner, List<LabelEntity> labels) {
+        List<LabelEntity> cached = new ArrayList<>();
+        for (LabelEntity row : getLabelsNow(owner)) {
+            if (!row.id.startsWith(LabelEntity.LOCAL_PREFIX)) {
+                cached.add(row);
+            }
+        }
+        boolean same = cached.size() == labels.size();
+        for (int i = 0; same && i < cached.size(); i++) {
+            same = cached.get(i).id.equals(labels.get(i).id) && Objects.equals(cached.get(i).name, labels.get(i).name);
+        }
+        if (!same) {
+            replaceAll(owner, labels);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.android_app.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// One of the signed-in user's labels, as cached by LabelStore. A label created offline or still on
+// its way to the server has a LOCAL_PREFIX id until the server's id replaces it.
+@Entity(tableName = "labels", indices = {@Index(value = {"owner", "position"})})
+public class LabelEntity {
+    public static final String LOCAL_PREFIX = "local-";
+
+    @PrimaryKey
+    @NonNull
+    public String id = "";
+
+    public String owner;
+    public String name;
+    public int position; // order the server lists the labels in; new local labels go last
+}
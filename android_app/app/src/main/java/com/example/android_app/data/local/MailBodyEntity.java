@@ -0,0 +1,29 @@
+package com.example.android_app.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// The body of a cached mail, kept apart from the header row (MailEntity) so list queries never read
+// it. Rows are written when a full mail comes from the server (details, delta sync) and read only by
+// the details screen; folder listings are fetched without bodies.
+// The text is stored as UTF-8 bytes, DEFLATE-compressed when that pays off (see BodyCodec), and the
+// RetentionManager drops rows to keep the table under its size budget.
+@Entity(tableName = "mail_bodies")
+public class MailBodyEntity {
+    @PrimaryKey
+    @NonNull
+    public String id = "";
+
+    public byte[] data;
+    public boolean compressed;
+
+    public MailBodyEntity() {
+    }
+
+    public MailBodyEntity(@NonNull String id, byte[] data, boolean compressed) {
+        this.id = id;
+        this.data = data;
+        this.compressed = compressed;
+    }
+}
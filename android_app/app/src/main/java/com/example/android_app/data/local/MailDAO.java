@@ -1,31 +1,273 @@
 package com.example.android_app.data.local;
 import androidx.lifecycle.LiveData;
 import androidx.room.*;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
+import com.example.android_app.model.Email;
+import com.example.android_app.utils.MailMapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 // This class represents the Mail entity in the local database - it contains the email details and query methods for accessing the emails.
 @Dao
 public interface MailDAO {
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    // Upsert, not REPLACE: an existing row is updated in place and keeps its rowid, which is the docid
+    // of its mail_fts row (REPLACE would delete it without firing the delete trigger)
+    @Upsert
     void insertMail(MailEntity mail);
 
+    @Upsert
+    void upsertHeaders(List<MailEntity> mails);
+
+    // Ingest: the headers, then the label links of every row whose response listed its labels
+    @Transaction
+    default void insertAll(List<MailEntity> mails) {
+        upsertHeaders(mails);
+        for (MailEntity mail : mails) {
+            if (mail.labelIds != null) {
+                replaceMailLabels(mail.id, mail.labelIds);
+            }
+        }
+    }
+
+    // --- Label links (mail_labels) ---
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertLabelLinks(List<MailLabelEntity> links);
+
+    @Query("DELETE FROM mail_labels WHERE mailId = :mailId")
+    void deleteMailLabels(String mailId);
+
+    @Query("DELETE FROM mail_labels WHERE mailId IN (:mailIds)")
+    void deleteMailLabelsByIds(List<String> mailIds);
+
+    @Query("DELETE FROM mail_labels WHERE labelId = :labelId")
+    void deleteLabelLinks(String labelId);
+
+    @Query("DELETE FROM mail_labels WHERE mailId = :mailId AND labelId = :labelId")
+    void deleteLabelLink(String mailId, String labelId);
+
+    @Query("DELETE FROM mail_labels")
+    void clearLabelLinks();
+
+    default void insertLabelLink(String mailId, String labelId) {
+        insertLabelLinks(Collections.singletonList(new MailLabelEntity(mailId, labelId)));
+    }
+
+    @Transaction
+    default void replaceMailLabels(String mailId, List<String> labelIds) {
+        deleteMailLabels(mailId);
+        List<MailLabelEntity> links = new ArrayList<>();
+        for (String labelId : labelIds) {
+            links.add(new MailLabelEntity(mailId, labelId));
+        }
+        insertLabelLinks(links);
+    }
+
+    // A label's full listing from the server: exactly these mails carry it
+    @Transaction
+    default void replaceLabelMails(String labelId, List<String> mailIds) {
+        deleteLabelLinks(labelId);
+        List<MailLabelEntity> links = new ArrayList<>();
+        for (String mailId : mailIds) {
+            links.add(new MailLabelEntity(mailId, labelId));
+        }
+        insertLabelLinks(links);
+    }
+
+    // The owner's visible mails under a label, newest first: the label's index range joined to the
+    // headers by primary key
+    @Query("SELECT h.* FROM mail_labels l JOIN mail_headers h ON h.id = l.mailId " +
+            "WHERE l.labelId = :labelId AND h.owner = :owner " +
+            "AND h.folder NOT IN ('" + MailFolderQuery.TRASH + "', '" + MailFolderQuery.HIDDEN + "') " +
+            "ORDER BY h.timestamp DESC, h.id DESC")
+    LiveData<List<MailEntity>> observeLabelMails(String owner, String labelId);
+
+    // Per-label totals of the same rows, for the sidebar
+    @Query("SELECT l.labelId AS labelId, COUNT(*) AS total, SUM(CASE WHEN h.isRead = 0 THEN 1 ELSE 0 END) AS unread " +
+            "FROM mail_labels l JOIN mail_headers h ON h.id = l.mailId WHERE h.owner = :owner " +
+            "AND h.folder NOT IN ('" + MailFolderQuery.TRASH + "', '" + MailFolderQuery.HIDDEN + "') " +
+            "GROUP BY l.labelId")
+    LiveData<List<LabelCount>> observeLabelCounts(String owner);
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insertAll(List<MailEntity> mails);
+    void insertBodies(List<MailBodyEntity> bodies);
+
+    @Query("SELECT * FROM mail_bodies WHERE id = :mailId")
+    MailBodyEntity getBodyNow(String mailId);
+
+    // cached, non-draft headers among the ids that have no body yet (see DetailPrefetcher)
+    @Query("SELECT id FROM mail_headers WHERE id IN (:mailIds) AND folder != '" + MailFolderQuery.DRAFTS + "' " +
+            "AND id NOT IN (SELECT id FROM mail_bodies)")
+    List<String> getIdsMissingBodyNow(List<String> mailIds);
+
+    @Query("UPDATE mail_fts SET body = :body WHERE docid = (SELECT rowid FROM mail_headers WHERE id = :mailId)")
+    void indexBody(String mailId, String body);
+
+    @Query("UPDATE mail_fts SET body = NULL WHERE docid IN (SELECT rowid FROM mail_headers WHERE id IN (:mailIds))")
+    void unindexBodies(List<String> mailIds);
+
+    // Stores the bodies that came with full mails: encoded into mail_bodies and, capped, into the
+    // search index. The headers must be written first, the index row belongs to the header.
+    @Transaction
+    default void storeBodies(List<Email> emails) {
+        insertBodies(MailMapper.toBodies(emails));
+        for (Email email : emails) {
+            if (email.getId() != null && email.getBody() != null) {
+                indexBody(email.getId(), MailSearchQuery.indexableBody(email.getBody()));
+            }
+        }
+    }
+
+    // Drops bodies but keeps the headers (see RetentionManager); search then matches subject and sender only
+    @Transaction
+    default void evictBodies(List<String> mailIds) {
+        deleteBodiesByIds(mailIds);
+        unindexBodies(mailIds);
+    }
+
+    // --- Local search over mail_fts, built by MailSearchQuery ---
+    @RawQuery
+    List<SearchHit> searchHitsNow(SupportSQLiteQuery query);
 
-    @Query("SELECT * FROM mails ORDER BY timestamp DESC")
-    LiveData<List<MailEntity>> getAllMails();
+    @RawQuery
+    List<SearchOffsets> searchOffsetsNow(SupportSQLiteQuery query);
 
-    @Query("SELECT * FROM mails ORDER BY timestamp DESC")
-    List<MailEntity> getAllMailsNow(); //without LiveData
+    // --- Body retention, see RetentionManager ---
+    @Query("SELECT COALESCE(SUM(length(data)), 0) FROM mail_bodies")
+    long getBodiesSizeNow();
 
-    @Query("DELETE FROM mails")
-    void clearAll();
+    @Query("DELETE FROM mail_bodies WHERE id NOT IN (SELECT id FROM mail_headers)")
+    int deleteOrphanBodies();
+
+    // bodies the user can get back by opening the mail: read, not starred, not a draft, older than
+    // `olderThan`; oldest first
+    @Query("SELECT b.id AS id, length(b.data) AS size FROM mail_bodies b JOIN mail_headers h ON h.id = b.id " +
+            "WHERE h.isRead = 1 AND h.isStarred = 0 AND h.folder != '" + MailFolderQuery.DRAFTS + "' " +
+            "AND h.timestamp < :olderThan ORDER BY h.timestamp ASC LIMIT :limit")
+    List<BodySize> getEvictableBodiesNow(long olderThan, int limit);
+
+    @Query("DELETE FROM mail_headers")
+    void clearHeaders();
+
+    @Query("DELETE FROM mail_bodies")
+    void clearBodies();
+
+    @Transaction
+    default void clearAll() {
+        clearHeaders();
+        clearBodies();
+        clearLabelLinks();
+    }
 
     @Delete
     void deleteMail(MailEntity mail);
 
     // added: quick getter for MailEntity
-    @Query("SELECT * FROM mails WHERE id = :mailId")
+    @Query("SELECT * FROM mail_headers WHERE id = :mailId")
     MailEntity getMailByIdNow(String mailId);
+
+    @Query("SELECT * FROM mail_headers WHERE id = :mailId")
+    LiveData<MailEntity> observeMailById(String mailId);
+
+    @Query("DELETE FROM mail_headers WHERE id IN (:mailIds)")
+    void deleteHeadersByIds(List<String> mailIds);
+
+    @Query("DELETE FROM mail_bodies WHERE id IN (:mailIds)")
+    void deleteBodiesByIds(List<String> mailIds);
+
+    // no foreign key between the tables: a REPLACE of the header would cascade to the body
+    @Transaction
+    default void deleteByIds(List<String> mailIds) {
+        deleteHeadersByIds(mailIds);
+        deleteBodiesByIds(mailIds);
+        deleteMailLabelsByIds(mailIds);
+    }
+
+    @Query("UPDATE mail_headers SET isStarred = 0 WHERE id IN (:mailIds)")
+    void clearStarred(List<String> mailIds);
+
+    @Query("UPDATE mail_headers SET isImportant = 0 WHERE id IN (:mailIds)")
+    void clearImportant(List<String> mailIds);
+
+    // Takes rows the server no longer lists out of a folder. Inbox, sent, drafts, spam and trash are
+    // where a row lives, so it is gone from the owner's view and dropped. Starred and important are
+    // flags over those folders: the row stays where it is with the flag cleared. All mail spans inbox
+    // and sent, so a row missing from it is left to the delta sync, which knows where it went.
+    @Transaction
+    default void removeFromFolder(String folder, List<String> mailIds) {
+        if (mailIds.isEmpty()) {
+            return;
+        }
+        switch (folder) {
+            case "starred":
+                clearStarred(mailIds);
+                break;
+            case "important":
+                clearImportant(mailIds);
+                break;
+            case "allmail":
+                break;
+            default:
+                deleteByIds(mailIds);
+        }
+    }
+
+    // Rows of the given ids that the owner can see, newest first
+    @Query("SELECT * FROM mail_headers WHERE id IN (:mailIds) AND owner = :owner " +
+            "AND folder NOT IN ('" + MailFolderQuery.TRASH + "', '" + MailFolderQuery.HIDDEN + "') " +
+            "ORDER BY timestamp DESC, id DESC")
+    List<MailEntity> getVisibleByIdsNow(String owner, List<String> mailIds);
+
+    // --- Folder queries: built by MailFolderQuery on the indexed owner/folder columns ---
+    @RawQuery(observedEntities = MailEntity.class)
+    List<MailEntity> queryMailsNow(SupportSQLiteQuery query);
+
+    @RawQuery
+    List<String> queryIdsNow(SupportSQLiteQuery query);
+
+    default List<String> getFolderIdsBetweenNow(String owner, String folder, long since, long until) {
+        return queryIdsNow(MailFolderQuery.idsBetween(owner, folder, since, until));
+    }
+
+    // keyset pages of a folder, newest first on (timestamp, id); see MailPagingSource
+    default List<MailEntity> getFolderHeadNow(String owner, String folder, int limit) {
+        return queryMailsNow(MailFolderQuery.head(owner, folder, limit));
+    }
+
+    default List<MailEntity> getFolderPageBeforeNow(String owner, String folder, MailPageKey key, int limit) {
+        return queryMailsNow(MailFolderQuery.before(owner, folder, key, limit));
+    }
+
+    default List<MailEntity> getFolderPageFromNow(String owner, String folder, MailPageKey key, int limit) {
+        return queryMailsNow(MailFolderQuery.from(owner, folder, key, limit));
+    }
+
+    // ascending, so the rows closest to the key come first; the caller reverses them
+    default List<MailEntity> getFolderPageAfterNow(String owner, String folder, MailPageKey key, int limit) {
+        return queryMailsNow(MailFolderQuery.after(owner, folder, key, limit));
+    }
+
+    // Per-folder totals of the cached mails, for the sidebar badges when the server cannot be reached
+    @Query("SELECT folder, COUNT(*) AS total, SUM(sentByOwner) AS sent, SUM(isStarred) AS starred, " +
+            "SUM(isImportant) AS important FROM mail_headers WHERE owner = :owner GROUP BY folder")
+    List<FolderCount> countByFolderNow(String owner);
+
+    // Replace what the server just returned for a folder (or one batch of the delta sync): upsert the
+    // fresh rows and drop the stale ones, in one transaction so observers see a single change.
+    @Transaction
+    default void reconcile(List<MailEntity> fresh, List<String> staleIds) {
+        if (!staleIds.isEmpty()) {
+            deleteByIds(staleIds);
+        }
+        insertAll(fresh);
+    }
+
+    // Same as reconcile for a folder listing: stale rows are taken out of that folder only
+    @Transaction
+    default void reconcileFolder(String folder, List<MailEntity> fresh, List<String> staleIds) {
+        removeFromFolder(folder, staleIds);
+        insertAll(fresh);
+    }
 }
@@ -1,12 +1,20 @@
 package com.example.android_app.data.local;
 import androidx.annotation.NonNull;
 import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
-import androidx.room.TypeConverters;
 import java.util.List;
 
-// This class represents the Mail entity in the local database.
-@Entity(tableName = "mails")
+// This class represents the Mail entity in the local database: the header row that lists render.
+// The body lives in mail_bodies (MailBodyEntity), so a folder query costs the same however long the mails are.
+// The indices match the folder queries in MailFolderQuery: owner first, then the folder/flag, then time.
+@Entity(tableName = "mail_headers", indices = {
+        @Index(value = {"owner", "folder", "timestamp"}),
+        @Index(value = {"owner", "sentByOwner", "timestamp"}),
+        @Index(value = {"owner", "isStarred", "timestamp"}),
+        @Index(value = {"owner", "isImportant", "timestamp"})
+})
 public class MailEntity {
     @PrimaryKey
     @NonNull
@@ -15,7 +23,6 @@ public class MailEntity {
     public String from;
     public String to;
     public String subject;
-    public String body;
     public String date;
     public long timestamp;
     public boolean send;
@@ -26,12 +33,22 @@ public class MailEntity {
     public boolean deletedForSender;
     public boolean deletedForReceiver;
 
-    // for object from type List<ObjectId>
-    @TypeConverters(LabelIdConverter.class)
-    public List<String> labelsForSender;
+    // account this row was fetched for (lower case) and where it lives for that account,
+    // derived from the flags above by MailMapper.assignFolder
+    public String owner;
+    public String folder;
+    public boolean sentByOwner;
+    // a queued send shown in Sent before the server has it (see SendQueue); never set on server rows
+    public boolean pending;
 
-    @TypeConverters(LabelIdConverter.class)
-    public List<String> labelsForReceiver;
+    // sender details so a cached row can be rendered without the network
+    public String senderName;
+    public String senderProfileImage;
+
+    // the owner's labels on this mail as the server listed them, or null when the response did not say.
+    // Not a column: MailDAO.insertAll writes them to mail_labels.
+    @Ignore
+    public List<String> labelIds;
 
     public Object getId() {
         return id;
@@ -0,0 +1,83 @@
+package com.example.android_app.data.local;
+
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+// Builds the SQL behind each folder. Every folder is a condition on the indexed owner/folder/flag
+// columns of MailEntity (filled in by MailMapper.assignFolder), so listing a folder is an index range
+// scan instead of a full table read.
+public final class MailFolderQuery {
+
+    // values of MailEntity.folder: the one folder a row lives in for its owner
+    public static final String INBOX = "inbox";
+    public static final String SENT = "sent";
+    public static final String DRAFTS = "drafts";
+    public static final String SPAM = "spam";
+    public static final String TRASH = "trash";
+    public static final String HIDDEN = "hidden"; // cached but not visible to the owner (e.g. someone else's draft)
+
+    private static final String ORDER_NEWEST = " ORDER BY timestamp DESC, id DESC";
+    private static final String ORDER_OLDEST = " ORDER BY timestamp ASC, id ASC";
+
+    private MailFolderQuery() {
+    }
+
+    // WHERE clause of a folder; it binds the owner once as its first argument
+    static String where(String folder) {
+        switch (folder) {
+            case "inbox":
+                return "owner = ? AND folder = '" + INBOX + "'";
+            case "sent":
+                return "owner = ? AND sentByOwner = 1";
+            case "drafts":
+                return "owner = ? AND folder = '" + DRAFTS + "'";
+            case "spam":
+                return "owner = ? AND folder = '" + SPAM + "'";
+            case "trash":
+                return "owner = ? AND folder = '" + TRASH + "'";
+            case "important":
+                return "owner = ? AND isImportant = 1 AND folder IN ('" + INBOX + "', '" + SENT + "', '" + DRAFTS + "', '" + SPAM + "')";
+            case "starred":
+                return "owner = ? AND isStarred = 1 AND folder IN ('" + INBOX + "', '" + SENT + "', '" + DRAFTS + "', '" + SPAM + "')";
+            case "allmail":
+                return "owner = ? AND folder IN ('" + INBOX + "', '" + SENT + "') AND isSpam = 0";
+            default:
+                throw new IllegalArgumentException("Folder is not cached locally: " + folder);
+        }
+    }
+
+    static SupportSQLiteQuery head(String owner, String folder, int limit) {
+        return new SimpleSQLiteQuery("SELECT * FROM mail_headers WHERE " + where(folder) + ORDER_NEWEST + " LIMIT ?",
+                new Object[]{owner, limit});
+    }
+
+    // rows strictly older than the key
+    static SupportSQLiteQuery before(String owner, String folder, MailPageKey key, int limit) {
+        return new SimpleSQLiteQuery("SELECT * FROM mail_headers WHERE " + where(folder)
+                + " AND timestamp <= ? AND (timestamp < ? OR id < ?)" + ORDER_NEWEST + " LIMIT ?",
+                new Object[]{owner, key.timestamp, key.timestamp, key.id, limit});
+    }
+
+    // the key's row and everything older
+    static SupportSQLiteQuery from(String owner, String folder, MailPageKey key, int limit) {
+        return new SimpleSQLiteQuery("SELECT * FROM mail_headers WHERE " + where(folder)
+                + " AND timestamp <= ? AND (timestamp < ? OR id <= ?)" + ORDER_NEWEST + " LIMIT ?",
+                new Object[]{owner, key.timestamp, key.timestamp, key.id, limit});
+    }
+
+    // rows strictly newer than the key, closest first
+    static SupportSQLiteQuery after(String owner, String folder, MailPageKey key, int limit) {
+        return new SimpleSQLiteQuery("SELECT * FROM mail_headers WHERE " + where(folder)
+                + " AND timestamp >= ? AND (timestamp > ? OR id > ?)" + ORDER_OLDEST + " LIMIT ?",
+                new Object[]{owner, key.timestamp, key.timestamp, key.id, limit});
+    }
+
+    static SupportSQLiteQuery idsBetween(String owner, String folder, long since, long until) {
+        // queued sends are not on the server yet, and mails with queued actions may be in the folder
+        // only locally so far, so a listing not returning them says nothing
+        return new SimpleSQLiteQuery("SELECT id FROM mail_headers WHERE " + where(folder)
+                + " AND timestamp >= ? AND timestamp < ? AND pending = 0"
+                + " AND id NOT IN (SELECT mailId FROM pending_ops WHERE owner = ?)",
+                new Object[]{owner, since, until, owner});
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.android_app.data.local;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+// Full-text index of the cached mails, one row per mail_headers row (docid = the header's rowid).
+// subject and sender are kept in step with mail_headers by the triggers AppDatabase installs; body is
+// written by MailDAO.storeBodies, capped at MailSearchQuery.MAX_INDEXED_BODY_CHARS, and cleared when
+// the RetentionManager evicts the body.
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "mail_fts")
+public class MailFtsEntity {
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    public long rowid;
+
+    public String subject;
+    public String sender; // sender name and address
+    public String body;
+}
@@ -0,0 +1,27 @@
+package com.example.android_app.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+// One mail filed under one label: the junction between mail_headers and labels. The primary key
+// serves "labels of a mail" (and the per-mail replace during ingest), the second index serves
+// "mails of a label" and the per-label counts. No foreign keys, like the other mail tables: the
+// header rows are upserted and labels are replaced wholesale by LabelStore.
+@Entity(tableName = "mail_labels", primaryKeys = {"mailId", "labelId"},
+        indices = {@Index(value = {"labelId", "mailId"})})
+public class MailLabelEntity {
+    @NonNull
+    public String mailId = "";
+
+    @NonNull
+    public String labelId = "";
+
+    public MailLabelEntity() {
+    }
+
+    public MailLabelEntity(@NonNull String mailId, @NonNull String labelId) {
+        this.mailId = mailId;
+        this.labelId = labelId;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.android_app.data.local;
+
+import androidx.annotation.NonNull;
+
+// Position of a row inside a folder listing. Folders are ordered by (timestamp DESC, id DESC),
+// so a key points between two rows without depending on how many rows come before it.
+public class MailPageKey {
+    public final long timestamp;
+    @NonNull
+    public final String id;
+
+    public MailPageKey(long timestamp, @NonNull String id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    public static MailPageKey of(MailEntity mail) {
+        return new MailPageKey(mail.timestamp, mail.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MailPageKey)) return false;
+        MailPageKey other = (MailPageKey) o;
+        return timestamp == other.timestamp && id.equals(other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(timestamp) + id.hashCode();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.android_app.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.PagingState;
+import androidx.room.InvalidationTracker;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import kotlin.Unit;
+
+// Pages one folder out of the mails table using a keyset cursor (timestamp, id) instead of OFFSET,
+// so loading page N costs the same as loading page 1. Any write to the table invalidates the source
+// and the pager reloads around the row the user was looking at.
+public class MailPagingSource extends ListenableFuturePagingSource<MailPageKey, MailEntity> {
+    private final MailDAO mailDao;
+    private final String owner;
+    private final String folder;
+    private final Executor executor;
+
+    public MailPagingSource(AppDatabase db, String owner, String folder, Executor executor) {
+        this.mailDao = db.mailDao();
+        this.owner = owner;
+        this.folder = folder;
+        this.executor = executor;
+
+        InvalidationTracker.Observer observer = new InvalidationTracker.Observer("mail_headers") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                invalidate();
+            }
+        };
+        db.getInvalidationTracker().addObserver(observer);
+        registerInvalidatedCallback(() -> {
+            db.getInvalidationTracker().removeObserver(observer);
+            return Unit.INSTANCE;
+        });
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<MailPageKey, MailEntity>> loadFuture(@NonNull LoadParams<MailPageKey> params) {
+        return Futures.submit(() -> {
+            try {
+                return loadPage(params);
+            } catch (Exception e) {
+                return new LoadResult.Error<>(e);
+            }
+        }, executor);
+    }
+
+    private LoadResult<MailPageKey, MailEntity> loadPage(LoadParams<MailPageKey> params) {
+        MailPageKey key = params.getKey();
+        int limit = params.getLoadSize();
+
+        if (key == null) {
+            // newest rows of the folder, nothing can come before them
+            List<MailEntity> rows = mailDao.getFolderHeadNow(owner, folder, limit);
+            return new LoadResult.Page<>(rows, null, nextKey(rows, limit));
+        }
+
+        if (params instanceof LoadParams.Prepend) {
+            List<MailEntity> rows = mailDao.getFolderPageAfterNow(owner, folder, key, limit);
+            Collections.reverse(rows);
+            MailPageKey prevKey = rows.size() < limit ? null : MailPageKey.of(rows.get(0));
+            return new LoadResult.Page<>(rows, prevKey, null);
+        }
+
+        if (params instanceof LoadParams.Append) {
+            List<MailEntity> rows = mailDao.getFolderPageBeforeNow(owner, folder, key, limit);
+            return new LoadResult.Page<>(rows, null, nextKey(rows, limit));
+        }
+
+        // refresh after an invalidation: start at the remembered row and let prepend fill in newer ones
+        List<MailEntity> rows = mailDao.getFolderPageFromNow(owner, folder, key, limit);
+        MailPageKey prevKey = rows.isEmpty() ? key : MailPageKey.of(rows.get(0));
+        return new LoadResult.Page<>(rows, prevKey, nextKey(rows, limit));
+    }
+
+    @Nullable
+    private static MailPageKey nextKey(List<MailEntity> rows, int limit) {
+        return rows.size() < limit ? null : MailPageKey.of(rows.get(rows.size() - 1));
+    }
+
+    @Nullable
+    @Override
+    public MailPageKey getRefreshKey(@NonNull PagingState<MailPageKey, MailEntity> state) {
+        Integer anchor = state.getAnchorPosition();
+        if (anchor == null) {
+            return null;
+        }
+        // reload from a bit above the visible row so the screen is covered without waiting for a prepend
+        int position = Math.max(0, anchor - state.getConfig().pageSize / 2);
+        MailEntity row = state.closestItemToPosition(position);
+        return row == null ? null : MailPageKey.of(row);
+    }
+}
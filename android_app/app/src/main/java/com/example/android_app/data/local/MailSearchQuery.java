@@ -0,0 +1,132 @@
+package com.example.android_app.data.local;
+
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+// Builds the SQL of a local search over mail_fts and turns what FTS returns into a ranking and
+// highlight ranges. Search covers the same mails as the server's search: the "allmail" folder
+// (received and sent, no spam, drafts or trash).
+public final class MailSearchQuery {
+    public static final int MAX_INDEXED_BODY_CHARS = 8 * 1024;
+    static final int MAX_HITS = 500; // ranked in memory; only ids and matchinfo are read for them
+
+    // columns of mail_fts, in table order, and how much a match in each counts
+    private static final int COL_SUBJECT = 0;
+    private static final double[] COLUMN_WEIGHTS = {3.0, 2.0, 1.0};
+
+    private MailSearchQuery() {
+    }
+
+    // MATCH expression for what the user typed: every word becomes a prefix term and all are required.
+    // null when there is no word to search for.
+    public static String match(String input) {
+        StringBuilder match = new StringBuilder();
+        for (String word : input.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(word).append('*');
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    public static String indexableBody(String body) {
+        return body.length() > MAX_INDEXED_BODY_CHARS ? body.substring(0, MAX_INDEXED_BODY_CHARS) : body;
+    }
+
+    public static SupportSQLiteQuery hits(String owner, String match) {
+        return new SimpleSQLiteQuery("SELECT h.id AS id, h.timestamp AS timestamp, matchinfo(mail_fts, 'pcx') AS matchinfo "
+                + "FROM mail_fts JOIN mail_headers h ON h.rowid = mail_fts.docid "
+                + "WHERE " + MailFolderQuery.where("allmail") + " AND mail_fts MATCH ? LIMIT ?",
+                new Object[]{owner, match, MAX_HITS});
+    }
+
+    // offsets() re-reads the matched text, so it is asked for the shown page only
+    public static SupportSQLiteQuery offsets(String match, List<String> ids) {
+        StringBuilder sql = new StringBuilder("SELECT h.id AS id, offsets(mail_fts) AS offsets "
+                + "FROM mail_fts JOIN mail_headers h ON h.rowid = mail_fts.docid WHERE mail_fts MATCH ? AND h.id IN (");
+        Object[] args = new Object[ids.size() + 1];
+        args[0] = match;
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+            args[i + 1] = ids.get(i);
+        }
+        return new SimpleSQLiteQuery(sql.append(')').toString(), args);
+    }
+
+    // Best match first: the score, then the newest mail.
+    public static void rank(List<SearchHit> hits) {
+        for (SearchHit hit : hits) {
+            hit.score = score(hit.matchinfo);
+        }
+        Collections.sort(hits, (a, b) -> a.score != b.score
+                ? Double.compare(b.score, a.score)
+                : Long.compare(b.timestamp, a.timestamp));
+    }
+
+    // matchinfo 'pcx': phrase count, column count, then per phrase and column the hits in this row,
+    // the hits in all rows and the rows with a hit. Every hit counts by its column's weight and by how
+    // rare the phrase is in that column across the index (the rank function of the SQLite FTS docs).
+    private static double score(byte[] matchinfo) {
+        if (matchinfo == null) {
+            return 0;
+        }
+        IntBuffer ints = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = ints.get(0);
+        int columns = ints.get(1);
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns && column < COLUMN_WEIGHTS.length; column++) {
+                int base = 2 + 3 * (phrase * columns + column);
+                int hitsInRow = ints.get(base);
+                int hitsInAllRows = ints.get(base + 1);
+                if (hitsInRow > 0) {
+                    score += COLUMN_WEIGHTS[column] * hitsInRow / hitsInAllRows;
+                }
+            }
+        }
+        return score;
+    }
+
+    // offsets() gives "column term byteOffset byteLength" per match, in UTF-8 bytes of the column.
+    // Returns the subject's matches as [start, end) char pairs, or null when the subject has none.
+    public static int[] subjectHighlights(String offsets, String subject) {
+        if (offsets == null || subject == null) {
+            return null;
+        }
+        byte[] utf8 = subject.getBytes(StandardCharsets.UTF_8);
+        String[] parts = offsets.trim().split(" ");
+        List<Integer> ranges = new ArrayList<>();
+        for (int i = 0; i + 3 < parts.length; i += 4) {
+            int column = Integer.parseInt(parts[i]);
+            int start = Integer.parseInt(parts[i + 2]);
+            int length = Integer.parseInt(parts[i + 3]);
+            if (column != COL_SUBJECT || start + length > utf8.length) {
+                continue;
+            }
+            int charStart = new String(utf8, 0, start, StandardCharsets.UTF_8).length();
+            ranges.add(charStart);
+            ranges.add(charStart + new String(utf8, start, length, StandardCharsets.UTF_8).length());
+        }
+        if (ranges.isEmpty()) {
+            return null;
+        }
+        int[] result = new int[ranges.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ranges.get(i);
+        }
+        return result;
+    }
+}
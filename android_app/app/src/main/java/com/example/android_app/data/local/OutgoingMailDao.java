@@ -0,0 +1,31 @@
+package com.example.android_app.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+// Queries on the queue of mails waiting to be sent; see OutgoingMailEntity and SendQueue.
+@Dao
+public interface OutgoingMailDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(OutgoingMailEntity mail);
+
+    @Query("DELETE FROM outgoing_mails WHERE idempotencyKey = :idempotencyKey")
+    void delete(String idempotencyKey);
+
+    // oldest first, so mails arrive in the order they were sent; the drainer stops at the first one
+    // that is not due yet
+    @Query("SELECT * FROM outgoing_mails WHERE owner = :owner ORDER BY queuedAt")
+    List<OutgoingMailEntity> getQueueNow(String owner);
+
+    // when the oldest mail is due: nothing behind it goes out before it
+    @Query("SELECT nextAttemptAt FROM outgoing_mails WHERE owner = :owner ORDER BY queuedAt LIMIT 1")
+    Long getNextAttemptAtNow(String owner);
+
+    @Query("UPDATE outgoing_mails SET attempts = :attempts, nextAttemptAt = :nextAttemptAt " +
+            "WHERE idempotencyKey = :idempotencyKey")
+    void reschedule(String idempotencyKey, int attempts, long nextAttemptAt);
+}
@@ -0,0 +1,29 @@
+package com.example.android_app.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// A mail the user sent that the server has not accepted yet (see SendQueue). The key is generated
+// when the mail is queued and sent as the Idempotency-Key of every attempt, so a retry after a lost
+// response cannot send the mail twice. Until it is accepted the mail shows in Sent as the pending
+// header row placeholderId.
+@Entity(tableName = "outgoing_mails", indices = {@Index(value = {"owner", "nextAttemptAt"})})
+public class OutgoingMailEntity {
+    public static final String PLACEHOLDER_PREFIX = "outgoing-";
+
+    @PrimaryKey
+    @NonNull
+    public String idempotencyKey = "";
+
+    public String owner;
+    public String draftId; // the server draft this sends, null for a new mail
+    public String placeholderId;
+    public String to;
+    public String subject;
+    public String body;
+    public long queuedAt;
+    public int attempts;
+    public long nextAttemptAt; // ms since epoch; 0 = send as soon as possible
+}
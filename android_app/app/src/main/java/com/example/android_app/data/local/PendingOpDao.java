@@ -0,0 +1,97 @@
+package com.example.android_app.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+// Queries on the outbox of mail actions; see PendingOpEntity and Outbox.
+@Dao
+public interface PendingOpDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(PendingOpEntity op);
+
+    @Query("SELECT * FROM pending_ops WHERE mailId = :mailId AND action = :action")
+    PendingOpEntity getNow(String mailId, String action);
+
+    @Query("DELETE FROM pending_ops WHERE mailId = :mailId AND action = :action")
+    void delete(String mailId, String action);
+
+    @Query("SELECT * FROM pending_ops WHERE owner = :owner AND nextAttemptAt <= :now ORDER BY nextAttemptAt LIMIT :limit")
+    List<PendingOpEntity> getDueNow(String owner, long now, int limit);
+
+    @Query("SELECT MIN(nextAttemptAt) FROM pending_ops WHERE owner = :owner")
+    Long getNextAttemptAtNow(String owner);
+
+    @Query("SELECT * FROM pending_ops WHERE owner = :owner AND mailId IN (:mailIds)")
+    List<PendingOpEntity> getForMailsNow(String owner, List<String> mailIds);
+
+    @Query("UPDATE pending_ops SET inFlight = 1 WHERE mailId = :mailId AND action = :action")
+    void markInFlight(String mailId, String action);
+
+    @Query("UPDATE pending_ops SET attempts = :attempts, nextAttemptAt = :nextAttemptAt, inFlight = 0 " +
+            "WHERE mailId = :mailId AND action = :action")
+    void reschedule(String mailId, String action, int attempts, long nextAttemptAt);
+
+    // Queues `value` for the mail, coalescing with whatever is already queued for the same action.
+    // `currentValue` is the flag as Room had it before this change.
+    @Transaction
+    default void record(String owner, String mailId, String action, boolean value, boolean currentValue) {
+        PendingOpEntity op = getNow(mailId, action);
+        if (op == null) {
+            if (value == currentValue) {
+                return;
+            }
+            op = new PendingOpEntity();
+            op.mailId = mailId;
+            op.action = action;
+            op.owner = owner;
+            op.serverValue = currentValue;
+        } else if (value == op.serverValue && !op.inFlight) {
+            delete(mailId, action); // toggled back: nothing left to tell the server
+            return;
+        }
+        op.value = value;
+        upsert(op);
+    }
+
+    // The server applied `sent`. Drops the row unless the user changed the flag again in the meantime,
+    // in which case the newer value stays queued against the server's new state.
+    @Transaction
+    default void confirm(PendingOpEntity sent) {
+        PendingOpEntity op = getNow(sent.mailId, sent.action);
+        if (op == null) {
+            return;
+        }
+        if (op.value == sent.value) {
+            delete(sent.mailId, sent.action);
+        } else {
+            op.serverValue = sent.value;
+            op.inFlight = false;
+            op.attempts = 0;
+            op.nextAttemptAt = 0;
+            upsert(op);
+        }
+    }
+
+    // The server refused `sent` and still has serverValue. Returns the row if the user left the flag
+    // at the refused value (the caller puts the cached mail back), null otherwise. A newer value the
+    // user set meanwhile stays queued, unless it is what the server already has.
+    @Transaction
+    default PendingOpEntity reject(PendingOpEntity sent) {
+        PendingOpEntity op = getNow(sent.mailId, sent.action);
+        if (op == null) {
+            return null;
+        }
+        if (op.value == sent.value || op.value == op.serverValue) {
+            delete(sent.mailId, sent.action);
+            return op.value == sent.value ? op : null;
+        }
+        op.inFlight = false;
+        upsert(op);
+        return null;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.android_app.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+// A mail action the user already sees in Room but the server has not confirmed yet (the outbox).
+// There is at most one row per mail and action: a newer toggle overwrites the older one, and a toggle
+// back to what the server already has removes the row, so star -> unstar never reaches the network.
+// While a row is being sent it is kept even when toggled back, because the server is about to apply
+// the sent value; confirm() then queues the way back.
+@Entity(tableName = "pending_ops",
+        primaryKeys = {"mailId", "action"},
+        indices = {@Index(value = {"owner", "nextAttemptAt"})})
+public class PendingOpEntity {
+    // values of action: the flag of the mail the op sets
+    public static final String STAR = "star";
+    public static final String IMPORTANT = "important";
+    public static final String READ = "read";
+    public static final String SPAM = "spam";
+    public static final String DELETE = "delete"; // soft delete for the owner, never undone
+
+    @NonNull
+    public String mailId = "";
+    @NonNull
+    public String action = "";
+    public String owner;
+    public boolean value;       // what the user asked for
+    public boolean serverValue; // what the server had before the first queued change
+    public boolean inFlight;    // sent and not answered yet: the server may be about to have `value`
+    public int attempts;
+    public long nextAttemptAt;  // ms since epoch; 0 = send as soon as possible
+}
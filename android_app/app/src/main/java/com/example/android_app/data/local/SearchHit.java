@@ -0,0 +1,13 @@
+package com.example.android_app.data.local;
+
+import androidx.room.Ignore;
+
+// One row of MailDAO.searchHitsNow: a cached mail that matches, with the FTS matchinfo used to rank it.
+public class SearchHit {
+    public String id;
+    public long timestamp;
+    public byte[] matchinfo;
+
+    @Ignore
+    public double score; // filled in by MailSearchQuery.rank
+}
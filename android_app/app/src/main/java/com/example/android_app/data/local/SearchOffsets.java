@@ -0,0 +1,7 @@
+package com.example.android_app.data.local;
+
+// One row of MailDAO.searchOffsetsNow: where the query matched inside a mail, as FTS offsets() gives it.
+public class SearchOffsets {
+    public String id;
+    public String offsets;
+}
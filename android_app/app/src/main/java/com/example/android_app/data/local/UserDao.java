@@ -6,7 +6,7 @@ import java.util.List;
 
 @Dao
 public interface UserDao {
-    @Query("SELECT * FROM mails ORDER BY timestamp DESC")
+    @Query("SELECT * FROM mail_headers ORDER BY timestamp DESC")
     LiveData<List<MailEntity>> getAllMails();
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertUser(UserEntity user);
@@ -1,26 +1,72 @@
 package com.example.android_app.data.network;
 
+import android.content.Context;
+
 import com.example.android_app.BuildConfig;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
+// One OkHttpClient, Retrofit and ApiService for the whole app, so every screen and repository shares
+// the same connection pool (kept-alive sockets, HTTP/2 where the server offers it) and HTTP cache.
 public class ApiClient {
     private static final String BASE_URL = BuildConfig.SERVER_URL;
+    private static final long CACHE_SIZE_BYTES = 10L * 1024 * 1024;
+
+    private static Cache cache;
+    private static OkHttpClient httpClient;
     private static Retrofit retrofit;
+    private static ApiService apiService;
+
+    // Called once from MailApplication, before any request, so the client gets a disk cache.
+    public static synchronized void init(Context context) {
+        if (cache == null) {
+            cache = new Cache(new File(context.getApplicationContext().getCacheDir(), "http"), CACHE_SIZE_BYTES);
+        }
+    }
 
-    public static Retrofit getClient() {
+    public static synchronized OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            // OkHttp already asks for gzip responses and unzips them; GzipRequestInterceptor zips JSON bodies
+            httpClient = new OkHttpClient.Builder()
+                    .cache(cache) // null when init was not called: no disk cache
+                    .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .connectTimeout(10, TimeUnit.SECONDS)
+                    .readTimeout(30, TimeUnit.SECONDS)
+                    .writeTimeout(30, TimeUnit.SECONDS)
+                    .retryOnConnectionFailure(true)
+                    .addInterceptor(new ETagInterceptor())
+                    .addInterceptor(new GzipRequestInterceptor())
+                    .build();
+        }
+        return httpClient;
+    }
+
+    public static synchronized Retrofit getClient() {
         if (retrofit == null) {
             retrofit = new Retrofit.Builder()
                     .baseUrl(BASE_URL)
-                    .addConverterFactory(GsonConverterFactory.create())
+                    .client(getHttpClient())
+                    .addConverterFactory(GsonConverterFactory.create(MailJson.gson()))
                     .build();
         }
         return retrofit;
     }
 
-    public static ApiService getApiService() {
-        return getClient().create(ApiService.class);
+    public static synchronized ApiService getApiService() {
+        if (apiService == null) {
+            apiService = getClient().create(ApiService.class);
+        }
+        return apiService;
     }
 
 }
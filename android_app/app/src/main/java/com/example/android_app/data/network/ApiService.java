@@ -1,5 +1,6 @@
 package com.example.android_app.data.network;
 
+import com.example.android_app.model.BatchRequest;
 import com.example.android_app.model.Email;
 import com.example.android_app.model.EmailRequest;
 import com.example.android_app.model.Label;
@@ -7,10 +8,12 @@ import com.example.android_app.model.LabelCreateRequest;
 import com.example.android_app.model.LabelUpdateRequest;
 import com.example.android_app.model.LoginRequest;
 import com.example.android_app.model.LoginResponse;
+import com.example.android_app.model.MailChanges;
 import com.example.android_app.model.MailLabelRequest;
 import com.example.android_app.model.User;
 
 import java.util.List;
+import java.util.Map;
 
 import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
@@ -21,14 +24,22 @@ import retrofit2.http.DELETE;
 import retrofit2.http.GET;
 import retrofit2.http.HTTP;
 import retrofit2.http.Header;
+import retrofit2.http.Headers;
 import retrofit2.http.Multipart;
 import retrofit2.http.PATCH;
 import retrofit2.http.POST;
 import retrofit2.http.Part;
 import retrofit2.http.Path;
+import retrofit2.http.Query;
+import retrofit2.http.Streaming;
+import retrofit2.http.Url;
 
 
 public interface ApiService {
+    // query string of the mail lists: rows without their bodies (see GET /api/mails/:id for a body)
+    String HEADERS_ONLY = "?fields=headers";
+    // a key made once per queued send and repeated on every retry, so the server sends the mail once
+    String IDEMPOTENCY_KEY = "Idempotency-Key";
 
     @Multipart
     @POST("api/users")
@@ -75,51 +86,102 @@ public interface ApiService {
             @Body EmailRequest request
     );
 
+    // --- Sends from the SendQueue: safe to retry, the server answers a repeated key with the first result ---
+    @POST("api/mails")
+    Call<Email> sendQueued(
+            @Header("Authorization") String token,
+            @Header(IDEMPOTENCY_KEY) String idempotencyKey,
+            @Body EmailRequest request
+    );
+
+    @PATCH("api/mails/{id}")
+    Call<Email> sendQueuedDraft(
+            @Header("Authorization") String token,
+            @Header(IDEMPOTENCY_KEY) String idempotencyKey,
+            @Path("id") String draftId,
+            @Body EmailRequest request
+    );
+
     // --- Mail Service Endpoints (from mailRoutes.js) ---
 
+    // Non-paged folder listings are conditional (ETagInterceptor): a 304 means the cached folder is current
+    // and, like every mail list, leave the bodies out; the details screen loads a body on demand
+
     // List up to 25 most recent mails (router.get('/'))
-    @GET("api/mails")
+    @Headers(ETagInterceptor.CONDITIONAL)
+    @GET("api/mails" + HEADERS_ONLY)
     Call<List<Email>> listMails(
             @Header("Authorization") String token
     );
 
-    // Search mails by query string in subject or body (router.get('/search/:query'))
-    @GET("api/mails/search/{query}")
+    // Search mails by query string in subject or body, newest first (router.get('/search'))
+    @GET("api/mails/search" + HEADERS_ONLY)
     Call<List<Email>> searchMails(
             @Header("Authorization") String token,
-            @Path("query") String query
+            @Query("q") String query,
+            @Query("limit") int limit
+    );
+
+    // Number of mails per folder (router.get('/counts')): inbox, sent, drafts, spam, deleted, important, starred
+    @GET("api/mails/counts")
+    Call<Map<String, Integer>> getMailCounts(@Header("Authorization") String token);
+
+    // Mails changed since a sync cursor (router.get('/changes')); no cursor = just get the current one
+    @GET("api/mails/changes")
+    Call<MailChanges> getMailChanges(
+            @Header("Authorization") String token,
+            @Query("updatedSince") String updatedSince,
+            @Query("limit") int limit
     );
 
     // GET all drafts (router.get('/drafts'))
-    @GET("api/mails/drafts")
+    @Headers(ETagInterceptor.CONDITIONAL)
+    @GET("api/mails/drafts" + HEADERS_ONLY)
     Call<List<Email>> getDrafts(
             @Header("Authorization") String token
     );
 
     // GET inbox mails (router.get('/inbox'))
-    @GET("api/mails/inbox")
+    @Headers(ETagInterceptor.CONDITIONAL)
+    @GET("api/mails/inbox" + HEADERS_ONLY)
     Call<List<Email>> getInboxEmails(
             @Header("Authorization") String token
     );
 
     // GET sent mails (router.get('/sent'))
-    @GET("api/mails/sent")
+    @Headers(ETagInterceptor.CONDITIONAL)
+    @GET("api/mails/sent" + HEADERS_ONLY)
     Call<List<Email>> getSent(
             @Header("Authorization") String token
     );
 
     // GET spam mails (router.get('/spam'))
-    @GET("api/mails/spam")
+    @Headers(ETagInterceptor.CONDITIONAL)
+    @GET("api/mails/spam" + HEADERS_ONLY)
     Call<List<Email>> getSpamMails(
             @Header("Authorization") String token
     );
 
     // GET deleted mails (router.get('/deleted'))
-    @GET("api/mails/deleted")
+    @Headers(ETagInterceptor.CONDITIONAL)
+    @GET("api/mails/deleted" + HEADERS_ONLY)
     Call<List<Email>> getDeletedMails(
             @Header("Authorization") String token
     );
 
+    // --- Paged folder listings: the folder routes with a keyset cursor, streamed (see MailJson.readEmails) ---
+    // path = folder route, e.g. "api/mails/inbox"; before/beforeId = timestamp and id of the oldest mail
+    // already loaded (null for the newest page)
+    @Streaming
+    @GET
+    Call<ResponseBody> streamFolderPage(
+            @Header("Authorization") String token,
+            @Url String path,
+            @Query("before") Long before,
+            @Query("beforeId") String beforeId,
+            @Query("limit") int limit
+    );
+
     // Mark a mail as important (router.post('/:id/important'))
     @POST("api/mails/{id}/important")
     Call<ResponseBody> markMailAsImportant(
@@ -135,7 +197,8 @@ public interface ApiService {
     );
 
     // Get all important mails (router.get('/important'))
-    @GET("api/mails/important")
+    @Headers(ETagInterceptor.CONDITIONAL)
+    @GET("api/mails/important" + HEADERS_ONLY)
     Call<List<Email>> getImportantMails(
             @Header("Authorization") String token
     );
@@ -155,7 +218,8 @@ public interface ApiService {
     );
 
     // Get all starred mails (router.get('/starred'))
-    @GET("api/mails/starred")
+    @Headers(ETagInterceptor.CONDITIONAL)
+    @GET("api/mails/starred" + HEADERS_ONLY)
     Call<List<Email>> getStarredMails(
             @Header("Authorization") String token
     );
@@ -168,6 +232,14 @@ public interface ApiService {
             @Path("id") String mailId
     );
 
+    // One action on many mails (router.post('/batch')); op is read, unread, star, unstar, important,
+    // unimportant, spam, unspam or delete
+    @POST("api/mails/batch")
+    Call<ResponseBody> applyBatch(
+            @Header("Authorization") String token,
+            @Body BatchRequest request
+    );
+
     // Delete a mail (router.delete('/:id'))
     @DELETE("api/mails/{id}")
     Call<ResponseBody> deleteMail(
@@ -228,6 +300,7 @@ public interface ApiService {
 
     // --- Label Service Endpoints (Existing in original ApiService) ---
 
+    @Headers(ETagInterceptor.CONDITIONAL)
     @GET("api/labels")
     Call<List<Label>> getLabels(@Header("Authorization") String token);
 
@@ -247,7 +320,7 @@ public interface ApiService {
             @Path("id") String id
     );
 
-    @GET("api/labels/{id}/mails")
+    @GET("api/labels/{id}/mails" + HEADERS_ONLY)
     Call<List<Email>> getMailsByLabel(
             @Header("Authorization") String token,
             @Path("id") String id
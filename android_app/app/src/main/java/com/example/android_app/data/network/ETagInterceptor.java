@@ -0,0 +1,64 @@
+package com.example.android_app.data.network;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+// Conditional GETs for the folder listings. Requests marked with CONDITIONAL send back the ETag of the
+// last 200 for the same account and URL; when nothing changed the server answers 304 with no body and
+// the repository serves the list from Room. The ETags are kept in memory only. After a cold start
+// there is none yet, so the request goes through OkHttp's disk cache instead. OkHttp revalidates its
+// stored copy with the server's ETag and turns a 304 into a 200 from disk. The first listing is then
+// a small round trip rather than a full download. A request that carries our own If-None-Match is
+// passed through by OkHttp, so the 304 still reaches the repository.
+public class ETagInterceptor implements Interceptor {
+    public static final String CONDITIONAL = "X-Conditional: true";
+    private static final String MARKER = "X-Conditional";
+    private static final int MAX_ENTRIES = 64;
+
+    // account + URL -> ETag, least recently used dropped first; in memory only (see above)
+    private final Map<String, String> etags = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request original = chain.request();
+        if (original.header(MARKER) == null) {
+            return chain.proceed(original);
+        }
+
+        String key = original.header("Authorization") + " " + original.url();
+        Request.Builder builder = original.newBuilder().removeHeader(MARKER);
+        String etag;
+        synchronized (etags) {
+            etag = etags.get(key);
+        }
+        if (etag != null) {
+            builder.header("If-None-Match", etag);
+        }
+
+        Response response = chain.proceed(builder.build());
+        if (response.code() == 200) {
+            String fresh = response.header("ETag");
+            synchronized (etags) {
+                if (fresh != null) {
+                    etags.put(key, fresh);
+                } else {
+                    etags.remove(key);
+                }
+            }
+        }
+        return response;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.android_app.data.network;
+
+import com.example.android_app.model.Email;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Hand-written (de)serializer for a mail: one pass over the tokens with no reflection, and fields the
+// app does not use (createdAt, updatedAt, ...) are skipped without being built.
+public class EmailTypeAdapter extends TypeAdapter<Email> {
+    private final TypeAdapter<Email.FromUser> fromUserAdapter;
+
+    public EmailTypeAdapter(TypeAdapter<Email.FromUser> fromUserAdapter) {
+        this.fromUserAdapter = fromUserAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, Email email) throws IOException {
+        if (email == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("_id").value(email.getId());
+        out.name("fromUser");
+        fromUserAdapter.write(out, email.getFromUser());
+        out.name("from").value(email.getFrom());
+        out.name("to").value(email.getTo());
+        out.name("subject").value(email.getSubject());
+        out.name("body").value(email.getBody());
+        out.name("date").value(email.getRawDate());
+        out.name("isRead").value(email.getIsRead());
+        out.name("send").value(email.isSend());
+        out.name("isSpam").value(email.isSpam());
+        out.name("isImportant").value(email.isImportant());
+        out.name("isStarred").value(email.isStarred());
+        out.name("timestamp").value(email.getTimestamp());
+        out.name("deletedForSender").value(email.isDeletedForSender());
+        out.name("deletedForReceiver").value(email.isDeletedForReceiver());
+        writeIds(out, "labelsForSender", email.getLabelsForSender());
+        writeIds(out, "labelsForReceiver", email.getLabelsForReceiver());
+        out.endObject();
+    }
+
+    @Override
+    public Email read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Email email = new Email();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "_id":
+                    email.setId(in.nextString());
+                    break;
+                case "fromUser":
+                    email.setFromUser(fromUserAdapter.read(in));
+                    break;
+                case "from":
+                    email.setFrom(in.nextString());
+                    break;
+                case "to":
+                    email.setReceiver(in.nextString());
+                    break;
+                case "subject":
+                    email.setSubject(in.nextString());
+                    break;
+                case "body":
+                    email.setBody(in.nextString());
+                    break;
+                case "date":
+                    email.setDate(in.nextString());
+                    break;
+                case "isRead":
+                    email.setIsRead(in.nextBoolean());
+                    break;
+                case "send":
+                    email.setSend(in.nextBoolean());
+                    break;
+                case "isSpam":
+                    email.setSpam(in.nextBoolean());
+                    break;
+                case "isImportant":
+                    email.setImportant(in.nextBoolean());
+                    break;
+                case "isStarred":
+                    email.setStarred(in.nextBoolean());
+                    break;
+                case "timestamp":
+                    email.setTimestamp(in.nextLong());
+                    break;
+                case "deletedForSender":
+                    email.setDeletedForSender(in.nextBoolean());
+                    break;
+                case "deletedForReceiver":
+                    email.setDeletedForReceiver(in.nextBoolean());
+                    break;
+                case "labelsForSender":
+                    email.setLabelsForSender(readIds(in));
+                    break;
+                case "labelsForReceiver":
+                    email.setLabelsForReceiver(readIds(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return email;
+    }
+
+    private static void writeIds(JsonWriter out, String name, List<String> ids) throws IOException {
+        if (ids == null) {
+            return;
+        }
+        out.name(name).beginArray();
+        for (String id : ids) {
+            out.value(id);
+        }
+        out.endArray();
+    }
+
+    // An array of label ids, either plain strings or populated label objects (their _id or id)
+    private static List<String> readIds(JsonReader in) throws IOException {
+        List<String> ids = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.STRING) {
+                ids.add(in.nextString());
+            } else if (in.peek() == JsonToken.BEGIN_OBJECT) {
+                String id = null;
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if ((name.equals("_id") || name.equals("id")) && in.peek() == JsonToken.STRING) {
+                        id = in.nextString();
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                if (id != null) {
+                    ids.add(id);
+                }
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endArray();
+        return ids;
+    }
+}
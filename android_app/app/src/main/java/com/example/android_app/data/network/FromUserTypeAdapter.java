@@ -0,0 +1,58 @@
+package com.example.android_app.data.network;
+
+import com.example.android_app.model.Email;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+// Hand-written (de)serializer for the fromUser object of a mail, so Gson does not reflect over it.
+public class FromUserTypeAdapter extends TypeAdapter<Email.FromUser> {
+
+    @Override
+    public void write(JsonWriter out, Email.FromUser user) throws IOException {
+        if (user == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("fullName").value(user.getFullName());
+        out.name("email").value(user.getEmail());
+        out.name("profileImage").value(user.getProfileImage());
+        out.endObject();
+    }
+
+    @Override
+    public Email.FromUser read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Email.FromUser user = new Email.FromUser();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "fullName":
+                    user.setFullName(in.nextString());
+                    break;
+                case "email":
+                    user.setEmail(in.nextString());
+                    break;
+                case "profileImage":
+                    user.setProfileImage(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return user;
+    }
+}
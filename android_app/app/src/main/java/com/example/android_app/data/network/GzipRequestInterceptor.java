@@ -0,0 +1,46 @@
+package com.example.android_app.data.network;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+// Gzips JSON request bodies (express.json() inflates them on the server). Multipart uploads are left
+// alone: multer does not accept a Content-Encoding, and images are already compressed.
+public class GzipRequestInterceptor implements Interceptor {
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request original = chain.request();
+        RequestBody body = original.body();
+        if (body == null || original.header("Content-Encoding") != null || !isJson(body.contentType())) {
+            return chain.proceed(original);
+        }
+
+        // buffered so the Content-Length is known and retries can replay the body
+        Buffer compressed = new Buffer();
+        try (BufferedSink gzipSink = Okio.buffer(new GzipSink(compressed))) {
+            body.writeTo(gzipSink);
+        }
+        RequestBody gzipped = RequestBody.create(compressed.readByteString(), body.contentType());
+        Request request = original.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(original.method(), gzipped)
+                .build();
+        return chain.proceed(request);
+    }
+
+    private static boolean isJson(MediaType type) {
+        return type != null && "json".equals(type.subtype());
+    }
+}
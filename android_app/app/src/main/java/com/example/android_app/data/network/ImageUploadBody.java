@@ -0,0 +1,187 @@
+package com.example.android_app.data.network;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.media.ExifInterface;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+// A picked image uploaded as a small JPEG instead of the original file. The image is read straight
+// from the ContentResolver (no copy in the cache dir), decoded with a sample size close to the target,
+// turned upright from its EXIF orientation and scaled so its longer side is at most maxSide. A camera
+// photo of several MB goes out as a few tens of KB.
+// The work happens the first time OkHttp asks for the length or the bytes, so on its dispatcher
+// thread, never the caller's; the encoded bytes are kept so a retry does not decode again.
+public class ImageUploadBody extends RequestBody {
+    private static final MediaType JPEG = MediaType.parse("image/jpeg");
+    private static final int JPEG_QUALITY = 85;
+    private static final int CHUNK_SIZE = 8 * 1024; // progress is reported after each chunk
+
+    public interface ProgressListener {
+        // called on OkHttp's thread
+        void onProgress(long bytesWritten, long totalBytes);
+    }
+
+    private final ContentResolver contentResolver;
+    private final Uri uri;
+    private final int maxSide;
+    @Nullable
+    private final ProgressListener listener;
+    private byte[] encoded;
+
+    public ImageUploadBody(ContentResolver contentResolver, Uri uri, int maxSide, @Nullable ProgressListener listener) {
+        this.contentResolver = contentResolver;
+        this.uri = uri;
+        this.maxSide = maxSide;
+        this.listener = listener;
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return JPEG;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return encoded().length;
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        byte[] bytes = encoded();
+        for (int offset = 0; offset < bytes.length; offset += CHUNK_SIZE) {
+            int count = Math.min(CHUNK_SIZE, bytes.length - offset);
+            sink.write(bytes, offset, count);
+            if (listener != null) {
+                listener.onProgress(offset + count, bytes.length);
+            }
+        }
+    }
+
+    private synchronized byte[] encoded() throws IOException {
+        if (encoded == null) {
+            encoded = encode();
+        }
+        return encoded;
+    }
+
+    private byte[] encode() throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = open()) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Not an image: " + uri);
+        }
+
+        // the largest power of two that keeps the decoded image at least maxSide on its longer side
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        int longSide = Math.max(bounds.outWidth, bounds.outHeight);
+        options.inSampleSize = 1;
+        while (longSide / (options.inSampleSize * 2) >= maxSide) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap decoded;
+        try (InputStream in = open()) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Could not decode image: " + uri);
+        }
+
+        try {
+            Matrix matrix = orientation();
+            float scale = Math.min(1f, (float) maxSide / Math.max(decoded.getWidth(), decoded.getHeight()));
+            matrix.postScale(scale, scale);
+            // size after rotating and scaling, then shift the result back to the origin
+            float[] corners = {0, 0, decoded.getWidth(), 0, 0, decoded.getHeight(), decoded.getWidth(), decoded.getHeight()};
+            matrix.mapPoints(corners);
+            float minX = Math.min(Math.min(corners[0], corners[2]), Math.min(corners[4], corners[6]));
+            float minY = Math.min(Math.min(corners[1], corners[3]), Math.min(corners[5], corners[7]));
+            float maxX = Math.max(Math.max(corners[0], corners[2]), Math.max(corners[4], corners[6]));
+            float maxY = Math.max(Math.max(corners[1], corners[3]), Math.max(corners[5], corners[7]));
+            matrix.postTranslate(-minX, -minY);
+
+            Bitmap output = Bitmap.createBitmap(Math.max(1, Math.round(maxX - minX)),
+                    Math.max(1, Math.round(maxY - minY)), Bitmap.Config.ARGB_8888);
+            try {
+                Canvas canvas = new Canvas(output);
+                canvas.drawColor(Color.WHITE); // JPEG has no alpha: transparent PNGs get a white background, not black
+                canvas.drawBitmap(decoded, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                output.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+                return out.toByteArray();
+            } finally {
+                output.recycle();
+            }
+        } finally {
+            decoded.recycle();
+        }
+    }
+
+    // The rotation and mirroring that make the image upright; the re-encoded JPEG has no EXIF, so it
+    // has to be applied to the pixels
+    private Matrix orientation() {
+        Matrix matrix = new Matrix();
+        int orientation;
+        try (InputStream in = open()) {
+            orientation = new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            return matrix; // no readable EXIF, e.g. a PNG: already upright
+        }
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                break;
+        }
+        return matrix;
+    }
+
+    private InputStream open() throws IOException {
+        InputStream in = contentResolver.openInputStream(uri);
+        if (in == null) {
+            throw new IOException("Could not open " + uri);
+        }
+        return in;
+    }
+}
@@ -20,7 +20,7 @@ public class LabelService {
     private final ApiService api;
 
     public LabelService() {
-        this.api = ApiClient.getClient().create(ApiService.class);
+        this.api = ApiClient.getApiService(); // shared client and connection pool
     }
 
     public interface LabelServiceCallback<T> {
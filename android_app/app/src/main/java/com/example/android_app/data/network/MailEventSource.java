@@ -0,0 +1,217 @@
+package com.example.android_app.data.network;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.android_app.BuildConfig;
+import com.example.android_app.model.Email;
+import com.example.android_app.utils.AppExecutors;
+import com.example.android_app.utils.NetworkMonitor;
+import com.example.android_app.utils.SharedPrefsManager;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+// The client end of GET /api/mails/events: one long-lived server-sent events connection that hands
+// every pushed mail to the Listener, so new and changed mails arrive without polling.
+// The connection is re-opened with backoff whenever it drops, and right away when the network comes
+// back. Each reconnect sends the id of the last event it got as Last-Event-ID, so the server replays
+// what was missed, or sends a sync event when it cannot (see services/mailEvents.js).
+public class MailEventSource {
+    private static final String TAG = "MailEventSource";
+    private static final String URL = BuildConfig.SERVER_URL + "api/mails/events";
+    private static final long READ_TIMEOUT_S = 60; // the server sends a ping every 25 s
+    private static final long BASE_RETRY_MS = 1_000;
+    private static final long MAX_RETRY_MS = 60_000;
+
+    public interface Listener {
+        // both run on the stream's thread; the next event is read once they return
+        void onMail(Email mail);
+        void onSyncNeeded(); // events may have been missed: catch up through the changes feed
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final OkHttpClient client;
+    private final Gson gson = MailJson.gson();
+    private final Executor thread; // reads the stream; reconnects are scheduled onto it
+    private boolean running; // guarded by this
+    private int generation; // bumped by start() and stop(), so a loop left over from before stops; guarded by this
+    private Call call; // the open connection, guarded by this
+    private ScheduledFuture<?> reconnect; // stream thread only
+    private String lastEventId; // stream thread only; kept across reconnects
+    private int failures; // stream thread only
+
+    public MailEventSource(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        // same pool and interceptors as every other request, but a read may wait for the next ping, and
+        // no disk cache: it would copy the never-ending stream into a cache entry
+        client = ApiClient.getHttpClient().newBuilder()
+                .readTimeout(READ_TIMEOUT_S, TimeUnit.SECONDS)
+                .cache(null)
+                .build();
+        thread = AppExecutors.getInstance().longRunning("push");
+
+        NetworkMonitor.getInstance(context).addOnAvailableListener(() -> thread.execute(() -> {
+            if (reconnect != null && reconnect.cancel(false)) {
+                failures = 0;
+                connect(currentGeneration()); // waiting out a backoff: the network is back, no need to wait
+            }
+        }));
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        int started = ++generation;
+        thread.execute(() -> connect(started));
+    }
+
+    public synchronized void stop() {
+        running = false;
+        generation++;
+        if (call != null) {
+            call.cancel(); // the blocked read fails and the loop sees running is false
+            call = null;
+        }
+        thread.execute(() -> {
+            if (reconnect != null) {
+                reconnect.cancel(false);
+                reconnect = null;
+            }
+        });
+    }
+
+    private synchronized int currentGeneration() {
+        return generation;
+    }
+
+    // stream thread only
+    private void connect(int started) {
+        reconnect = null;
+        String token = SharedPrefsManager.get(context, "token");
+        if (token == null || token.isEmpty()) {
+            stop(); // signed out: start() again after signing in
+            return;
+        }
+        Request.Builder request = new Request.Builder()
+                .url(URL)
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", "text/event-stream");
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        Call opened;
+        synchronized (this) {
+            if (!running || started != generation) {
+                return;
+            }
+            opened = call = client.newCall(request.build());
+        }
+
+        try (Response response = opened.execute()) {
+            ResponseBody body = response.body();
+            if (response.code() == HttpURLConnection.HTTP_UNAUTHORIZED || response.code() == HttpURLConnection.HTTP_FORBIDDEN) {
+                Log.w(TAG, "Event stream refused: " + response.code());
+                stop(); // the token is no good; retrying would not change that
+                return;
+            }
+            if (response.isSuccessful() && body != null) {
+                failures = 0;
+                read(body.source());
+            }
+        } catch (IOException e) {
+            // dropped, timed out without a ping, or cancelled by stop()
+        }
+        synchronized (this) {
+            if (call == opened) {
+                call = null;
+            }
+            if (!running || started != generation) {
+                return;
+            }
+        }
+        long delay = Math.min(BASE_RETRY_MS << Math.min(failures, 16), MAX_RETRY_MS);
+        failures++;
+        reconnect = AppExecutors.getInstance().schedule(thread, () -> connect(started), delay);
+    }
+
+    // Parses the text/event-stream format: "field: value" lines, events ended by a blank line,
+    // lines starting with ':' are comments (the server's pings)
+    private void read(BufferedSource source) throws IOException {
+        String id = null;
+        String event = null;
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                if (event != null || data.length() > 0) {
+                    dispatch(event, data.toString());
+                    if (id != null) {
+                        lastEventId = id; // only once the event is applied
+                    }
+                }
+                id = null;
+                event = null;
+                data.setLength(0);
+                continue;
+            }
+            if (line.startsWith(":")) {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+            switch (field) {
+                case "id":
+                    id = value;
+                    break;
+                case "event":
+                    event = value;
+                    break;
+                case "data":
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                    break;
+                default:
+                    break; // retry and unknown fields are not used
+            }
+        }
+    }
+
+    private void dispatch(String event, String data) {
+        if ("mail".equals(event)) {
+            try {
+                Email mail = gson.fromJson(data, Email.class);
+                if (mail != null && mail.getId() != null) {
+                    listener.onMail(mail);
+                }
+            } catch (JsonParseException e) {
+                Log.w(TAG, "Unreadable mail event: " + e.getMessage());
+                listener.onSyncNeeded(); // the changes feed has it too
+            }
+        } else if ("sync".equals(event)) {
+            listener.onSyncNeeded();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.android_app.data.network;
+
+import com.example.android_app.model.Email;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.ResponseBody;
+
+// The app's Gson, with the mail adapters registered up front, and a reader that walks a JSON array of
+// mails straight off the socket, handing them over in chunks instead of parsing the whole body first.
+public class MailJson {
+    private static final TypeAdapter<Email.FromUser> FROM_USER_ADAPTER = new FromUserTypeAdapter();
+    private static final TypeAdapter<Email> EMAIL_ADAPTER = new EmailTypeAdapter(FROM_USER_ADAPTER);
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Email.FromUser.class, FROM_USER_ADAPTER)
+            .registerTypeAdapter(Email.class, EMAIL_ADAPTER)
+            .create();
+
+    public interface ChunkConsumer {
+        void accept(List<Email> chunk) throws IOException;
+    }
+
+    public static Gson gson() {
+        return GSON;
+    }
+
+    // Reads `[ {mail}, {mail}, ... ]` from a @Streaming body. Only one chunk of mails is held at a
+    // time; the consumer runs on the calling thread. Returns the number of mails read.
+    public static int readEmails(ResponseBody body, int chunkSize, ChunkConsumer consumer) throws IOException {
+        int count = 0;
+        List<Email> chunk = new ArrayList<>(chunkSize);
+        try (JsonReader reader = new JsonReader(body.charStream())) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Email email = EMAIL_ADAPTER.read(reader);
+                if (email == null) {
+                    continue;
+                }
+                chunk.add(email);
+                count++;
+                if (chunk.size() == chunkSize) {
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            reader.endArray();
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+        return count;
+    }
+}
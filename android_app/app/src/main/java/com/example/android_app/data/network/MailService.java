@@ -1,31 +1,24 @@
 package com.example.android_app.data.network;
 
-import com.example.android_app.BuildConfig;
 import com.example.android_app.model.Email;
 import com.example.android_app.model.EmailRequest;
 import android.util.Log;
 import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.List;
 import okhttp3.ResponseBody;
 
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 
 public class MailService {
     private final ApiService api;
-    private static final String BASE_URL = BuildConfig.SERVER_URL;
-    private Retrofit retrofit;
 
     public MailService() {
-        retrofit = new Retrofit.Builder()
-                .baseUrl(BASE_URL)
-                .addConverterFactory(GsonConverterFactory.create())
-                .build();
-        api = retrofit.create(ApiService.class);
+        api = ApiClient.getApiService(); // shared client and connection pool
     }
 
     // Method to create a draft (using EmailRequest directly as discussed previously)
@@ -143,6 +136,8 @@ public class MailService {
             public void onResponse(Call<List<Email>> call, Response<List<Email>> response) {
                 if (response.isSuccessful() && response.body() != null) {
                     callback.onSuccess(response.body());
+                } else if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    callback.onSuccess(new ArrayList<>()); // conditional request: nothing changed since the last fetch
                 } else {
                     callback.onFailure("Failed to fetch inbox. Code: " + response.code());
                 }
@@ -0,0 +1,147 @@
+package com.example.android_app.data.repository;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.util.Log;
+
+import com.example.android_app.data.local.AppDatabase;
+import com.example.android_app.data.local.MailDAO;
+import com.example.android_app.data.network.ApiClient;
+import com.example.android_app.data.network.ApiService;
+import com.example.android_app.model.Email;
+import com.example.android_app.utils.AppExecutors;
+import com.example.android_app.utils.SharedPrefsManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Response;
+
+// Loads the bodies of mails the user is likely to open next (unread and visible rows, the neighbours
+// of the mail just opened) into Room before they are tapped, so the details screen can show them
+// without a round trip. Runs one request at a time and stops when the window's byte budget is
+// spent; the budget is smaller on metered networks. Drafts are left out, they are always re-fetched.
+public class DetailPrefetcher {
+    private static final String TAG = "DetailPrefetcher";
+    private static final int MAX_PER_REQUEST = 10; // mails considered per prefetch call
+    private static final int MAX_QUEUED = 30; // further ids are dropped until these are done: fast scrolling asks for many
+    private static final long WINDOW_MS = TimeUnit.MINUTES.toMillis(15);
+    private static final long BUDGET_BYTES = 1024 * 1024;
+    private static final long METERED_BUDGET_BYTES = 256 * 1024;
+
+    private static DetailPrefetcher instance;
+
+    private final Context context;
+    private final ApiService apiService;
+    private final MailDAO mailDao;
+    private final MailRepository mailRepository;
+    private final Executor executor; // one prefetch at a time, on the shared network pool
+    private final Set<String> queued = new HashSet<>(); // ids waiting or being fetched
+    private long windowStart;
+    private long bytesInWindow;
+
+    private DetailPrefetcher(Context context) {
+        this.context = context.getApplicationContext();
+        apiService = ApiClient.getApiService();
+        mailDao = AppDatabase.getInstance(context).mailDao();
+        mailRepository = MailRepository.getInstance(context);
+        executor = AppExecutors.getInstance().serial("prefetch");
+    }
+
+    public static synchronized DetailPrefetcher getInstance(Context context) {
+        if (instance == null) {
+            instance = new DetailPrefetcher(context);
+        }
+        return instance;
+    }
+
+    // ids in priority order; the ones without a cached body are fetched while the budget lasts
+    public void prefetch(List<String> mailIds) {
+        List<String> ids = new ArrayList<>();
+        synchronized (queued) {
+            for (String id : new LinkedHashSet<>(mailIds)) {
+                if (id != null && ids.size() < MAX_PER_REQUEST && queued.size() < MAX_QUEUED && queued.add(id)) {
+                    ids.add(id);
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                prefetchNow(ids);
+            } finally {
+                synchronized (queued) {
+                    queued.removeAll(ids);
+                }
+            }
+        });
+    }
+
+    private void prefetchNow(List<String> ids) {
+        String token = SharedPrefsManager.get(context, "token");
+        if (token == null || token.isEmpty()) {
+            return;
+        }
+        // the query keeps the cached headers that still lack a body; put them back in priority order
+        Set<String> missing = new HashSet<>(mailDao.getIdsMissingBodyNow(ids));
+        for (String id : ids) {
+            if (!missing.contains(id)) {
+                continue;
+            }
+            if (!hasBudget()) {
+                Log.d(TAG, "Prefetch budget spent, skipping the rest");
+                return;
+            }
+            try {
+                Response<Email> response = apiService.getEmailDetails("Bearer " + token, id).execute();
+                Email email = response.body();
+                if (!response.isSuccessful() || email == null) {
+                    continue;
+                }
+                spend(responseSize(response, email));
+                mailRepository.cacheFullMail(email);
+            } catch (IOException e) {
+                return; // offline: the rest would fail the same way
+            }
+        }
+    }
+
+    private synchronized boolean hasBudget() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart > WINDOW_MS) {
+            windowStart = now;
+            bytesInWindow = 0;
+        }
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        boolean metered = connectivityManager == null || connectivityManager.isActiveNetworkMetered();
+        return bytesInWindow < (metered ? METERED_BUDGET_BYTES : BUDGET_BYTES);
+    }
+
+    private synchronized void spend(long bytes) {
+        bytesInWindow += bytes;
+    }
+
+    // what came over the wire when the server says so, otherwise roughly the size of the mail
+    private static long responseSize(Response<Email> response, Email email) {
+        String length = response.headers().get("Content-Length");
+        if (length != null) {
+            try {
+                return Long.parseLong(length);
+            } catch (NumberFormatException ignored) {
+                // fall through to the estimate
+            }
+        }
+        long size = 512; // headers and JSON overhead
+        size += email.getBody() != null ? email.getBody().length() : 0;
+        size += email.getSubject() != null ? email.getSubject().length() : 0;
+        return size;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.android_app.data.repository;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.example.android_app.data.local.AppDatabase;
+import com.example.android_app.data.local.DraftDao;
+import com.example.android_app.data.local.DraftEntity;
+import com.example.android_app.data.network.ApiClient;
+import com.example.android_app.data.network.ApiService;
+import com.example.android_app.model.Email;
+import com.example.android_app.model.EmailRequest;
+import com.example.android_app.utils.AppExecutors;
+import com.example.android_app.utils.SharedPrefsManager;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import retrofit2.Response;
+
+// Drafts are composed against Room: opening the composer and every edit only touch the drafts table,
+// never the network. A Drainer, as for the Outbox, sends each draft once nobody has typed into it
+// for DEBOUNCE_MS, reading the row at that moment, so a burst of edits goes out as one request with the
+// latest text. The server draft is created on the first of those requests and its id is kept next to the
+// local one. Rows are persisted, so a draft edited offline or right before the app was killed is synced
+// on the next drain.
+public class DraftStore {
+    private static final String TAG = "DraftStore";
+    private static final long DEBOUNCE_MS = 2_000;
+
+    private static DraftStore instance;
+
+    private final Context context;
+    private final ApiService apiService;
+    private final DraftDao draftDao;
+    private final MailRepository mailRepository;
+    private final Executor executor; // local writes on the shared Room writer
+    private final Drainer drainer; // all network work for drafts, one request at a time
+    private final Executor mainThread;
+
+    private DraftStore(Context context) {
+        this.context = context.getApplicationContext();
+        apiService = ApiClient.getApiService();
+        AppDatabase db = AppDatabase.getInstance(context);
+        draftDao = db.draftDao();
+        mailRepository = MailRepository.getInstance(context);
+        executor = AppExecutors.getInstance().diskIO();
+        drainer = new Drainer(context, "drafts", this::drainNow); // debounces are scheduled like retries
+        mainThread = AppExecutors.getInstance().mainThread();
+    }
+
+    public static synchronized DraftStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new DraftStore(context);
+        }
+        return instance;
+    }
+
+    // Starts editing. A server draft reuses its local row if it has one, otherwise it gets a row made
+    // from the given fields (what the caller shows of it); without a serverId a new local draft is
+    // started. Nothing is sent until the draft is edited. The callback runs on the main thread.
+    public void open(@Nullable String serverId, String to, String subject, String body,
+                     MailRepository.LocalCallback<DraftEntity> callback) {
+        String owner = getOwner();
+        executor.execute(() -> {
+            DraftEntity draft = serverId != null ? draftDao.getByServerIdNow(serverId) : null;
+            if (draft == null) {
+                draft = new DraftEntity();
+                draft.localId = DraftEntity.LOCAL_PREFIX + UUID.randomUUID();
+                draft.serverId = serverId;
+                draft.owner = owner;
+                draft.to = to;
+                draft.subject = subject;
+                draft.body = body;
+                draftDao.upsert(draft);
+            }
+            DraftEntity opened = draft;
+            mainThread.execute(() -> callback.onResult(opened));
+        });
+    }
+
+    // Saves an edit locally right away; the server gets it once the edits pause
+    public void save(String localId, String to, String subject, String body) {
+        String owner = getOwner();
+        executor.execute(() -> {
+            draftDao.edit(localId, to, subject, body, System.currentTimeMillis() + DEBOUNCE_MS);
+            drainer.execute(() -> scheduleNextDrain(owner));
+        });
+    }
+
+    // Sends the draft without waiting for the debounce, e.g. when the composer is left
+    public void flush(String localId) {
+        executor.execute(() -> {
+            draftDao.sendNow(localId);
+            drain();
+        });
+    }
+
+    // Drops a draft that never reached the server and has nothing in it. On the drainer, so it cannot
+    // race a create that is already under way.
+    public void discardIfEmpty(String localId) {
+        drainer.execute(() -> {
+            DraftEntity draft = draftDao.getNow(localId);
+            if (draft != null && draft.serverId == null && TextUtils.isEmpty(draft.to)
+                    && TextUtils.isEmpty(draft.subject) && TextUtils.isEmpty(draft.body)) {
+                draftDao.delete(localId);
+            }
+        });
+    }
+
+    // Hands the mail to the SendQueue. Runs after any save of the draft that is already going out, so a
+    // draft the server has is sent as that draft and no second copy is created.
+    public void send(String localId, String to, String subject, String body) {
+        drainer.execute(() -> {
+            DraftEntity draft = localId != null ? draftDao.getNow(localId) : null;
+            if (draft != null) {
+                draftDao.delete(localId); // nothing left to save: the queue holds the text from here on
+            }
+            SendQueue.getInstance(context).enqueue(draft != null ? draft.serverId : null, to, subject, body);
+        });
+    }
+
+    public void drain() {
+        drainer.drain();
+    }
+
+    private void drainNow() {
+        String owner = getOwner();
+        String token = SharedPrefsManager.get(context, "token");
+        if (owner == null || token == null || token.isEmpty()) {
+            return;
+        }
+        for (DraftEntity draft : draftDao.getDueNow(owner, System.currentTimeMillis())) {
+            EmailRequest request = new EmailRequest(draft.to, draft.subject, draft.body, false);
+            try {
+                Response<Email> response = draft.serverId == null
+                        ? apiService.createDraft("Bearer " + token, request).execute()
+                        : apiService.updateDraft("Bearer " + token, draft.serverId, request).execute();
+                if (response.isSuccessful() && response.body() != null) {
+                    Email saved = response.body();
+                    String serverId = saved.getId() != null ? saved.getId() : draft.serverId;
+                    draftDao.markSynced(draft.localId, serverId, draft.version);
+                    mailRepository.cacheFullMail(saved); // the drafts folder shows what the server has
+                } else if (response.code() == HttpURLConnection.HTTP_NOT_FOUND && draft.serverId != null) {
+                    // sent or deleted elsewhere: what is being typed here becomes a new draft
+                    draftDao.clearServerId(draft.localId, draft.serverId);
+                } else if (Drainer.isPermanent(response.code())) {
+                    Log.w(TAG, "Server rejected draft " + draft.localId + ": " + response.code());
+                    draftDao.markSynced(draft.localId, draft.serverId, draft.version); // kept locally, not retried
+                } else {
+                    backOff(draft);
+                }
+                if (!response.isSuccessful() && response.errorBody() != null) {
+                    response.errorBody().close();
+                }
+            } catch (IOException e) {
+                backOff(draft); // offline: the other drafts would fail the same way
+                break;
+            }
+        }
+        scheduleNextDrain(owner);
+    }
+
+    // Puts a mail the server refused to send back into Drafts (see SendQueue); it goes out again like
+    // any edit. serverId is the server draft it was sent as, if that still exists.
+    void restoreUnsent(String owner, @Nullable String serverId, String to, String subject, String body) {
+        executor.execute(() -> {
+            DraftEntity draft = serverId != null ? draftDao.getByServerIdNow(serverId) : null;
+            if (draft == null) {
+                draft = new DraftEntity();
+                draft.localId = DraftEntity.LOCAL_PREFIX + UUID.randomUUID();
+                draft.serverId = serverId;
+                draft.owner = owner;
+            }
+            draft.to = to;
+            draft.subject = subject;
+            draft.body = body;
+            draft.version = draft.syncedVersion + 1;
+            draft.attempts = 0;
+            draft.nextAttemptAt = 0;
+            draftDao.upsert(draft);
+            drain();
+        });
+    }
+
+    private void backOff(DraftEntity draft) {
+        int attempts = draft.attempts + 1;
+        draftDao.reschedule(draft.localId, attempts, Drainer.retryAt(attempts));
+    }
+
+    // drain queue only
+    private void scheduleNextDrain(String owner) {
+        drainer.scheduleAt(owner != null ? draftDao.getNextAttemptAtNow(owner) : null);
+    }
+
+    private String getOwner() {
+        String email = SharedPrefsManager.get(context, "emailAddress");
+        return email != null ? email.toLowerCase(Locale.ROOT) : null;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.android_app.data.repository;
+
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+
+import com.example.android_app.utils.AppExecutors;
+import com.example.android_app.utils.NetworkMonitor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+
+// The retry loop shared by the Outbox, DraftStore and SendQueue. Each keeps its rows in Room and
+// decides what is due; this runs its drainNow one at a time, in order with the tasks given to
+// execute(), on a thread of its own, so what the user sent never waits behind a sync or a prefetch.
+// A drain runs again when the network comes back and at the time last given to scheduleAt().
+final class Drainer {
+    private static final long BASE_BACKOFF_MS = 2_000;
+    private static final long MAX_BACKOFF_MS = 10 * 60_000;
+
+    private final Executor queue;
+    private final Runnable drainNow;
+    private ScheduledFuture<?> scheduled; // guarded by this
+
+    Drainer(Context context, String name, Runnable drainNow) {
+        queue = AppExecutors.getInstance().dedicated(name);
+        this.drainNow = drainNow;
+        // whatever was queued while offline goes out as soon as a network shows up
+        NetworkMonitor.getInstance(context).addOnAvailableListener(this::drain);
+    }
+
+    void drain() {
+        queue.execute(drainNow);
+    }
+
+    // Runs the task on the drain queue, so never alongside a drain
+    void execute(Runnable task) {
+        queue.execute(task);
+    }
+
+    // Replaces the scheduled drain; null when nothing is waiting. Call it from the drain queue, so an
+    // older answer cannot overwrite a newer one.
+    synchronized void scheduleAt(@Nullable Long at) {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        if (at != null) {
+            long delay = Math.max(0, at - System.currentTimeMillis());
+            scheduled = AppExecutors.getInstance().schedule(queue, drainNow, delay);
+        }
+    }
+
+    // 4xx other than timeouts and rate limits will not succeed on a retry
+    static boolean isPermanent(int code) {
+        return code >= 400 && code < 500 && code != 408 && code != 429;
+    }
+
+    // When to try again after the given number of failed attempts: doubling from 2 s up to 10 min
+    static long retryAt(int attempts) {
+        long delay = Math.min(BASE_BACKOFF_MS << Math.min(attempts - 1, 16), MAX_BACKOFF_MS);
+        return System.currentTimeMillis() + delay;
+    }
+}
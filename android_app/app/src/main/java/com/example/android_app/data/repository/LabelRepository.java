@@ -3,7 +3,6 @@ package com.example.android_app.data.repository;
 import android.content.Context; // Required for SharedPrefsManager
 import com.example.android_app.data.network.LabelService;
 import com.example.android_app.model.Email;
-import com.example.android_app.model.Label;
 import com.example.android_app.utils.SharedPrefsManager;
 
 import java.util.List;
@@ -15,75 +14,27 @@ public class LabelRepository {
     private final LabelService labelService;
     private final Context context; // Context to get token from SharedPrefsManager or AuthManager
 
-    public LabelRepository(Context context) {
+    private static LabelRepository instance;
+
+    private LabelRepository(Context context) {
         this.labelService = new LabelService(); // Initialize the network service
         this.context = context.getApplicationContext(); // Use application context to avoid leaks
     }
 
-    // Helper to get the token (similar to your MailRepository)
-    private String getToken(Context context) {
-        return SharedPrefsManager.get(context, "token");
-    }
-
-    /**
-     * Retrieves all labels for the authenticated user.
-     * Delegates to LabelService and passes the result/error via callback.
-     *
-     * @param callback The callback to handle the list of labels or an error.
-     */
-    public void getLabels(final LabelService.LabelServiceCallback<List<Label>> callback) {
-        String token = getToken(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token not found. Please log in.");
-            return;
-        }
-        labelService.getLabels(token, callback);
-    }
-
     /**
-     * Creates a new label.
-     *
-     * @param name     The name of the new label.
-     * @param callback The callback to handle the created label or an error.
+     * Returns the app-wide instance; the repository holds no per-screen state.
+     * The label list itself (and creating, renaming, deleting labels) lives in LabelStore.
      */
-    public void createLabel(String name, final LabelService.LabelServiceCallback<Label> callback) {
-        String token = getToken(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token not found. Please log in.");
-            return;
+    public static synchronized LabelRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new LabelRepository(context);
         }
-        labelService.createLabel(token, name, callback);
+        return instance;
     }
 
-    /**
-     * Updates an existing label's name.
-     *
-     * @param labelId The ID of the label to update.
-     * @param newName The new name for the label.
-     * @param callback The callback to handle the updated label or an error.
-     */
-    public void updateLabel(String labelId, String newName, final LabelService.LabelServiceCallback<Label> callback) {
-        String token = getToken(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token not found. Please log in.");
-            return;
-        }
-        labelService.updateLabel(token, labelId, newName, callback);
-    }
-
-    /**
-     * Deletes a label.
-     *
-     * @param labelId The ID of the label to delete.
-     * @param callback The callback to handle success or failure.
-     */
-    public void deleteLabel(String labelId, final LabelService.LabelServiceCallback<Void> callback) {
-        String token = getToken(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token not found. Please log in.");
-            return;
-        }
-        labelService.deleteLabel(token, labelId, callback);
+    // Helper to get the token (similar to your MailRepository)
+    private String getToken(Context context) {
+        return SharedPrefsManager.get(context, "token");
     }
 
     /**
@@ -0,0 +1,376 @@
+package com.example.android_app.data.repository;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+
+import com.example.android_app.data.local.AppDatabase;
+import com.example.android_app.data.local.LabelCount;
+import com.example.android_app.data.local.LabelDao;
+import com.example.android_app.data.local.LabelEntity;
+import com.example.android_app.data.local.MailDAO;
+import com.example.android_app.data.network.ApiClient;
+import com.example.android_app.data.network.ApiService;
+import com.example.android_app.data.network.LabelService;
+import com.example.android_app.model.Label;
+import com.example.android_app.utils.AppExecutors;
+import com.example.android_app.utils.SharedPrefsManager;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * The one copy of the user's labels for the whole app. Labels are cached in the Room {@code labels}
+ * table and every screen observes the same stream; an in-memory snapshot serves synchronous reads.
+ * Create, rename and delete change the cache at once and are undone if the server refuses them.
+ * A refresh is a conditional GET: a 304, or a list equal to the cached one, leaves the table (and
+ * so every observer) untouched. Per-label mail counts come from the cached mails, through the
+ * {@code mail_labels} join.
+ */
+public class LabelStore {
+    private static final long FRESH_MS = 30_000; // refreshes asked for within this long of the last are skipped
+
+    private static LabelStore instance;
+
+    private final Context context;
+    private final ApiService apiService;
+    private final LabelService labelService;
+    private final LabelDao labelDao;
+    private final MailDAO mailDao;
+    private final Executor executor; // the shared Room writer
+    private final Executor mainThread;
+    private final MediatorLiveData<List<Label>> labels = new MediatorLiveData<>();
+    private volatile List<Label> snapshot = Collections.emptyList();
+    private final MediatorLiveData<Map<String, Integer>> counts = new MediatorLiveData<>();
+
+    // main thread only
+    private LiveData<List<LabelEntity>> source;
+    private LiveData<List<LabelCount>> countSource;
+    private String sourceOwner;
+    private long lastRefreshAt;
+    private List<LabelService.LabelServiceCallback<List<Label>>> pendingRefresh;
+
+    private LabelStore(Context context) {
+        this.context = context.getApplicationContext();
+        apiService = ApiClient.getApiService();
+        labelService = new LabelService();
+        labelDao = AppDatabase.getInstance(context).labelDao();
+        mailDao = AppDatabase.getInstance(context).mailDao();
+        executor = AppExecutors.getInstance().diskIO();
+        mainThread = AppExecutors.getInstance().mainThread();
+    }
+
+    public static synchronized LabelStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new LabelStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * The signed-in user's labels, in the server's order. Call on the main thread.
+     */
+    public LiveData<List<Label>> getLabels() {
+        attach();
+        return labels;
+    }
+
+    /**
+     * How many of the cached, visible mails carry each label, by label id; labels without any are
+     * left out. Call on the main thread.
+     */
+    public LiveData<Map<String, Integer>> getMailCounts() {
+        attach();
+        return counts;
+    }
+
+    /**
+     * The labels as last emitted; safe to call from any thread.
+     */
+    public List<Label> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Checks the server for changes. Requests made while one is running, or soon after one, share
+     * its result unless {@code force} is set. Call on the main thread.
+     *
+     * @param force    check even when the labels were refreshed moments ago.
+     * @param callback told when the check is done; may be null.
+     */
+    public void refresh(boolean force, @Nullable LabelService.LabelServiceCallback<List<Label>> callback) {
+        attach();
+        if (pendingRefresh != null) {
+            if (callback != null) {
+                pendingRefresh.add(callback);
+            }
+            return;
+        }
+        String token = SharedPrefsManager.get(context, "token");
+        String owner = getOwner();
+        if (token == null || token.isEmpty() || owner == null) {
+            if (callback != null) {
+                callback.onFailure("Authentication token not found. Please log in.");
+            }
+            return;
+        }
+        if (!force && System.currentTimeMillis() - lastRefreshAt < FRESH_MS) {
+            if (callback != null) {
+                callback.onSuccess(snapshot);
+            }
+            return;
+        }
+
+        pendingRefresh = new ArrayList<>();
+        if (callback != null) {
+            pendingRefresh.add(callback);
+        }
+        apiService.getLabels("Bearer " + token).enqueue(new Callback<List<Label>>() {
+            @Override
+            public void onResponse(@NonNull Call<List<Label>> call, @NonNull Response<List<Label>> response) {
+                if (response.isSuccessful() && response.body() != null) {
+                    List<Label> fresh = response.body();
+                    executor.execute(() -> {
+                        storeIfChanged(owner, fresh);
+                        mainThread.execute(() -> finishRefresh(null));
+                    });
+                } else if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    finishRefresh(null);
+                } else {
+                    finishRefresh("Failed to fetch labels. Code: " + response.code());
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<List<Label>> call, @NonNull Throwable t) {
+                finishRefresh("Network failure: " + t.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Adds the label right away under a temporary id, which the server's id replaces once it is created.
+     *
+     * @param name     the new label's name.
+     * @param callback gets the label as the server created it, or the error after the label was removed again.
+     */
+    public void create(String name, LabelService.LabelServiceCallback<Label> callback) {
+        String token = SharedPrefsManager.get(context, "token");
+        String owner = getOwner();
+        if (token == null || token.isEmpty() || owner == null) {
+            callback.onFailure("Authentication token not found. Please log in.");
+            return;
+        }
+        String localId = LabelEntity.LOCAL_PREFIX + UUID.randomUUID();
+        executor.execute(() -> {
+            LabelEntity label = new LabelEntity();
+            label.id = localId;
+            label.owner = owner;
+            label.name = name;
+            label.position = labelDao.nextPositionNow(owner);
+            labelDao.insert(label);
+        });
+        labelService.createLabel(token, name, new LabelService.LabelServiceCallback<Label>() {
+            @Override
+            public void onSuccess(Label result) {
+                executor.execute(() -> {
+                    if (result != null && result.getId() != null) {
+                        labelDao.replaceId(localId, result.getId());
+                        labelDao.rename(result.getId(), result.getName());
+                    }
+                });
+                callback.onSuccess(result);
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                executor.execute(() -> labelDao.delete(localId));
+                callback.onFailure(errorMessage);
+            }
+        });
+    }
+
+    /**
+     * Renames the cached label right away; the old name comes back if the server refuses.
+     */
+    public void rename(String labelId, String newName, LabelService.LabelServiceCallback<Label> callback) {
+        String token = SharedPrefsManager.get(context, "token");
+        if (token == null || token.isEmpty()) {
+            callback.onFailure("Authentication token not found. Please log in.");
+            return;
+        }
+        if (labelId.startsWith(LabelEntity.LOCAL_PREFIX)) {
+            callback.onFailure("The label is still being created.");
+            return;
+        }
+        String oldName = nameOf(labelId);
+        executor.execute(() -> labelDao.rename(labelId, newName));
+        labelService.updateLabel(token, labelId, newName, new LabelService.LabelServiceCallback<Label>() {
+            @Override
+            public void onSuccess(Label result) {
+                callback.onSuccess(result);
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                if (oldName != null) {
+                    executor.execute(() -> labelDao.rename(labelId, oldName));
+                }
+                callback.onFailure(errorMessage);
+            }
+        });
+    }
+
+    /**
+     * Removes the cached label right away; it is put back if the server refuses.
+     */
+    public void delete(String labelId, LabelService.LabelServiceCallback<Void> callback) {
+        String token = SharedPrefsManager.get(context, "token");
+        if (token == null || token.isEmpty()) {
+            callback.onFailure("Authentication token not found. Please log in.");
+            return;
+        }
+        if (labelId.startsWith(LabelEntity.LOCAL_PREFIX)) {
+            callback.onFailure("The label is still being created.");
+            return;
+        }
+        LabelEntity[] removed = new LabelEntity[1];
+        executor.execute(() -> {
+            removed[0] = labelDao.getNow(labelId);
+            labelDao.delete(labelId);
+        });
+        labelService.deleteLabel(token, labelId, new LabelService.LabelServiceCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                executor.execute(() -> mailDao.deleteLabelLinks(labelId));
+                callback.onSuccess(result);
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                // queued after the delete on the same serial executor, so removed[0] is set by now
+                executor.execute(() -> {
+                    if (removed[0] != null) {
+                        labelDao.insert(removed[0]);
+                    }
+                });
+                callback.onFailure(errorMessage);
+            }
+        });
+    }
+
+    // (Re)connects the stream to the signed-in user's rows, e.g. after another account logged in
+    private void attach() {
+        String owner = getOwner();
+        if (Objects.equals(owner, sourceOwner)) {
+            return;
+        }
+        if (source != null) {
+            labels.removeSource(source);
+            source = null;
+        }
+        if (countSource != null) {
+            counts.removeSource(countSource);
+            countSource = null;
+        }
+        sourceOwner = owner;
+        lastRefreshAt = 0;
+        if (owner == null) {
+            snapshot = Collections.emptyList();
+            labels.setValue(snapshot);
+            counts.setValue(Collections.emptyMap());
+            return;
+        }
+        source = labelDao.observeLabels(owner);
+        labels.addSource(source, rows -> {
+            List<Label> list = toLabels(rows);
+            snapshot = list;
+            labels.setValue(list);
+        });
+        countSource = mailDao.observeLabelCounts(owner);
+        counts.addSource(countSource, rows -> {
+            Map<String, Integer> byLabel = new HashMap<>();
+            if (rows != null) {
+                for (LabelCount row : rows) {
+                    byLabel.put(row.labelId, row.total);
+                }
+            }
+            counts.setValue(byLabel);
+        });
+    }
+
+    private void finishRefresh(@Nullable String errorMessage) {
+        List<LabelService.LabelServiceCallback<List<Label>>> callbacks = pendingRefresh;
+        pendingRefresh = null;
+        if (errorMessage == null) {
+            lastRefreshAt = System.currentTimeMillis();
+        }
+        if (callbacks == null) {
+            return;
+        }
+        for (LabelService.LabelServiceCallback<List<Label>> callback : callbacks) {
+            if (errorMessage == null) {
+                callback.onSuccess(snapshot);
+            } else {
+                callback.onFailure(errorMessage);
+            }
+        }
+    }
+
+    // Writes only when the server's list differs from the cached one
+    private void storeIfChanged(String owner, List<Label> fresh) {
+        List<LabelEntity> rows = new ArrayList<>();
+        for (int i = 0; i < fresh.size(); i++) {
+            Label label = fresh.get(i);
+            if (label == null || label.getId() == null) {
+                continue;
+            }
+            LabelEntity row = new LabelEntity();
+            row.id = label.getId();
+            row.owner = owner;
+            row.name = label.getName();
+            row.position = i;
+            rows.add(row);
+        }
+        labelDao.replaceIfChanged(owner, rows);
+    }
+
+    private String nameOf(String labelId) {
+        for (Label label : snapshot) {
+            if (labelId.equals(label.getId())) {
+                return label.getName();
+            }
+        }
+        return null;
+    }
+
+    private static List<Label> toLabels(List<LabelEntity> rows) {
+        List<Label> result = new ArrayList<>();
+        if (rows != null) {
+            for (LabelEntity row : rows) {
+                result.add(new Label(row.id, row.name));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private String getOwner() {
+        String email = SharedPrefsManager.get(context, "emailAddress");
+        return email != null ? email.toLowerCase(Locale.ROOT) : null;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.android_app.data.repository;
+
+import androidx.annotation.NonNull;
+import androidx.paging.ExperimentalPagingApi;
+import androidx.paging.ListenableFutureRemoteMediator;
+import androidx.paging.LoadType;
+import androidx.paging.PagingState;
+
+import com.example.android_app.data.local.MailEntity;
+import com.example.android_app.data.local.MailPageKey;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.Executor;
+
+// Fills Room with older pages of a folder from the server once the user scrolls past the cached rows.
+// The paging source only ever reads Room; this class is the only place that asks the server for pages.
+@ExperimentalPagingApi
+public class MailRemoteMediator extends ListenableFutureRemoteMediator<MailPageKey, MailEntity> {
+    private final MailRepository repository;
+    private final String folder;
+    private final Executor executor;
+
+    MailRemoteMediator(MailRepository repository, String folder, Executor executor) {
+        this.repository = repository;
+        this.folder = folder;
+        this.executor = executor;
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<InitializeAction> initializeFuture() {
+        // cached rows are shown right away; InboxViewModel already revalidates the newest page
+        return Futures.immediateFuture(InitializeAction.SKIP_INITIAL_REFRESH);
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<MediatorResult> loadFuture(@NonNull LoadType loadType,
+                                                      @NonNull PagingState<MailPageKey, MailEntity> state) {
+        if (loadType == LoadType.PREPEND) {
+            // new mail arrives through the folder refresh, never by scrolling up
+            return Futures.immediateFuture(new MediatorResult.Success(true));
+        }
+        // append continues after the oldest loaded row; an empty cache starts from the newest page
+        MailEntity last = loadType == LoadType.APPEND ? state.lastItemOrNull() : null;
+        MailPageKey before = last == null ? null : MailPageKey.of(last);
+        int limit = state.getConfig().pageSize;
+
+        return Futures.submit(() -> {
+            try {
+                int received = repository.syncFolderPageNow(folder, before, limit);
+                return new MediatorResult.Success(received < limit);
+            } catch (Exception e) {
+                return new MediatorResult.Error(e);
+            }
+        }, executor);
+    }
+}
@@ -1,29 +1,55 @@
 package com.example.android_app.data.repository;
 
 import android.content.Context;
-import android.os.Handler;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.OptIn;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Transformations;
+import androidx.paging.ExperimentalPagingApi;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingDataTransforms;
+import androidx.paging.PagingLiveData;
+
 import com.example.android_app.data.local.AppDatabase;
+import com.example.android_app.data.local.FolderCount;
 import com.example.android_app.data.local.MailDAO;
 import com.example.android_app.data.local.MailEntity;
+import com.example.android_app.data.local.MailFolderQuery;
+import com.example.android_app.data.local.MailPageKey;
+import com.example.android_app.data.local.MailPagingSource;
+import com.example.android_app.data.local.MailSearchQuery;
+import com.example.android_app.data.local.PendingOpEntity;
+import com.example.android_app.data.local.SearchHit;
+import com.example.android_app.data.local.SearchOffsets;
 import com.example.android_app.data.local.UserDao;
 import com.example.android_app.data.network.ApiClient;
 import com.example.android_app.data.network.ApiService;
+import com.example.android_app.data.network.MailJson;
 import com.example.android_app.data.network.MailService;
 import com.example.android_app.model.Email;
-import com.example.android_app.model.EmailRequest;
-import com.example.android_app.model.Label;
 import com.example.android_app.model.MailLabelRequest;
+import com.example.android_app.utils.BodyCodec;
 import com.example.android_app.utils.MailMapper;
-import com.example.android_app.utils.SendCallback;
+import com.example.android_app.utils.AppExecutors;
 import com.example.android_app.utils.SharedPrefsManager;
 
+import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 import okhttp3.ResponseBody;
 import retrofit2.Call;
@@ -34,28 +60,61 @@ import retrofit2.Response;
 // It interacts with both the local database (Room) and remote API (Retrofit) to
 public class MailRepository {
 
+    // Folders that can be answered from Room; labels still go straight to the network.
+    public static final List<String> LOCAL_FOLDERS = Arrays.asList(
+            "inbox", "sent", "drafts", "spam", "trash", "important", "starred", "allmail");
+    // The server caps most folder listings at this many mails (see mailModel.js)
+    private static final int SERVER_FOLDER_LIMIT = 25;
+    private static final int PAGE_SIZE = 50;
+    private static final int SEARCH_PAGE_SIZE = 50;
+    private static final int STREAM_CHUNK = 20; // mails written to Room per transaction while a page streams in
+
     private final ApiService apiService;
     private final Context context;
     private final MailDAO mailDao;
     private final UserDao userDao;
     private final MailService mailService = new MailService();
-    private final ExecutorService executor; //so room run in another thread
-    private final Handler mainThreadHandler; 
+    private final Outbox outbox;
+    private final RetentionManager retentionManager;
+    private final AppDatabase db;
+    private final Executor executor; // the shared serial Room writer, so room run in another thread
+    private final Executor pageExecutor; // blocking page fetches for the paging mediator, one at a time
+    private final Executor mainThread;
 
-    public MailRepository(Context context) {
+    private static MailRepository instance;
+
+    private MailRepository(Context context) {
         this.context = context.getApplicationContext();
-        apiService = ApiClient.getClient().create(ApiService.class); //create object from retrofit
-        AppDatabase db = AppDatabase.getInstance(context);
+        apiService = ApiClient.getApiService(); //create object from retrofit
+        db = AppDatabase.getInstance(context);
         mailDao = db.mailDao();
         this.userDao = db.userDao();
-        executor = Executors.newSingleThreadExecutor();
-        mainThreadHandler = new Handler(context.getMainLooper());
+        outbox = Outbox.getInstance(context);
+        retentionManager = RetentionManager.getInstance(context);
+        AppExecutors executors = AppExecutors.getInstance();
+        executor = executors.diskIO();
+        pageExecutor = executors.serial("paging");
+        mainThread = executors.mainThread();
+    }
+
+    // one instance for the app, so the view models share it instead of each starting its own
+    public static synchronized MailRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new MailRepository(context);
+        }
+        return instance;
     }
 
     private String getTokenFromPrefs(Context context) {
         return SharedPrefsManager.get(context, "token");
     }
 
+    // the signed-in account, in the form stored in MailEntity.owner
+    private String getOwner() {
+        String email = SharedPrefsManager.get(context, "emailAddress");
+        return email != null ? email.toLowerCase(Locale.ROOT) : null;
+    }
+
     public void getCurrentUserEmail(LocalCallback<String> callback) {
         executor.execute(() -> {
             String email = SharedPrefsManager.get(context, "emailAddress");
@@ -63,131 +122,8 @@ public class MailRepository {
         });
     }
 
-    private void filterVisibleAsync(List<Email> emails, LocalCallback<List<Email>> callback) {
-        getCurrentUserEmail(currentUserEmail -> {
-            List<Email> filtered = new ArrayList<>();
-            for (Email email : emails) {
-                String from = email.getFrom();
-                String to = email.getTo();
-                boolean isSender = from != null && currentUserEmail != null && from.equalsIgnoreCase(currentUserEmail);
-                boolean isReceiver = to != null && currentUserEmail != null && to.equalsIgnoreCase(currentUserEmail);
-
-                boolean visibleToSender = isSender && !email.isDeletedForSender();
-                boolean visibleToReceiver = isReceiver && !email.isDeletedForReceiver();
-
-                if (visibleToSender || visibleToReceiver) {
-                    filtered.add(email);
-                }
-            }
-            callback.onResult(filtered);
-        });
-    }
-
-    private void filterDeletedAsync(List<Email> emails, LocalCallback<List<Email>> callback) {
-        getCurrentUserEmail(currentUserEmail -> {
-            List<Email> filtered = new ArrayList<>();
-            for (Email email : emails) {
-                String from = email.getFrom();
-                String to = email.getTo();
-                boolean isSender = from != null && currentUserEmail != null && from.equalsIgnoreCase(currentUserEmail);
-                boolean isReceiver = to != null && currentUserEmail != null && to.equalsIgnoreCase(currentUserEmail);
-
-                boolean deletedBySender = isSender && email.isDeletedForSender();
-                boolean deletedByReceiver = isReceiver && email.isDeletedForReceiver();
-
-                if (deletedBySender || deletedByReceiver) {
-                    filtered.add(email);
-                }
-            }
-            callback.onResult(filtered);
-        });
-    }
-    // This method creates a new draft email.
-    public void createDraft(EmailRequest request, MailService.DraftMailCallback callback) {
-        String token = SharedPrefsManager.get(context, "token");
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token missing.");
-            return;
-        }
-        mailService.createDraft(token, request, new MailService.DraftMailCallback() {
-            @Override
-            public void onSuccess(Email email) {
-                callback.onSuccess(email);
-            }
-
-            @Override
-            public void onFailure(String error) {
-                callback.onFailure(error);
-            }
-        });
-    }
-
-// This method updates an existing draft email - after it has been created.
-    public void updateDraft(String mailId, String to, String subject, String body, String token, MailService.DraftMailCallback callback) {
-        mailService.updateDraft(mailId, to, subject, body, token, new MailService.DraftMailCallback() {
-            @Override
-            public void onSuccess(Email email) {
-                // Optionally update in local DB here
-                callback.onSuccess(email);
-            }
-
-            @Override
-            public void onFailure(String error) {
-                callback.onFailure(error);
-            }
-        });
-    }
-
-// This method sends an email, either as a new email or as a draft.
-    public void sendEmail(String mailId, String to, String subject, String body, String token, SendCallback callback) {
-        //update to send = true so we can send it, either if it is a new draft or an existing one
-        EmailRequest emailRequest = new EmailRequest(to, subject, body, true);
-
-        if (mailId != null && !mailId.isEmpty()) {
-            //if mailId exist- its draft, just PATCH
-            mailService.sendDraft(mailId, token, emailRequest, new MailService.SendDraftCallback() {
-                @Override
-                public void onSuccess() {
-                    callback.onSuccess();
-                }
-
-                @Override
-                public void onFailure(String error) {
-                    callback.onFailure(error);
-                }
-            });
-        } else {
-            // if there is no MailId- its new mail :)
-            mailService.sendEmail(token, emailRequest, new MailService.SendEmailCallback() {
-                @Override
-                public void onSuccess() {
-                    callback.onSuccess();
-                }
-
-                @Override
-                public void onFailure(String error) {
-                    callback.onFailure(error);
-                }
-            });
-        }
-    }
-
-    public void deleteDraft(String mailId, ActionCallback callback) {
-        executor.execute(() -> {
-            try {
-                MailEntity mailToDelete = mailDao.getMailByIdNow(mailId);
-                if (mailToDelete != null) {
-                    mailDao.deleteMail(mailToDelete);
-                    mainThreadHandler.post(callback::onSuccess);
-                } else {
-                    mainThreadHandler.post(() -> callback.onFailure("Draft not found locally: " + mailId));
-                }
-            } catch (Exception e) {
-                mainThreadHandler.post(() -> callback.onFailure("Failed to delete draft from local DB: " + e.getMessage()));
-            }
-        });
-    }
-
+    // Drafts are saved through DraftStore, which creates and updates the server copy, and sent mails
+    // go out through SendQueue.
 
     public void getInbox(ListEmailsCallback callback) {
         String token = getTokenFromPrefs(context);
@@ -200,10 +136,10 @@ public class MailRepository {
             @Override
             public void onResponse(Call<List<Email>> call, Response<List<Email>> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    filterVisibleAsync(response.body(), filtered -> {
-                        saveEmailsToLocalDb(filtered);
-                        callback.onSuccess(filtered);
-                    });
+                    reconcileFolder("inbox", response.body());
+                    callback.onSuccess(response.body());
+                } else if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    serveCachedFolder("inbox", callback);
                 } else {
                     callback.onFailure("Server error: " + response.code());
                 }
@@ -216,7 +152,24 @@ public class MailRepository {
         });
     }
 
+    // Loads one mail for the details screen. Folder listings come without bodies, so the body is
+    // loaded here, on demand: from mail_bodies when it was fetched before, otherwise from the server,
+    // whose full mail is then cached. Drafts always come from the server since they are still edited.
     public void getEmailById(String emailId, EmailDetailsCallback callback) {
+        executor.execute(() -> {
+            MailEntity header = mailDao.getMailByIdNow(emailId);
+            String body = header != null && !MailFolderQuery.DRAFTS.equals(header.folder) ? BodyCodec.decode(mailDao.getBodyNow(emailId)) : null;
+            if (body != null) {
+                Email email = MailMapper.toEmail(header);
+                email.setBody(body);
+                mainThread.execute(() -> callback.onSuccess(email));
+            } else {
+                mainThread.execute(() -> fetchEmailById(emailId, callback));
+            }
+        });
+    }
+
+    private void fetchEmailById(String emailId, EmailDetailsCallback callback) {
         String token = getTokenFromPrefs(context);
         if (token == null || token.isEmpty()) {
             callback.onFailure("Authentication token is missing.");
@@ -227,6 +180,7 @@ public class MailRepository {
             @Override
             public void onResponse(@NonNull Call<Email> call, @NonNull Response<Email> response) {
                 if (response.isSuccessful() && response.body() != null) {
+                    cacheFullMail(response.body());
                     callback.onSuccess(response.body());
 
                 } else {
@@ -240,6 +194,37 @@ public class MailRepository {
         });
     }
 
+    // The cached header of one mail, without its body; emits again whenever the row changes, e.g. on
+    // a toggle (the Outbox writes Room first) or a sync. null while the mail is not cached.
+    public LiveData<Email> observeEmail(String emailId) {
+        return Transformations.map(mailDao.observeMailById(emailId), row -> row != null ? MailMapper.toEmail(row) : null);
+    }
+
+    // also used by DetailPrefetcher
+    void cacheFullMail(Email email) {
+        cacheFullMail(email, null);
+    }
+
+    // Caches the mail in place of the row replacedId in one transaction, so a list showing the old row
+    // (SendQueue's pending placeholder) switches to the new one without an empty frame in between
+    void cacheFullMail(Email email, @Nullable String replacedId) {
+        if (email.getId() == null) {
+            return;
+        }
+        String owner = getOwner();
+        executor.execute(() -> db.runInTransaction(() -> {
+            if (replacedId != null) {
+                mailDao.deleteByIds(Collections.singletonList(replacedId));
+            }
+            List<MailEntity> entities = new ArrayList<>();
+            entities.add(MailMapper.toEntity(email, owner));
+            outbox.overlayPending(owner, entities);
+            mailDao.insertAll(entities);
+            mailDao.storeBodies(Collections.singletonList(email));
+        }));
+        retentionManager.trim();
+    }
+
     public void listMails(ListEmailsCallback callback) {
         String token = getTokenFromPrefs(context);
         if (token == null || token.isEmpty()) {
@@ -251,10 +236,10 @@ public class MailRepository {
             @Override
             public void onResponse(@NonNull Call<List<Email>> call, @NonNull Response<List<Email>> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    filterVisibleAsync(response.body(), filtered -> {
-                        saveEmailsToLocalDb(filtered);
-                        callback.onSuccess(filtered);
-                    });
+                    reconcileFolder("allmail", response.body());
+                    callback.onSuccess(response.body());
+                } else if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    serveCachedFolder("allmail", callback);
                 } else {
                     callback.onFailure("Server error: " + response.code());
                 }
@@ -267,27 +252,149 @@ public class MailRepository {
         });
     }
 
-    public void searchMails(String query, ListEmailsCallback callback) {
-        String token = getTokenFromPrefs(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token is missing.");
-            return;
-        }
+    // Searches the cached mails first: the FTS index answers in milliseconds and works offline, and the
+    // ranked local page goes to onLocalResults right away. Then the server is asked as a second tier;
+    // what it finds is cached and onServerResults gets the final answer: the local hits followed by the
+    // mails the index did not have. Without a server answer onServerUnavailable ends the search.
+    // Cancelling the returned request drops the server call and every answer that has not gone out yet.
+    public SearchRequest searchMails(String query, SearchCallback callback) {
+        String owner = getOwner();
+        String match = MailSearchQuery.match(query);
+        SearchRequest request = new SearchRequest();
+        executor.execute(() -> {
+            if (request.isCancelled()) {
+                return;
+            }
+            List<Email> local = match == null ? new ArrayList<>() : searchLocalNow(owner, match, 0, SEARCH_PAGE_SIZE);
+            if (request.isCancelled()) {
+                return;
+            }
+            callback.onLocalResults(local);
 
-        apiService.searchMails("Bearer " + token, query).enqueue(new Callback<List<Email>>() {
-            @Override
-            public void onResponse(@NonNull Call<List<Email>> call, @NonNull Response<List<Email>> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    callback.onSuccess(response.body());
-                } else {
-                    callback.onFailure("Server error: " + response.code());
+            String token = getTokenFromPrefs(context);
+            if (token == null || token.isEmpty()) {
+                callback.onServerUnavailable();
+                return;
+            }
+            Call<List<Email>> call = apiService.searchMails("Bearer " + token, query, SEARCH_PAGE_SIZE);
+            if (!request.attach(call)) {
+                return;
+            }
+            call.enqueue(new Callback<List<Email>>() {
+                @Override
+                public void onResponse(@NonNull Call<List<Email>> call, @NonNull Response<List<Email>> response) {
+                    if (request.isCancelled()) {
+                        return;
+                    }
+                    if (response.isSuccessful() && response.body() != null) {
+                        mergeServerResults(owner, local, response.body(), request, callback);
+                    } else {
+                        Log.w("MailRepository", "Server search failed: " + response.code());
+                        callback.onServerUnavailable();
+                    }
+                }
+
+                @Override
+                public void onFailure(@NonNull Call<List<Email>> call, @NonNull Throwable t) {
+                    // offline (or cancelled): the local results stand
+                    if (!call.isCanceled()) {
+                        Log.w("MailRepository", "Server search failed: " + t.getMessage());
+                        callback.onServerUnavailable();
+                    }
                 }
+            });
+        });
+        return request;
+    }
+
+    // A running search. Superseded searches are cancelled so a slow answer for an older query can
+    // never replace the results of a newer one.
+    public static class SearchRequest {
+        private volatile boolean cancelled;
+        private Call<List<Email>> call;
+
+        public synchronized void cancel() {
+            cancelled = true;
+            if (call != null) {
+                call.cancel();
             }
+        }
 
-            @Override
-            public void onFailure(@NonNull Call<List<Email>> call, @NonNull Throwable t) {
-                callback.onFailure("Network failure: " + t.getMessage());
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        // false when the search was cancelled before its server call was made
+        synchronized boolean attach(Call<List<Email>> call) {
+            if (cancelled) {
+                return false;
+            }
+            this.call = call;
+            return true;
+        }
+    }
+
+    // One page of the ranked local results, with the matched parts of each subject marked.
+    private List<Email> searchLocalNow(String owner, String match, int offset, int limit) {
+        List<SearchHit> hits = mailDao.searchHitsNow(MailSearchQuery.hits(owner, match));
+        MailSearchQuery.rank(hits);
+        List<String> ids = new ArrayList<>();
+        for (int i = offset; i < hits.size() && i < offset + limit; i++) {
+            ids.add(hits.get(i).id);
+        }
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, MailEntity> rows = new HashMap<>();
+        for (MailEntity row : mailDao.getVisibleByIdsNow(owner, ids)) {
+            rows.put(row.id, row);
+        }
+        Map<String, String> offsets = new HashMap<>();
+        for (SearchOffsets row : mailDao.searchOffsetsNow(MailSearchQuery.offsets(match, ids))) {
+            offsets.put(row.id, row.offsets);
+        }
+        List<Email> page = new ArrayList<>();
+        for (String id : ids) {
+            MailEntity row = rows.get(id);
+            if (row != null) {
+                Email email = MailMapper.toEmail(row);
+                email.setSubjectHighlights(MailSearchQuery.subjectHighlights(offsets.get(id), row.subject));
+                page.add(email);
             }
+        }
+        return page;
+    }
+
+    private void mergeServerResults(String owner, List<Email> local, List<Email> remote, SearchRequest request, SearchCallback callback) {
+        executor.execute(() -> {
+            Set<String> shown = new HashSet<>();
+            for (Email email : local) {
+                shown.add(email.getId());
+            }
+            List<MailEntity> entities = new ArrayList<>();
+            List<String> newIds = new ArrayList<>();
+            for (Email email : remote) {
+                if (email.getId() == null) {
+                    continue;
+                }
+                entities.add(MailMapper.toEntity(email, owner));
+                if (!shown.contains(email.getId())) {
+                    newIds.add(email.getId());
+                }
+            }
+            db.runInTransaction(() -> {
+                outbox.overlayPending(owner, entities);
+                mailDao.insertAll(entities);
+            });
+            if (request.isCancelled()) {
+                return; // nobody is waiting
+            }
+            List<Email> merged = new ArrayList<>(local);
+            if (!newIds.isEmpty()) { // otherwise the index already had everything the server found
+                merged.addAll(MailMapper.toEmails(mailDao.getVisibleByIdsNow(owner, newIds)));
+            }
+            callback.onServerResults(merged);
         });
     }
 
@@ -301,11 +408,11 @@ public class MailRepository {
         apiService.getDrafts("Bearer " + token).enqueue(new Callback<List<Email>>() {
             @Override
             public void onResponse(Call<List<Email>> call, Response<List<Email>> response) {
-                if (response.isSuccessful()) {
-                    filterVisibleAsync(response.body(), filtered -> {
-                        saveEmailsToLocalDb(filtered);
-                        callback.onSuccess(filtered);
-                    });
+                if (response.isSuccessful() && response.body() != null) {
+                    reconcileFolder("drafts", response.body());
+                    callback.onSuccess(response.body());
+                } else if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    serveCachedFolder("drafts", callback);
                 } else {
                     callback.onFailure("Server error: " + response.code());
                 }
@@ -328,11 +435,11 @@ public class MailRepository {
         apiService.getSent("Bearer " + token).enqueue(new Callback<List<Email>>() {
             @Override
             public void onResponse(Call<List<Email>> call, Response<List<Email>> response) {
-                if (response.isSuccessful()) {
-                    filterVisibleAsync(response.body(), filtered -> {
-                        saveEmailsToLocalDb(filtered);
-                        callback.onSuccess(filtered);
-                    });
+                if (response.isSuccessful() && response.body() != null) {
+                    reconcileFolder("sent", response.body());
+                    callback.onSuccess(response.body());
+                } else if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    serveCachedFolder("sent", callback);
                 } else {
                     callback.onFailure("Server error: " + response.code());
                 }
@@ -356,10 +463,10 @@ public class MailRepository {
             @Override
             public void onResponse(@NonNull Call<List<Email>> call, @NonNull Response<List<Email>> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    filterVisibleAsync(response.body(), filtered -> {
-                        saveEmailsToLocalDb(filtered);
-                        callback.onSuccess(filtered);
-                    });
+                    reconcileFolder("spam", response.body());
+                    callback.onSuccess(response.body());
+                } else if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    serveCachedFolder("spam", callback);
                 } else {
                     callback.onFailure("Server error: " + response.code());
                 }
@@ -383,10 +490,10 @@ public class MailRepository {
             @Override
             public void onResponse(@NonNull Call<List<Email>> call, @NonNull Response<List<Email>> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    filterDeletedAsync(response.body(), filtered -> {
-                        saveEmailsToLocalDb(filtered);
-                        callback.onSuccess(filtered);
-                    });
+                    reconcileFolder("trash", response.body());
+                    callback.onSuccess(response.body());
+                } else if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    serveCachedFolder("trash", callback);
                 } else {
                     callback.onFailure("Server error: " + response.code());
                 }
@@ -410,10 +517,10 @@ public class MailRepository {
             @Override
             public void onResponse(@NonNull Call<List<Email>> call, @NonNull Response<List<Email>> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    filterVisibleAsync(response.body(), filtered -> {
-                        saveEmailsToLocalDb(filtered);
-                        callback.onSuccess(filtered);
-                    });
+                    reconcileFolder("important", response.body());
+                    callback.onSuccess(response.body());
+                } else if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    serveCachedFolder("important", callback);
                 } else {
                     callback.onFailure("Server error: " + response.code());
                 }
@@ -437,10 +544,10 @@ public class MailRepository {
             @Override
             public void onResponse(@NonNull Call<List<Email>> call, @NonNull Response<List<Email>> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    filterVisibleAsync(response.body(), filtered -> {
-                        saveEmailsToLocalDb(filtered);
-                        callback.onSuccess(filtered);
-                    });
+                    reconcileFolder("starred", response.body());
+                    callback.onSuccess(response.body());
+                } else if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    serveCachedFolder("starred", callback);
                 } else {
                     callback.onFailure("Server error: " + response.code());
                 }
@@ -452,278 +559,48 @@ public class MailRepository {
             }
         });
     }
-    public void deleteMail(String mailId, MailActionCallback callback) {
-        String token = getTokenFromPrefs(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token is missing.");
-            return;
-        }
-
-        apiService.deleteMail("Bearer " + token, mailId).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    callback.onSuccess(mailId);
-                } else {
-                    callback.onFailure("Failed to delete mail. Code: " + response.code());
-                }
-            }
 
-            @Override
-            public void onFailure(@NonNull Call<ResponseBody> call, @NonNull Throwable t) {
-                callback.onFailure("Network failure: " + t.getMessage());
-            }
-        });
+    // soft delete for the signed-in user; the mail moves to trash right away
+    public void deleteMail(String mailId, MailActionCallback callback) {
+        outbox.enqueue(mailId, PendingOpEntity.DELETE, true, callback);
     }
 
     public void markAsRead(String mailId, MailActionCallback callback) {
-        String token = getTokenFromPrefs(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token is missing.");
-            return;
-        }
-
-        apiService.markAsRead("Bearer " + token, mailId).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    // ** Update Room Database **
-                    executor.execute(() -> {
-                        MailEntity existingMail = mailDao.getMailByIdNow(mailId);
-                        if (existingMail != null) {
-                            existingMail.isRead = true;
-                            mailDao.insertMail(existingMail);
-                        }
-                    });
-                    callback.onSuccess(mailId);
-                } else {
-                    callback.onFailure("Failed to mark as read. Code: " + response.code());
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<ResponseBody> call, @NonNull Throwable t) {
-                callback.onFailure("Network failure: " + t.getMessage());
-            }
-        });
+        outbox.enqueue(mailId, PendingOpEntity.READ, true, callback);
     }
 
     public void markAsUnread(String mailId, MailActionCallback callback) {
-        String token = getTokenFromPrefs(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token is missing.");
-            return;
-        }
-
-        apiService.markAsUnread("Bearer " + token, mailId).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    executor.execute(() -> {
-                        MailEntity existingMail = mailDao.getMailByIdNow(mailId);
-                        if (existingMail != null) {
-                            existingMail.isRead = false;
-                            mailDao.insertMail(existingMail);
-                        }
-                    });
-                    callback.onSuccess(mailId);
-                } else {
-                    callback.onFailure("Failed to mark as unread. Code: " + response.code());
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<ResponseBody> call, @NonNull Throwable t) {
-                callback.onFailure("Network failure: " + t.getMessage());
-            }
-        });
+        outbox.enqueue(mailId, PendingOpEntity.READ, false, callback);
     }
 
     public void markMailAsImportant(String mailId, MailActionCallback callback) {
-        String token = getTokenFromPrefs(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token is missing.");
-            return;
-        }
-
-        apiService.markMailAsImportant("Bearer " + token, mailId).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    executor.execute(() -> {
-                        MailEntity existingMail = mailDao.getMailByIdNow(mailId);
-                        if (existingMail != null) {
-                            existingMail.isImportant = true;
-                            mailDao.insertMail(existingMail);
-                        }
-                        new Handler(context.getMainLooper()).post(() -> callback.onSuccess(mailId));
-                    });
-                } else {
-                    callback.onFailure("Server error: " + response.code());
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<ResponseBody> call, @NonNull Throwable t) {
-                callback.onFailure("Network failure: " + t.getMessage());
-            }
-        });
+        outbox.enqueue(mailId, PendingOpEntity.IMPORTANT, true, callback);
     }
 
     public void unmarkMailAsImportant(String mailId, MailActionCallback callback) {
-        String token = getTokenFromPrefs(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token is missing.");
-            return;
-        }
-
-        apiService.unmarkMailAsImportant("Bearer " + token, mailId).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    executor.execute(() -> {
-                        MailEntity existingMail = mailDao.getMailByIdNow(mailId);
-                        if (existingMail != null) {
-                            existingMail.isImportant = false;
-                            mailDao.insertMail(existingMail);
-                        }
-                        new Handler(context.getMainLooper()).post(() -> callback.onSuccess(mailId));
-                    });
-                } else {
-                    callback.onFailure("Server error: " + response.code());
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<ResponseBody> call, @NonNull Throwable t) {
-                callback.onFailure("Network failure: " + t.getMessage());
-            }
-        });
+        outbox.enqueue(mailId, PendingOpEntity.IMPORTANT, false, callback);
     }
 
     public void markMailAsStarred(String mailId, MailActionCallback callback) {
-        String token = getTokenFromPrefs(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token is missing.");
-            return;
-        }
-
-        apiService.markMailAsStarred("Bearer " + token, mailId).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    executor.execute(() -> {
-                        MailEntity existingMail = mailDao.getMailByIdNow(mailId);
-                        if (existingMail != null) {
-                            existingMail.isStarred = true;
-                            mailDao.insertMail(existingMail);
-                        }
-                        new Handler(context.getMainLooper()).post(() -> callback.onSuccess(mailId));
-                    });
-                } else {
-                    callback.onFailure("Server error: " + response.code());
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<ResponseBody> call, @NonNull Throwable t) {
-                callback.onFailure("Network failure: " + t.getMessage());
-            }
-        });
+        outbox.enqueue(mailId, PendingOpEntity.STAR, true, callback);
     }
 
     public void unmarkMailAsStarred(String mailId, MailActionCallback callback) {
-        String token = getTokenFromPrefs(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token is missing.");
-            return;
-        }
-
-        apiService.unmarkMailAsStarred("Bearer " + token, mailId).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    executor.execute(() -> {
-                        MailEntity existingMail = mailDao.getMailByIdNow(mailId);
-                        if (existingMail != null) {
-                            existingMail.isStarred = false;
-                            mailDao.insertMail(existingMail);
-                        }
-                        new Handler(context.getMainLooper()).post(() -> callback.onSuccess(mailId));
-                    });
-                } else {
-                    callback.onFailure("Server error: " + response.code());
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<ResponseBody> call, @NonNull Throwable t) {
-                callback.onFailure("Network failure: " + t.getMessage());
-            }
-        });
+        outbox.enqueue(mailId, PendingOpEntity.STAR, false, callback);
     }
 
     public void markMailAsSpam(String mailId, MailActionCallback callback) {
-        String token = getTokenFromPrefs(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token is missing.");
-            return;
-        }
-
-        apiService.markMailAsSpam("Bearer " + token, mailId).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    executor.execute(() -> {
-                        MailEntity existingMail = mailDao.getMailByIdNow(mailId);
-                        if (existingMail != null) {
-                            existingMail.isSpam = true;
-                            mailDao.insertMail(existingMail);
-                        }
-                    });
-                    callback.onSuccess(mailId);
-                } else {
-                    callback.onFailure("Server error: " + response.code());
-                }
-            }
-            @Override
-            public void onFailure(@NonNull Call<ResponseBody> call, @NonNull Throwable t) {
-                callback.onFailure("Network failure: " + t.getMessage());
-            }
-        });
+        outbox.enqueue(mailId, PendingOpEntity.SPAM, true, callback);
     }
 
     public void unmarkMailAsSpam(String mailId, MailActionCallback callback) {
-        String token = getTokenFromPrefs(context);
-        if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token is missing.");
-            return;
-        }
-
-        apiService.unmarkMailAsSpam("Bearer " + token, mailId).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    executor.execute(() -> {
-                        MailEntity existingMail = mailDao.getMailByIdNow(mailId);
-                        if (existingMail != null) {
-                            existingMail.isSpam = false;
-                            mailDao.insertMail(existingMail);
-                        } else {
-                            Log.w("MailRepository", "Mail not found in local DB, cannot update: " + mailId);
-                        }
-                    });
-                    callback.onSuccess(mailId);
-                } else {
-                    callback.onFailure("Server error: " + response.code());
-                }
-            }
+        outbox.enqueue(mailId, PendingOpEntity.SPAM, false, callback);
+    }
 
-            @Override
-            public void onFailure(@NonNull Call<ResponseBody> call, @NonNull Throwable t) {
-                callback.onFailure("Network failure: " + t.getMessage());
-            }
-        });
+    // One action (a PendingOpEntity action and the value it sets) on every selected mail: Room is
+    // updated in a single transaction and the server gets one POST /api/mails/batch.
+    public void applyBatch(List<String> mailIds, String action, boolean value, ActionCallback callback) {
+        outbox.enqueueAll(mailIds, action, value, callback);
     }
 
     public void addMailToLabel(String emailId, String labelId, MailActionCallback callback) {
@@ -739,6 +616,7 @@ public class MailRepository {
             @Override
             public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
                 if (response.isSuccessful()) {
+                    executor.execute(() -> mailDao.insertLabelLink(emailId, labelId));
                     callback.onSuccess(emailId);
                 } else {
                     String errorMsg = "Failed to add label. Code: " + response.code();
@@ -773,6 +651,7 @@ public class MailRepository {
             @Override
             public void onResponse(@NonNull Call<Void> call, @NonNull Response<Void> response) {
                 if (response.isSuccessful()) {
+                    executor.execute(() -> mailDao.deleteLabelLink(emailId, labelId));
                     callback.onSuccess(emailId);
                 } else {
                     String errorMsg = "Failed to remove label. Code: " + response.code();
@@ -805,10 +684,7 @@ public class MailRepository {
             @Override
             public void onResponse(@NonNull Call<List<Email>> call, @NonNull Response<List<Email>> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    filterVisibleAsync(response.body(), filtered -> {
-                        saveEmailsToLocalDb(filtered);
-                        callback.onSuccess(filtered);
-                    });
+                    storeLabelListing(labelId, response.body(), callback);
                 } else {
                     callback.onFailure("Server error: " + response.code());
                 }
@@ -822,28 +698,182 @@ public class MailRepository {
     }
 
 
-        private void saveEmailsToLocalDb(List<Email> emails) {
-            executor.execute(() -> {
-                List<MailEntity> entities = new ArrayList<>();
-                for (Email email : emails) {
-                    if (email.getId() == null) {
-                        continue;
-                    }
-                    entities.add(MailMapper.toEntity(email));
+    // A label's mails, read from Room through mail_labels: shown at once from the cache and emitted
+    // again whenever a listing, a delta sync or an action changes the rows or their labels.
+    public LiveData<List<Email>> observeLabelMails(String labelId) {
+        return Transformations.map(mailDao.observeLabelMails(getOwner(), labelId), MailMapper::toEmails);
+    }
+
+    // A label's full listing from the server: store the rows and make mail_labels say exactly these
+    // mails carry the label, then let SQLite drop the ones the current user cannot see (deleted or
+    // not theirs) and sort the rest.
+    private void storeLabelListing(String labelId, List<Email> emails, ListEmailsCallback callback) {
+        String owner = getOwner();
+        executor.execute(() -> {
+            List<MailEntity> entities = new ArrayList<>();
+            List<String> ids = new ArrayList<>();
+            for (Email email : emails) {
+                if (email.getId() == null) {
+                    continue;
                 }
+                entities.add(MailMapper.toEntity(email, owner));
+                ids.add(email.getId());
+            }
+            db.runInTransaction(() -> {
+                outbox.overlayPending(owner, entities);
                 mailDao.insertAll(entities);
+                mailDao.replaceLabelMails(labelId, ids);
             });
+            callback.onSuccess(ids.isEmpty() ? new ArrayList<>() : MailMapper.toEmails(mailDao.getVisibleByIdsNow(owner, ids)));
+        });
+    }
+
+    // Writes a fresh server listing of a folder into Room. Cached rows that the folder would show
+    // inside the window the server answered for, but that the server no longer returned, are taken out
+    // of the folder (see MailDAO.removeFromFolder); rows with queued actions are left alone.
+    private void reconcileFolder(String folder, List<Email> emails) {
+        String owner = getOwner();
+        executor.execute(() -> storeFolderPage(owner, folder, emails, Long.MAX_VALUE, SERVER_FOLDER_LIMIT));
+    }
+
+    // 304 on a folder listing: nothing changed since the last full answer, which reconcileFolder
+    // stored, so the list comes out of Room (queued on the same executor, after that write).
+    private void serveCachedFolder(String folder, ListEmailsCallback callback) {
+        String owner = getOwner();
+        executor.execute(() -> callback.onSuccess(MailMapper.toEmails(mailDao.getFolderHeadNow(owner, folder, SERVER_FOLDER_LIMIT))));
+    }
+
+    // Same as reconcileFolder for one page of a folder: `until` is the timestamp of the cursor the page
+    // was requested with (exclusive), `pageSize` the limit that was asked for. Runs on the calling thread.
+    private void storeFolderPage(String owner, String folder, List<Email> emails, long until, int pageSize) {
+        Set<String> freshIds = new HashSet<>();
+        List<MailEntity> entities = toEntities(owner, emails, freshIds);
+        // a full page means older mails exist on the server that we did not see
+        long since = emails.size() >= pageSize ? oldestTimestamp(entities) : Long.MIN_VALUE;
+        db.runInTransaction(() -> {
+            outbox.overlayPending(owner, entities);
+            mailDao.reconcileFolder(folder, entities, staleIds(owner, folder, freshIds, since, until));
+        });
+    }
+
+    private static List<MailEntity> toEntities(String owner, List<Email> emails, Set<String> freshIds) {
+        List<MailEntity> entities = new ArrayList<>();
+        for (Email email : emails) {
+            if (email.getId() == null) {
+                continue;
+            }
+            entities.add(MailMapper.toEntity(email, owner));
+            freshIds.add(email.getId());
+        }
+        return entities;
+    }
+
+    private static long oldestTimestamp(List<MailEntity> entities) {
+        long oldest = Long.MAX_VALUE;
+        for (MailEntity entity : entities) {
+            oldest = Math.min(oldest, entity.timestamp);
+        }
+        return oldest;
+    }
+
+    // cached rows of the folder in [since, until) that the server did not return
+    private List<String> staleIds(String owner, String folder, Set<String> freshIds, long since, long until) {
+        List<String> staleIds = new ArrayList<>();
+        for (String id : mailDao.getFolderIdsBetweenNow(owner, folder, since, until)) {
+            if (!freshIds.contains(id)) {
+                staleIds.add(id);
+            }
+        }
+        return staleIds;
+    }
+
+    // Pages a cached folder out of Room. The mediator pulls older pages from the server once the
+    // user scrolls past what is stored; the newest page is revalidated by the regular folder getters.
+    @OptIn(markerClass = ExperimentalPagingApi.class)
+    public LiveData<PagingData<Email>> getFolderPages(String folder) {
+        String owner = getOwner();
+        Executor queryExecutor = db.getQueryExecutor();
+        Pager<MailPageKey, MailEntity> pager = new Pager<>(
+                new PagingConfig(PAGE_SIZE, PAGE_SIZE, false, PAGE_SIZE * 2),
+                null,
+                new MailRemoteMediator(this, folder, pageExecutor),
+                () -> new MailPagingSource(db, owner, folder, queryExecutor));
+        return Transformations.map(PagingLiveData.getLiveData(pager),
+                page -> PagingDataTransforms.map(page, queryExecutor, MailMapper::toEmail));
+    }
+
+    // Fetches the page of a folder that comes right after `before` (the newest page when null) and
+    // reconciles it into Room. The body is streamed: every STREAM_CHUNK mails are written as they are
+    // parsed, so the pager shows the first rows before the download is done and the page is never held
+    // in memory as a whole. Stale rows leave the folder once the full page is known.
+    // Blocking - only called from the mediator's executor.
+    int syncFolderPageNow(String folder, @Nullable MailPageKey before, int limit) throws IOException {
+        String token = getTokenFromPrefs(context);
+        if (token == null || token.isEmpty()) {
+            throw new IOException("Authentication token is missing.");
+        }
+        Long beforeTimestamp = before == null ? null : before.timestamp;
+        String beforeId = before == null ? null : before.id;
+        Response<ResponseBody> response = apiService.streamFolderPage("Bearer " + token, folderPath(folder),
+                beforeTimestamp, beforeId, limit).execute();
+        if (!response.isSuccessful() || response.body() == null) {
+            if (response.errorBody() != null) {
+                response.errorBody().close();
+            }
+            throw new IOException("Server error: " + response.code());
         }
 
+        String owner = getOwner();
+        Set<String> freshIds = new HashSet<>();
+        long[] oldest = {Long.MAX_VALUE};
+        int count;
+        try (ResponseBody body = response.body()) {
+            count = MailJson.readEmails(body, STREAM_CHUNK, chunk -> {
+                List<MailEntity> entities = toEntities(owner, chunk, freshIds);
+                oldest[0] = Math.min(oldest[0], oldestTimestamp(entities));
+                db.runInTransaction(() -> {
+                    outbox.overlayPending(owner, entities);
+                    mailDao.insertAll(entities);
+                });
+            });
+        }
+        long until = beforeTimestamp == null ? Long.MAX_VALUE : beforeTimestamp;
+        long since = count >= limit ? oldest[0] : Long.MIN_VALUE;
+        db.runInTransaction(() -> mailDao.removeFromFolder(folder, staleIds(owner, folder, freshIds, since, until)));
+        return count;
+    }
+
+    private static String folderPath(String folder) {
+        switch (folder) {
+            case "inbox":
+            case "sent":
+            case "drafts":
+            case "spam":
+            case "important":
+            case "starred":
+                return "api/mails/" + folder + ApiService.HEADERS_ONLY;
+            case "trash":
+                return "api/mails/deleted" + ApiService.HEADERS_ONLY;
+            case "allmail":
+                return "api/mails" + ApiService.HEADERS_ONLY;
+            default:
+                throw new IllegalArgumentException("Folder is not cached locally: " + folder);
+        }
+    }
+
     public void fetchInboxAndSaveToLocal(ActionCallback callback) {
         String token = getTokenFromPrefs(context);
 
         mailService.getInbox(token, new MailService.InboxCallback() {
             @Override
             public void onSuccess(List<Email> emails) {
-                List<MailEntity> entities = MailMapper.toEntities(emails);
+                String owner = getOwner();
+                List<MailEntity> entities = MailMapper.toEntities(emails, owner);
                 executor.execute(() -> {
-                    mailDao.insertAll(entities);
+                    db.runInTransaction(() -> {
+                        outbox.overlayPending(owner, entities);
+                        mailDao.insertAll(entities);
+                    });
                     callback.onSuccess();
                 });
             }
@@ -855,31 +885,59 @@ public class MailRepository {
         });
     }
 
-    //Method to fetch all labels (for the "Add to label" menu in InboxActivity)
-    public void getLabels(LabelsCallback callback) {
+    // Mail count of every folder, keyed like the server's /api/mails/counts. Without a connection the
+    // counts come from the cached rows instead, so they are a lower bound until the next refresh.
+    public void getMailCounts(LocalCallback<Map<String, Integer>> callback) {
         String token = getTokenFromPrefs(context);
         if (token == null || token.isEmpty()) {
-            callback.onFailure("Authentication token is missing.");
+            countCachedMails(callback);
             return;
         }
 
-        apiService.getLabels("Bearer " + token).enqueue(new Callback<List<Label>>() {
+        apiService.getMailCounts("Bearer " + token).enqueue(new Callback<Map<String, Integer>>() {
             @Override
-            public void onResponse(@NonNull Call<List<Label>> call, @NonNull Response<List<Label>> response) {
+            public void onResponse(@NonNull Call<Map<String, Integer>> call, @NonNull Response<Map<String, Integer>> response) {
                 if (response.isSuccessful() && response.body() != null) {
-                    callback.onSuccess(response.body());
+                    callback.onResult(response.body());
                 } else {
-                    callback.onFailure("Failed to fetch labels. Code: " + response.code());
+                    countCachedMails(callback);
                 }
             }
 
             @Override
-            public void onFailure(@NonNull Call<List<Label>> call, @NonNull Throwable t) {
-                callback.onFailure("Network failure: " + t.getMessage());
+            public void onFailure(@NonNull Call<Map<String, Integer>> call, @NonNull Throwable t) {
+                countCachedMails(callback);
             }
         });
     }
 
+    private void countCachedMails(LocalCallback<Map<String, Integer>> callback) {
+        String owner = getOwner();
+        executor.execute(() -> {
+            Map<String, Integer> counts = new HashMap<>();
+            int sent = 0;
+            int starred = 0;
+            int important = 0;
+            for (FolderCount row : mailDao.countByFolderNow(owner)) {
+                sent += row.sent;
+                if (!MailFolderQuery.TRASH.equals(row.folder) && !MailFolderQuery.HIDDEN.equals(row.folder)) {
+                    starred += row.starred;
+                    important += row.important;
+                }
+                if (MailFolderQuery.INBOX.equals(row.folder) || MailFolderQuery.DRAFTS.equals(row.folder)
+                        || MailFolderQuery.SPAM.equals(row.folder)) {
+                    counts.put(row.folder, row.total);
+                } else if (MailFolderQuery.TRASH.equals(row.folder)) {
+                    counts.put("deleted", row.total);
+                }
+            }
+            counts.put("sent", sent);
+            counts.put("starred", starred);
+            counts.put("important", important);
+            callback.onResult(counts);
+        });
+    }
+
     public interface EmailDetailsCallback {
         void onSuccess(Email email);
         void onFailure(String error);
@@ -899,13 +957,16 @@ public class MailRepository {
         void onFailure(String error);
     }
 
-    public interface ActionCallback {
-        void onSuccess();
-        void onFailure(String error);
+    // Answers of searchMails, all on a background thread. onLocalResults comes first; then exactly one
+    // of the other two, unless the search is cancelled.
+    public interface SearchCallback {
+        void onLocalResults(List<Email> emails);
+        void onServerResults(List<Email> emails); // the final answer
+        void onServerUnavailable(); // offline or failed: the local results are all there is
     }
 
-    public interface LabelsCallback {
-        void onSuccess(List<Label> labels);
+    public interface ActionCallback {
+        void onSuccess();
         void onFailure(String error);
     }
 }
\ No newline at end of file
@@ -0,0 +1,251 @@
+package com.example.android_app.data.repository;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.android_app.data.local.AppDatabase;
+import com.example.android_app.data.local.MailDAO;
+import com.example.android_app.data.local.MailEntity;
+import com.example.android_app.data.local.PendingOpDao;
+import com.example.android_app.data.local.PendingOpEntity;
+import com.example.android_app.data.network.ApiClient;
+import com.example.android_app.data.network.ApiService;
+import com.example.android_app.model.BatchRequest;
+import com.example.android_app.utils.AppExecutors;
+import com.example.android_app.utils.MailMapper;
+import com.example.android_app.utils.SharedPrefsManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
+
+// Mail actions (star, important, read, spam, delete) are applied to Room right away and queued in
+// the pending_ops table; a background drainer sends them to the server with retry and backoff,
+// grouping ops of the same kind into one batch request.
+// The queue is persisted, so actions taken offline go out once the network is back.
+public class Outbox {
+    private static final String TAG = "Outbox";
+    private static final int BATCH_SIZE = 100; // ops read per pass; the server takes up to 500 ids per batch
+
+    private static Outbox instance;
+
+    private final Context context;
+    private final ApiService apiService;
+    private final AppDatabase db;
+    private final MailDAO mailDao;
+    private final PendingOpDao pendingOpDao;
+    private final Executor executor; // local writes on the shared Room writer, never waits on the network
+    private final Drainer drainer; // one drain at a time, so ops go out in order
+    private final Executor mainThread;
+
+    private Outbox(Context context) {
+        this.context = context.getApplicationContext();
+        apiService = ApiClient.getApiService();
+        db = AppDatabase.getInstance(context);
+        mailDao = db.mailDao();
+        pendingOpDao = db.pendingOpDao();
+        executor = AppExecutors.getInstance().diskIO();
+        drainer = new Drainer(context, "outbox", this::drainNow);
+        mainThread = AppExecutors.getInstance().mainThread();
+    }
+
+    public static synchronized Outbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new Outbox(context);
+        }
+        return instance;
+    }
+
+    // Sets the flag on the cached mail and queues it for the server in one transaction. The callback
+    // runs on the main thread once Room has the change, i.e. before the server has seen it.
+    public void enqueue(String mailId, String action, boolean value, MailRepository.MailActionCallback callback) {
+        String owner = getOwner();
+        executor.execute(() -> {
+            applyLocally(owner, Collections.singletonList(mailId), action, value);
+            mainThread.execute(() -> callback.onSuccess(mailId));
+            drain();
+        });
+    }
+
+    // Same as enqueue for a multi-select: every row changes in one transaction and the drainer
+    // sends the queued ops as a single POST /api/mails/batch.
+    public void enqueueAll(List<String> mailIds, String action, boolean value, MailRepository.ActionCallback callback) {
+        String owner = getOwner();
+        List<String> ids = new ArrayList<>(mailIds);
+        executor.execute(() -> {
+            applyLocally(owner, ids, action, value);
+            mainThread.execute(callback::onSuccess);
+            drain();
+        });
+    }
+
+    private void applyLocally(String owner, List<String> mailIds, String action, boolean value) {
+        db.runInTransaction(() -> {
+            for (String mailId : mailIds) {
+                MailEntity mail = mailDao.getMailByIdNow(mailId);
+                // a mail that is not cached is queued anyway; its state is assumed to be the opposite
+                boolean current = mail != null ? MailMapper.getFlag(mail, action) : !value;
+                if (mail != null) {
+                    MailMapper.setFlag(mail, action, value);
+                    mailDao.insertMail(mail);
+                }
+                pendingOpDao.record(owner, mailId, action, value, current);
+            }
+        });
+    }
+
+    // Re-applies queued actions on rows that just came from the server, so a refresh does not undo
+    // a toggle the server has not confirmed yet. Call it inside the transaction that writes the rows.
+    public void overlayPending(String owner, List<MailEntity> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>();
+        for (MailEntity row : rows) {
+            ids.add(row.id);
+        }
+        List<PendingOpEntity> ops = pendingOpDao.getForMailsNow(owner, ids);
+        if (ops.isEmpty()) {
+            return;
+        }
+        for (MailEntity row : rows) {
+            for (PendingOpEntity op : ops) {
+                if (op.mailId.equals(row.id)) {
+                    MailMapper.setFlag(row, op.action, op.value);
+                }
+            }
+        }
+    }
+
+    public void drain() {
+        drainer.drain();
+    }
+
+    private void drainNow() {
+        String owner = getOwner();
+        String token = SharedPrefsManager.get(context, "token");
+        if (owner == null || token == null || token.isEmpty()) {
+            return;
+        }
+
+        List<PendingOpEntity> due;
+        while (!(due = pendingOpDao.getDueNow(owner, System.currentTimeMillis(), BATCH_SIZE)).isEmpty()) {
+            // ops that set the same flag to the same value go out together
+            Map<String, List<PendingOpEntity>> groups = new LinkedHashMap<>();
+            for (PendingOpEntity op : due) {
+                String key = op.action + ":" + op.value;
+                List<PendingOpEntity> group = groups.get(key);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    groups.put(key, group);
+                }
+                group.add(op);
+            }
+            for (List<PendingOpEntity> group : groups.values()) {
+                for (PendingOpEntity op : group) {
+                    pendingOpDao.markInFlight(op.mailId, op.action); // a toggle back now has to be sent too
+                }
+                try {
+                    Response<ResponseBody> response = call("Bearer " + token, group).execute();
+                    if (response.body() != null) {
+                        response.body().close();
+                    }
+                    for (PendingOpEntity op : group) {
+                        if (response.isSuccessful()) {
+                            pendingOpDao.confirm(op);
+                        } else if (Drainer.isPermanent(response.code())) {
+                            Log.w(TAG, "Server rejected " + op.action + " on " + op.mailId + ": " + response.code());
+                            reject(op);
+                        } else {
+                            backOff(op);
+                        }
+                    }
+                } catch (IOException e) {
+                    // offline: the rest of the queue would fail the same way, wait for the retry
+                    for (PendingOpEntity op : group) {
+                        backOff(op);
+                    }
+                    scheduleNextDrain(owner);
+                    return;
+                }
+            }
+        }
+        scheduleNextDrain(owner);
+    }
+
+    private Call<ResponseBody> call(String token, List<PendingOpEntity> group) {
+        PendingOpEntity first = group.get(0);
+        if (group.size() == 1) {
+            return call(token, first);
+        }
+        List<String> ids = new ArrayList<>();
+        for (PendingOpEntity op : group) {
+            ids.add(op.mailId);
+        }
+        return apiService.applyBatch(token, new BatchRequest(ids, batchOp(first.action, first.value)));
+    }
+
+    // name of the action in POST /api/mails/batch
+    private static String batchOp(String action, boolean value) {
+        if (PendingOpEntity.DELETE.equals(action)) {
+            return "delete";
+        }
+        return value ? action : "un" + action;
+    }
+
+    private Call<ResponseBody> call(String token, PendingOpEntity op) {
+        switch (op.action) {
+            case PendingOpEntity.STAR:
+                return op.value ? apiService.markMailAsStarred(token, op.mailId) : apiService.unmarkMailAsStarred(token, op.mailId);
+            case PendingOpEntity.IMPORTANT:
+                return op.value ? apiService.markMailAsImportant(token, op.mailId) : apiService.unmarkMailAsImportant(token, op.mailId);
+            case PendingOpEntity.READ:
+                return op.value ? apiService.markAsRead(token, op.mailId) : apiService.markAsUnread(token, op.mailId);
+            case PendingOpEntity.SPAM:
+                return op.value ? apiService.markMailAsSpam(token, op.mailId) : apiService.unmarkMailAsSpam(token, op.mailId);
+            case PendingOpEntity.DELETE:
+                return apiService.deleteMail(token, op.mailId);
+            default:
+                throw new IllegalArgumentException("Unknown mail action: " + op.action);
+        }
+    }
+
+    // Gives up on an op the server refused and puts the cached mail back the way the server has it,
+    // unless the user has changed the flag again since.
+    private void reject(PendingOpEntity sent) {
+        db.runInTransaction(() -> {
+            PendingOpEntity op = pendingOpDao.reject(sent);
+            if (op == null) {
+                return;
+            }
+            MailEntity mail = mailDao.getMailByIdNow(op.mailId);
+            if (mail != null) {
+                MailMapper.setFlag(mail, op.action, op.serverValue);
+                mailDao.insertMail(mail);
+            }
+        });
+    }
+
+    private void backOff(PendingOpEntity op) {
+        int attempts = op.attempts + 1;
+        pendingOpDao.reschedule(op.mailId, op.action, attempts, Drainer.retryAt(attempts));
+    }
+
+    private void scheduleNextDrain(String owner) {
+        drainer.scheduleAt(pendingOpDao.getNextAttemptAtNow(owner));
+    }
+
+    private String getOwner() {
+        String email = SharedPrefsManager.get(context, "emailAddress");
+        return email != null ? email.toLowerCase(Locale.ROOT) : null;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.android_app.data.repository;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.android_app.data.local.AppDatabase;
+import com.example.android_app.data.local.BodySize;
+import com.example.android_app.data.local.MailDAO;
+import com.example.android_app.utils.AppExecutors;
+import com.example.android_app.utils.SharedPrefsManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Keeps the cached mail bodies under a size budget. When the bodies take more than the budget, the
+// ones the user is least likely to open again go first: read, not starred, not drafts, oldest first,
+// and never mails from the last MIN_AGE. Only the body is dropped - the header stays, so lists and
+// counts are unchanged, and opening the mail fetches the body again. Its text also leaves the search
+// index; the mail is still found by subject and sender.
+public class RetentionManager {
+    private static final String TAG = "RetentionManager";
+    private static final String BUDGET_KEY = "bodyCacheBudgetBytes";
+    public static final long DEFAULT_BUDGET_BYTES = 20L * 1024 * 1024;
+    private static final long MIN_AGE_MS = TimeUnit.DAYS.toMillis(3);
+    private static final int EVICT_BATCH = 200;
+
+    private static RetentionManager instance;
+
+    private final Context context;
+    private final MailDAO mailDao;
+    private final Executor executor; // the shared serial Room writer
+    private final AtomicBoolean trimQueued = new AtomicBoolean(false);
+
+    private RetentionManager(Context context) {
+        this.context = context.getApplicationContext();
+        mailDao = AppDatabase.getInstance(context).mailDao();
+        executor = AppExecutors.getInstance().diskIO();
+    }
+
+    public static synchronized RetentionManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new RetentionManager(context);
+        }
+        return instance;
+    }
+
+    public long getBudgetBytes() {
+        String value = SharedPrefsManager.get(context, BUDGET_KEY);
+        if (value != null) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException ignored) {
+                // fall back to the default
+            }
+        }
+        return DEFAULT_BUDGET_BYTES;
+    }
+
+    public void setBudgetBytes(long bytes) {
+        SharedPrefsManager.save(context, BUDGET_KEY, String.valueOf(bytes));
+        trim();
+    }
+
+    // Called after bodies are written; calls made while a trim is already queued are merged into it.
+    public void trim() {
+        if (trimQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                trimQueued.set(false);
+                trimNow();
+            });
+        }
+    }
+
+    private void trimNow() {
+        mailDao.deleteOrphanBodies();
+        long budget = getBudgetBytes();
+        long size = mailDao.getBodiesSizeNow();
+        while (size > budget) {
+            List<BodySize> candidates = mailDao.getEvictableBodiesNow(System.currentTimeMillis() - MIN_AGE_MS, EVICT_BATCH);
+            if (candidates.isEmpty()) {
+                break; // what is left is unread, starred or recent: kept even over budget
+            }
+            List<String> ids = new ArrayList<>();
+            for (BodySize candidate : candidates) {
+                ids.add(candidate.id);
+                size -= candidate.size;
+                if (size <= budget) {
+                    break;
+                }
+            }
+            mailDao.evictBodies(ids);
+        }
+        Log.d(TAG, "Cached bodies: " + size + " of " + budget + " bytes");
+    }
+}
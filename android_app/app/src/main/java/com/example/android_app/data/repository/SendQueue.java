@@ -0,0 +1,180 @@
+package com.example.android_app.data.repository;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.example.android_app.data.local.AppDatabase;
+import com.example.android_app.data.local.MailDAO;
+import com.example.android_app.data.local.MailEntity;
+import com.example.android_app.data.local.OutgoingMailDao;
+import com.example.android_app.data.local.OutgoingMailEntity;
+import com.example.android_app.data.network.ApiClient;
+import com.example.android_app.data.network.ApiService;
+import com.example.android_app.model.Email;
+import com.example.android_app.model.EmailRequest;
+import com.example.android_app.utils.AppExecutors;
+import com.example.android_app.utils.MailMapper;
+import com.example.android_app.utils.SharedPrefsManager;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import retrofit2.Response;
+
+// Sending a mail only writes it to the outgoing_mails table and puts a pending row for it in Sent, so
+// the composer closes at once and the mail survives the process being killed. A Drainer, as for the
+// Outbox, delivers the queue in order with backoff and again whenever the network comes back. Every
+// attempt carries the Idempotency-Key made when the mail was queued, so a retry after a lost response
+// is answered by the server with the first result instead of sending the mail twice.
+public class SendQueue {
+    private static final String TAG = "SendQueue";
+
+    private static SendQueue instance;
+
+    private final Context context;
+    private final AppDatabase db;
+    private final ApiService apiService;
+    private final OutgoingMailDao outgoingMailDao;
+    private final MailDAO mailDao;
+    private final MailRepository mailRepository;
+    private final DraftStore draftStore;
+    private final Executor executor; // local writes on the shared Room writer
+    private final Drainer drainer; // sends one mail at a time, in the order they were queued
+
+    private SendQueue(Context context) {
+        this.context = context.getApplicationContext();
+        db = AppDatabase.getInstance(context);
+        apiService = ApiClient.getApiService();
+        outgoingMailDao = db.outgoingMailDao();
+        mailDao = db.mailDao();
+        mailRepository = MailRepository.getInstance(context);
+        draftStore = DraftStore.getInstance(context);
+        executor = AppExecutors.getInstance().diskIO();
+        drainer = new Drainer(context, "send-queue", this::drainNow);
+    }
+
+    public static synchronized SendQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new SendQueue(context);
+        }
+        return instance;
+    }
+
+    // Queues the mail and shows it in Sent as pending; draftId is the server draft it sends, if any,
+    // which leaves Drafts right away
+    public void enqueue(@Nullable String draftId, String to, String subject, String body) {
+        String owner = getOwner();
+        executor.execute(() -> {
+            OutgoingMailEntity mail = new OutgoingMailEntity();
+            mail.idempotencyKey = UUID.randomUUID().toString();
+            mail.owner = owner;
+            mail.draftId = draftId;
+            mail.placeholderId = OutgoingMailEntity.PLACEHOLDER_PREFIX + mail.idempotencyKey;
+            mail.to = to;
+            mail.subject = subject;
+            mail.body = body;
+            mail.queuedAt = System.currentTimeMillis();
+
+            Email placeholder = new Email();
+            placeholder.setId(mail.placeholderId);
+            placeholder.setSender(owner);
+            placeholder.setReceiver(to);
+            placeholder.setSubject(subject);
+            placeholder.setBody(body);
+            placeholder.setTimestamp(mail.queuedAt);
+            placeholder.setSend(true);
+            placeholder.setIsRead(true);
+            MailEntity row = MailMapper.toEntity(placeholder, owner);
+            row.pending = true;
+
+            db.runInTransaction(() -> {
+                outgoingMailDao.insert(mail);
+                if (draftId != null) {
+                    mailDao.deleteByIds(Collections.singletonList(draftId));
+                }
+                mailDao.insertAll(Collections.singletonList(row));
+                mailDao.storeBodies(Collections.singletonList(placeholder));
+            });
+            drain();
+        });
+    }
+
+    public void drain() {
+        drainer.drain();
+    }
+
+    private void drainNow() {
+        String owner = getOwner();
+        String token = SharedPrefsManager.get(context, "token");
+        if (owner == null || token == null || token.isEmpty()) {
+            return;
+        }
+        for (OutgoingMailEntity mail : outgoingMailDao.getQueueNow(owner)) {
+            if (mail.nextAttemptAt > System.currentTimeMillis()) {
+                break; // backing off: the mails behind it wait for it
+            }
+            EmailRequest request = new EmailRequest(mail.to, mail.subject, mail.body, true);
+            try {
+                Response<Email> response = mail.draftId == null
+                        ? apiService.sendQueued("Bearer " + token, mail.idempotencyKey, request).execute()
+                        : apiService.sendQueuedDraft("Bearer " + token, mail.idempotencyKey, mail.draftId, request).execute();
+                if (response.isSuccessful()) {
+                    outgoingMailDao.delete(mail.idempotencyKey);
+                    if (response.body() != null) {
+                        mailRepository.cacheFullMail(response.body(), mail.placeholderId); // the pending row becomes the real one
+                    } else {
+                        executor.execute(() -> mailDao.deleteByIds(Collections.singletonList(mail.placeholderId)));
+                    }
+                } else if (Drainer.isPermanent(response.code())) {
+                    // e.g. an unknown recipient: retrying cannot help, so the text goes back to Drafts
+                    Log.w(TAG, "Server rejected queued mail " + mail.idempotencyKey + ": " + response.code());
+                    giveUp(mail, response.code() == HttpURLConnection.HTTP_NOT_FOUND ? null : mail.draftId);
+                } else {
+                    closeError(response);
+                    backOff(mail);
+                    break; // the mails behind it wait, so they cannot arrive before it
+                }
+                closeError(response);
+            } catch (IOException e) {
+                backOff(mail); // offline: the mails behind it would fail the same way
+                break;
+            }
+        }
+        scheduleNextDrain(owner);
+    }
+
+    private static void closeError(Response<?> response) {
+        if (!response.isSuccessful() && response.errorBody() != null) {
+            response.errorBody().close();
+        }
+    }
+
+    // Takes a mail the server refused off the queue and out of Sent, keeping it as a draft.
+    // draftId is null when the server draft it was sending no longer exists.
+    private void giveUp(OutgoingMailEntity mail, @Nullable String draftId) {
+        outgoingMailDao.delete(mail.idempotencyKey);
+        executor.execute(() -> mailDao.deleteByIds(Collections.singletonList(mail.placeholderId)));
+        draftStore.restoreUnsent(mail.owner, draftId, mail.to, mail.subject, mail.body);
+    }
+
+    private void backOff(OutgoingMailEntity mail) {
+        int attempts = mail.attempts + 1;
+        outgoingMailDao.reschedule(mail.idempotencyKey, attempts, Drainer.retryAt(attempts));
+    }
+
+    // drain queue only
+    private void scheduleNextDrain(String owner) {
+        drainer.scheduleAt(owner != null ? outgoingMailDao.getNextAttemptAtNow(owner) : null);
+    }
+
+    private String getOwner() {
+        String email = SharedPrefsManager.get(context, "emailAddress");
+        return email != null ? email.toLowerCase(Locale.ROOT) : null;
+    }
+}
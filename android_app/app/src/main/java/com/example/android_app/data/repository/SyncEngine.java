@@ -0,0 +1,174 @@
+package com.example.android_app.data.repository;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.android_app.data.local.AppDatabase;
+import com.example.android_app.data.local.MailDAO;
+import com.example.android_app.data.local.MailEntity;
+import com.example.android_app.data.network.ApiClient;
+import com.example.android_app.data.network.ApiService;
+import com.example.android_app.data.network.MailEventSource;
+import com.example.android_app.model.Email;
+import com.example.android_app.model.MailChanges;
+import com.example.android_app.utils.MailMapper;
+import com.example.android_app.utils.AppExecutors;
+import com.example.android_app.utils.SharedPrefsManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+import retrofit2.Response;
+
+// Incremental sync: asks the server only for the mails that changed since the last run and applies
+// them to Room. The high-water mark is the opaque cursor returned by GET /api/mails/changes and is
+// kept per account, so a refresh costs O(changes) instead of re-downloading folders.
+// While the inbox is open, mails pushed over MailEventSource are applied the same way, one at a time,
+// so new mail shows up without any refresh; when the stream may have missed events, a sync fills the gap.
+public class SyncEngine {
+    private static final String TAG = "SyncEngine";
+    private static final String CURSOR_KEY_PREFIX = "syncCursor_";
+    private static final int BATCH_SIZE = 200;
+
+    private static SyncEngine instance;
+
+    private final Context context;
+    private final ApiService apiService;
+    private final AppDatabase db;
+    private final MailDAO mailDao;
+    private final Outbox outbox;
+    private final Executor executor; // one sync at a time, so batches are applied in order; not behind paging or prefetch
+    private final MailEventSource eventSource;
+
+    private SyncEngine(Context context) {
+        this.context = context.getApplicationContext();
+        apiService = ApiClient.getApiService();
+        db = AppDatabase.getInstance(context);
+        mailDao = db.mailDao();
+        outbox = Outbox.getInstance(context);
+        executor = AppExecutors.getInstance().dedicated("sync");
+        eventSource = new MailEventSource(context, new MailEventSource.Listener() {
+            @Override
+            public void onMail(Email mail) {
+                executor.execute(() -> applyPushed(mail));
+            }
+
+            @Override
+            public void onSyncNeeded() {
+                sync(new MailRepository.ActionCallback() {
+                    @Override
+                    public void onSuccess() {
+                    }
+
+                    @Override
+                    public void onFailure(String errorMessage) {
+                        Log.w(TAG, errorMessage);
+                    }
+                });
+            }
+        });
+    }
+
+    public static synchronized SyncEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new SyncEngine(context);
+        }
+        return instance;
+    }
+
+    // true once the signed-in account has a high-water mark, i.e. deltas can replace folder fetches
+    public boolean hasCursor() {
+        String owner = getOwner();
+        return owner != null && SharedPrefsManager.get(context, CURSOR_KEY_PREFIX + owner) != null;
+    }
+
+    // Pulls every pending change. The first run for an account only records the server's current
+    // cursor; mails older than that are loaded by the folder fetches and the paging mediator.
+    public void sync(MailRepository.ActionCallback callback) {
+        executor.execute(() -> {
+            try {
+                syncNow();
+                callback.onSuccess();
+            } catch (IOException e) {
+                Log.w(TAG, "Sync failed: " + e.getMessage());
+                callback.onFailure("Sync failed: " + e.getMessage());
+            }
+        });
+    }
+
+    // Opens the push stream; it reconnects on its own until stopPush()
+    public void startPush() {
+        eventSource.start();
+    }
+
+    public void stopPush() {
+        eventSource.stop();
+    }
+
+    // One pushed mail, applied like a mail of a sync batch. The cursor is left alone: the next sync
+    // hands the mail out again, which only rewrites the same row.
+    private void applyPushed(Email mail) {
+        String owner = getOwner();
+        if (owner == null) {
+            return;
+        }
+        List<MailEntity> changed = new ArrayList<>();
+        changed.add(MailMapper.toEntity(mail, owner));
+        db.runInTransaction(() -> {
+            outbox.overlayPending(owner, changed);
+            mailDao.reconcile(changed, Collections.emptyList());
+            mailDao.storeBodies(Collections.singletonList(mail));
+        });
+        RetentionManager.getInstance(context).trim();
+    }
+
+    private void syncNow() throws IOException {
+        String owner = getOwner();
+        String token = SharedPrefsManager.get(context, "token");
+        if (owner == null || token == null || token.isEmpty()) {
+            throw new IOException("Not signed in.");
+        }
+
+        String cursorKey = CURSOR_KEY_PREFIX + owner;
+        String cursor = SharedPrefsManager.get(context, cursorKey);
+        boolean hasMore = true;
+        while (hasMore) {
+            Response<MailChanges> response = apiService.getMailChanges("Bearer " + token, cursor, BATCH_SIZE).execute();
+            MailChanges changes = response.body();
+            if (!response.isSuccessful() || changes == null || changes.getCursor() == null) {
+                throw new IOException("Server error: " + response.code());
+            }
+
+            List<MailEntity> changed = new ArrayList<>();
+            if (changes.getMails() != null) {
+                for (Email email : changes.getMails()) {
+                    if (email.getId() != null) {
+                        changed.add(MailMapper.toEntity(email, owner));
+                    }
+                }
+            }
+            List<String> deleted = changes.getDeleted() != null ? changes.getDeleted() : new ArrayList<>();
+            db.runInTransaction(() -> {
+                outbox.overlayPending(owner, changed); // keep toggles the server has not confirmed yet
+                mailDao.reconcile(changed, deleted);
+                mailDao.storeBodies(changes.getMails() != null ? changes.getMails() : new ArrayList<>());
+            });
+
+            RetentionManager.getInstance(context).trim();
+
+            // the cursor moves only after the batch is committed: a crash replays a batch, never skips one
+            cursor = changes.getCursor();
+            SharedPrefsManager.save(context, cursorKey, cursor);
+            hasMore = changes.hasMore() && !changed.isEmpty();
+        }
+    }
+
+    private String getOwner() {
+        String email = SharedPrefsManager.get(context, "emailAddress");
+        return email != null ? email.toLowerCase(Locale.ROOT) : null;
+    }
+}
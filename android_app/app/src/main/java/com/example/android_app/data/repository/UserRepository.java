@@ -1,9 +1,7 @@
 package com.example.android_app.data.repository;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.net.Uri;
-import android.provider.OpenableColumns;
 import android.util.Log;
 
 import androidx.lifecycle.MutableLiveData;
@@ -13,19 +11,17 @@ import com.example.android_app.data.local.UserDao;
 import com.example.android_app.data.local.UserEntity;
 import com.example.android_app.data.network.ApiClient;
 import com.example.android_app.data.network.ApiService;
+import com.example.android_app.data.network.ImageUploadBody;
 import com.example.android_app.model.LoginRequest;
 import com.example.android_app.model.LoginResponse;
+import com.example.android_app.utils.AppExecutors;
 import com.example.android_app.utils.SharedPrefsManager;
 import com.example.android_app.utils.UserManager;
 import com.example.android_app.utils.UserMapper;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -38,20 +34,33 @@ import retrofit2.Response;
 
 //This class is responsible for interacting with the Network layer (API):
 public class UserRepository {
+    // profile pictures are only shown as small circles, so larger uploads would be wasted
+    private static final int AVATAR_MAX_SIDE = 512;
+    private static final String AVATAR_FILE_NAME = "avatar.jpg"; // the server keeps the extension
     private final ApiService apiService; //retrofit interface
     private final Context context; //context to casting api
     private final Gson gson = new Gson();
     private final UserDao userDao;
-    private final Executor executor;
+    private final Executor executor; // the shared serial Room writer
 
-    public UserRepository(Context context) {
+    private static UserRepository instance;
+
+    private UserRepository(Context context) {
         this.context = context.getApplicationContext();
-        apiService = ApiClient.getClient().create(ApiService.class); //create object from retrofit
+        apiService = ApiClient.getApiService(); //create object from retrofit
         userDao = AppDatabase.getInstance(context).userDao();
-        executor = Executors.newSingleThreadExecutor();
+        executor = AppExecutors.getInstance().diskIO();
     }
 
-    public Call<ResponseBody> registerUser(String fullName, String email, String birthDate, String gender, String password, Uri imageUri) {
+    public static synchronized UserRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new UserRepository(context);
+        }
+        return instance;
+    }
+
+    public Call<ResponseBody> registerUser(String fullName, String email, String birthDate, String gender, String password, Uri imageUri,
+                                           MutableLiveData<Integer> uploadProgress) {
         //create request body for each parameter
         RequestBody fullNameBody = RequestBody.create(MediaType.parse("text/plain"), fullName);
         RequestBody emailBody = RequestBody.create(MediaType.parse("text/plain"), email);
@@ -60,61 +69,19 @@ public class UserRepository {
         RequestBody passwordBody = RequestBody.create(MediaType.parse("text/plain"), password);
 
         //create request body for image
-        MultipartBody.Part imagePart = null;
-        if (imageUri != null) {
-            File imageFile = getFileFromUri(imageUri);
-            if (imageFile != null) {
-                RequestBody imageRequest = RequestBody.create(MediaType.parse("image/*"), imageFile);
-                imagePart = MultipartBody.Part.createFormData("profileImage", imageFile.getName(), imageRequest);
-            }
-        }
+        MultipartBody.Part imagePart = imageUri != null ? profileImagePart(imageUri, uploadProgress) : null;
 
         return apiService.registerUser(fullNameBody, emailBody, birthDateBody, genderBody, passwordBody, imagePart);
     }
 
-    //convert uri to file
-    //read file content and write it to a temporary file in cache so it can be sent to the server
-    private File getFileFromUri(Uri uri) {
-        try {
-            InputStream inputStream = context.getContentResolver().openInputStream(uri);
-            String fileName = getFileName(uri);
-            File file = new File(context.getCacheDir(), fileName);
-            FileOutputStream outputStream = new FileOutputStream(file);
-            byte[] buf = new byte[1024];
-            int len;
-            while ((len = inputStream.read(buf)) > 0) {
-                outputStream.write(buf, 0, len);
-            }
-            outputStream.close();
-            inputStream.close();
-            return file;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+    // The picked image as the profileImage part: read from the ContentResolver and shrunk to an avatar
+    // while the request is written (see ImageUploadBody). uploadProgress gets the percentage sent.
+    private MultipartBody.Part profileImagePart(Uri imageUri, MutableLiveData<Integer> uploadProgress) {
+        RequestBody image = new ImageUploadBody(context.getContentResolver(), imageUri, AVATAR_MAX_SIDE,
+                (written, total) -> uploadProgress.postValue((int) (written * 100 / total)));
+        return MultipartBody.Part.createFormData("profileImage", AVATAR_FILE_NAME, image);
     }
 
-    //get file name from uri so it can be sent to the server
-    private String getFileName(Uri uri) {
-        String result = null;
-        if (uri.getScheme().equals("content")) {
-            Cursor cursor = context.getContentResolver().query(uri, null, null, null, null);
-            try {
-                if (cursor != null && cursor.moveToFirst()) {
-                    int nameIndex = cursor.getColumnIndexOrThrow(OpenableColumns.DISPLAY_NAME);
-                    result = cursor.getString(nameIndex);
-                }
-            } finally {
-                cursor.close();
-            }
-        }
-        if (result == null) {
-            result = uri.getLastPathSegment();
-        }
-        return result;
-    }
-
-
     public void login(LoginRequest request, MutableLiveData<LoginResponse> result, MutableLiveData<String> error) {
         Call<LoginResponse> call = apiService.loginUser(request);
 
@@ -151,19 +118,12 @@ public class UserRepository {
     }
 
 
-    public void updateUserProfile(String userId, String newName, Uri imageUri,
+    public void updateUserProfile(String userId, String newName, Uri imageUri, MutableLiveData<Integer> uploadProgress,
                                   MutableLiveData<String> successMsg, MutableLiveData<String> errorMsg) {
 
         RequestBody nameBody = RequestBody.create(MediaType.parse("text/plain"), newName);
 
-        MultipartBody.Part imagePart = null;
-        if (imageUri != null) {
-            File imageFile = getFileFromUri(imageUri);
-            if (imageFile != null) {
-                RequestBody imageRequest = RequestBody.create(MediaType.parse("image/*"), imageFile);
-                imagePart = MultipartBody.Part.createFormData("profileImage", imageFile.getName(), imageRequest);
-            }
-        }
+        MultipartBody.Part imagePart = imageUri != null ? profileImagePart(imageUri, uploadProgress) : null;
 
         Call<LoginResponse> call = apiService.updateUser(userId, nameBody, imagePart);
 
@@ -0,0 +1,27 @@
+package com.example.android_app.model;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.List;
+
+// Body of POST /api/mails/batch: one action applied to many mails
+public class BatchRequest {
+    @SerializedName("ids")
+    private List<String> ids;
+
+    @SerializedName("op")
+    private String op;
+
+    public BatchRequest(List<String> ids, String op) {
+        this.ids = ids;
+        this.op = op;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public String getOp() {
+        return op;
+    }
+}
@@ -1,13 +1,11 @@
 package com.example.android_app.model;
 
 import com.example.android_app.BuildConfig;
+import com.example.android_app.utils.MailDates;
 import com.google.gson.annotations.SerializedName;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.Instant;
 import java.util.Date;
-import java.util.Locale;
+import java.util.List;
 
 public class Email {
     @SerializedName("_id")
@@ -54,6 +52,19 @@ public class Email {
     @SerializedName("deletedForReceiver")
     private boolean deletedForReceiver;
 
+    // label ids each side of the mail filed it under; null when the response did not include them
+    @SerializedName("labelsForSender")
+    private List<String> labelsForSender;
+
+    @SerializedName("labelsForReceiver")
+    private List<String> labelsForReceiver;
+
+    // search results only: [start, end) char ranges of the subject that matched the query
+    private transient int[] subjectHighlights;
+
+    // queued in the send queue and not accepted by the server yet
+    private transient boolean pending;
+
     public Email () { }
 
     public void setFrom(String from) {
@@ -97,6 +108,10 @@ public class Email {
     public void setDate(String date) {
         this.date = date;
     }
+    // the date exactly as the server sent it (ISO string), used when caching to Room
+    public String getRawDate() {
+        return date;
+    }
     public void setIsRead(boolean read) {
         isRead = read;
     }
@@ -140,6 +155,20 @@ public class Email {
     public void setDeletedForReceiver(boolean deletedForReceiver) {
         this.deletedForReceiver = deletedForReceiver;
     }
+
+    public List<String> getLabelsForSender() {
+        return labelsForSender;
+    }
+    public void setLabelsForSender(List<String> labelsForSender) {
+        this.labelsForSender = labelsForSender;
+    }
+
+    public List<String> getLabelsForReceiver() {
+        return labelsForReceiver;
+    }
+    public void setLabelsForReceiver(List<String> labelsForReceiver) {
+        this.labelsForReceiver = labelsForReceiver;
+    }
     public boolean isSpam() {
         return isSpam;
     }
@@ -147,24 +176,23 @@ public class Email {
         isSpam = spam;
     }
 
+    public int[] getSubjectHighlights() {
+        return subjectHighlights;
+    }
+    public void setSubjectHighlights(int[] subjectHighlights) {
+        this.subjectHighlights = subjectHighlights;
+    }
+
+    public boolean isPending() {
+        return pending;
+    }
+    public void setPending(boolean pending) {
+        this.pending = pending;
+    }
+
     public Date getDate() {
-        if (date == null || date.isEmpty()) {
-            return null;
-        }
-        try {
-            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
-                return Date.from(Instant.parse(date));
-            } else {
-                SimpleDateFormat parser = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
-                return parser.parse(date);
-            }
-        } catch (ParseException e) {
-            e.printStackTrace();
-            return null;
-        } catch (java.time.format.DateTimeParseException e) { // For Instant.parse() errors
-            e.printStackTrace();
-            return null;
-        }
+        long millis = MailDates.parseMillis(date);
+        return millis > 0 ? new Date(millis) : null;
     }
     public String getReplySubject() {
         if (subject == null || subject.isEmpty()) {
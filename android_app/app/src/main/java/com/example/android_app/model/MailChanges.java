@@ -0,0 +1,22 @@
+package com.example.android_app.model;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.List;
+
+// Response of GET /api/mails/changes: everything that changed after the cursor that was sent
+public class MailChanges {
+    @SerializedName("mails")
+    private List<Email> mails; // created or updated mails (soft deletes included)
+    @SerializedName("deleted")
+    private List<String> deleted; // ids of mails that are gone for good
+    @SerializedName("cursor")
+    private String cursor; // send this as updatedSince next time
+    @SerializedName("hasMore")
+    private boolean hasMore;
+
+    public List<Email> getMails() { return mails; }
+    public List<String> getDeleted() { return deleted; }
+    public String getCursor() { return cursor; }
+    public boolean hasMore() { return hasMore; }
+}
@@ -0,0 +1,93 @@
+package com.example.android_app.model;
+
+import com.example.android_app.utils.MailDates;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+
+// What one row of the mail list shows, worked out once when a page is loaded (off the main thread)
+// so binding a row only copies fields into views: no date parsing, formatter or string building.
+// Immutable; a change to the mail produces a new model and the adapter diffs the two.
+public final class MailRowModel {
+    public static final int FLAG_READ = 1;
+    public static final int FLAG_STARRED = 1 << 1;
+    public static final int FLAG_IMPORTANT = 1 << 2;
+    public static final int FLAG_SPAM = 1 << 3;
+    public static final int FLAG_DRAFT = 1 << 4;
+    public static final int FLAG_PENDING = 1 << 5; // in the send queue, not on the server yet
+
+    private final Email email; // handed back to the click listeners
+    private final String id;
+    private final long epochMillis;
+    private final String dateLabel;
+    private final String senderKey; // lowercased sender address, keys the avatar monogram
+    private final String senderDisplayName;
+    private final String avatarUrl;
+    private final String subject;
+    private final int[] subjectHighlights;
+    private final int flags;
+
+    private MailRowModel(Email email, long now) {
+        this.email = email;
+        this.id = email.getId();
+        this.epochMillis = MailDates.millisOf(email.getTimestamp(), email.getRawDate());
+        // the label is relative to when the page was loaded; the next page load refreshes it
+        this.dateLabel = MailDates.formatRelative(epochMillis, now);
+        this.senderKey = email.getFrom() != null ? email.getFrom().toLowerCase(Locale.ROOT) : null;
+        this.senderDisplayName = displayName(email);
+        this.avatarUrl = email.getProfilePicUrl();
+        this.subject = email.getSubject();
+        this.subjectHighlights = email.getSubjectHighlights();
+        this.flags = flagsOf(email);
+    }
+
+    public static MailRowModel of(Email email) {
+        return new MailRowModel(email, System.currentTimeMillis());
+    }
+
+    private static String displayName(Email email) {
+        String name = email.getSenderName();
+        if (name != null && !name.isEmpty()) {
+            return name;
+        }
+        return email.getFrom() != null ? email.getFrom() : "Unknown Sender";
+    }
+
+    private static int flagsOf(Email email) {
+        int flags = 0;
+        if (email.isRead()) flags |= FLAG_READ;
+        if (email.isStarred()) flags |= FLAG_STARRED;
+        if (email.isImportant()) flags |= FLAG_IMPORTANT;
+        if (email.isSpam()) flags |= FLAG_SPAM;
+        if (!email.isSend()) flags |= FLAG_DRAFT;
+        if (email.isPending()) flags |= FLAG_PENDING;
+        return flags;
+    }
+
+    public Email getEmail() { return email; }
+    public String getId() { return id; }
+    public long getEpochMillis() { return epochMillis; }
+    public String getDateLabel() { return dateLabel; }
+    public String getSenderKey() { return senderKey; }
+    public String getSenderDisplayName() { return senderDisplayName; }
+    public String getAvatarUrl() { return avatarUrl; }
+    public String getSubject() { return subject; }
+    public int[] getSubjectHighlights() { return subjectHighlights; }
+    public int getFlags() { return flags; }
+
+    public boolean isRead() { return (flags & FLAG_READ) != 0; }
+    public boolean isStarred() { return (flags & FLAG_STARRED) != 0; }
+    public boolean isPending() { return (flags & FLAG_PENDING) != 0; }
+
+    // everything the row shows apart from the flags
+    public boolean sameContentExceptFlags(MailRowModel other) {
+        return epochMillis == other.epochMillis
+                && Objects.equals(dateLabel, other.dateLabel)
+                && Objects.equals(subject, other.subject)
+                && Objects.equals(senderKey, other.senderKey)
+                && Objects.equals(senderDisplayName, other.senderDisplayName)
+                && Objects.equals(avatarUrl, other.avatarUrl)
+                && Arrays.equals(subjectHighlights, other.subjectHighlights);
+    }
+}
@@ -2,7 +2,6 @@ package com.example.android_app.model.viewmodel;
 
 import android.app.Application;
 import android.text.TextUtils;
-import android.util.Log;
 import android.util.Patterns;
 
 import androidx.annotation.NonNull;
@@ -10,17 +9,15 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
-import com.example.android_app.data.network.MailService;
-import com.example.android_app.data.repository.MailRepository;
+import com.example.android_app.data.repository.DraftStore;
 import com.example.android_app.model.Email;
-import com.example.android_app.model.EmailRequest;
-import com.example.android_app.utils.SendCallback;
-import com.example.android_app.utils.SharedPrefsManager;
 
 // ViewModel for creating and managing email drafts and sending emails
 // Handles loading existing drafts, creating new drafts, saving drafts, and sending emails
 public class CreateMailViewModel extends AndroidViewModel {
-    private final MailRepository repository;
+    private final DraftStore draftStore;
+    private String localDraftId; // DraftEntity.localId of the draft being edited, null until it is open
+    private String savedTo, savedSubject, savedBody; // what the draft holds, to skip edits that change nothing
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
     private final MutableLiveData<Boolean> emailSent = new MutableLiveData<>();
     private final MutableLiveData<Boolean> _isLoading = new MutableLiveData<>(false);
@@ -42,7 +39,14 @@ public class CreateMailViewModel extends AndroidViewModel {
 
     public CreateMailViewModel(@NonNull Application application) {
         super(application);
-        repository = new MailRepository(application);
+        draftStore = DraftStore.getInstance(application);
+    }
+
+    @Override
+    protected void onCleared() {
+        if (localDraftId != null) {
+            draftStore.discardIfEmpty(localDraftId); // opened and left without writing anything
+        }
     }
 
     public LiveData<String> getErrorMessage() {
@@ -53,93 +57,47 @@ public class CreateMailViewModel extends AndroidViewModel {
         return emailSent;
     }
 
-// Load or create a draft email
-    // If an existing draft ID is provided, it loads that draft
+// Opens the draft to edit: a server draft (existingMailId) or a new one filled with the defaults.
+    // Both come from Room (see DraftStore), so the composer never waits on the network.
     public void loadOrCreateDraft(String existingMailId, String defaultTo, String defaultSubject, String defaultBody) {
-        _isLoading.postValue(true);
-        String token = SharedPrefsManager.get(getApplication(), "token");
-        if (token == null || token.isEmpty()) {
-            errorMessage.setValue("Authentication token is missing. Cannot load or create draft.");
-            _isLoading.postValue(false);
-            return;
-        }
+        _isLoading.setValue(true);
+        String serverId = existingMailId != null && !existingMailId.isEmpty() ? existingMailId : null;
+        draftStore.open(serverId, defaultTo, defaultSubject, defaultBody, draft -> {
+            localDraftId = draft.localId;
+            savedTo = draft.to;
+            savedSubject = draft.subject;
+            savedBody = draft.body;
+            Email email = new Email();
+            email.setId(draft.localId);
+            email.setReceiver(draft.to);
+            email.setSubject(draft.subject);
+            email.setBody(draft.body);
+            _currentDraft.setValue(email);
+            errorMessage.setValue(null);
+            _isLoading.setValue(false);
+        });
+    }
 
-// If an existing draft ID is provided, load that draft
-        if (existingMailId != null && !existingMailId.isEmpty()) {
-            repository.getEmailById(existingMailId, new MailRepository.EmailDetailsCallback() {
-                @Override
-                public void onSuccess(Email email) {
-                    _currentDraft.setValue(email);
-                    errorMessage.setValue(null);
-                    _isLoading.postValue(false);
-                }
-
-                @Override
-                public void onFailure(String error) {
-                    errorMessage.setValue("Failed to load draft: " + error);
-                    _isLoading.postValue(false);
-                    EmailRequest newDraftRequest = new EmailRequest(defaultTo, defaultSubject, defaultBody);
-                    repository.createDraft(newDraftRequest, new MailService.DraftMailCallback() {
-                        @Override
-                        public void onSuccess(Email email) {
-                            _currentDraft.setValue(email);
-                        }
-
-                        @Override
-                        public void onFailure(String error) {
-                            errorMessage.setValue("Also failed to create new draft: " + error);
-                        }
-                    });
-                }
-            });
-        } else {
-            EmailRequest newDraftRequest = new EmailRequest(defaultTo, defaultSubject, defaultBody);
-
-            repository.createDraft(newDraftRequest, new MailService.DraftMailCallback() {
-                @Override
-                public void onSuccess(Email email) {
-                    _currentDraft.setValue(email);
-                    errorMessage.setValue(null);
-                    _isLoading.postValue(false);
-                }
-
-                @Override
-                public void onFailure(String error) {
-                    errorMessage.setValue("Failed to create new draft: " + error);
-                    _isLoading.postValue(false);
-                }
-            });
+    // Called on every edit: saved to Room at once, sent to the server once the typing pauses
+    public void onDraftEdited(String to, String subject, String body) {
+        if (localDraftId == null || (TextUtils.equals(to, savedTo) && TextUtils.equals(subject, savedSubject)
+                && TextUtils.equals(body, savedBody))) {
+            return; // not open yet, or the fields were only filled in from the draft
         }
+        savedTo = to;
+        savedSubject = subject;
+        savedBody = body;
+        draftStore.save(localDraftId, to, subject, body);
     }
 
-    //save draft if edit but not send
+    //save draft if edit but not send: the composer is being left, so the server gets it right away
     public void saveDraft(String to, String subject, String body) {
-        Email current = _currentDraft.getValue();
-        if (current == null || current.getId() == null) {
-            return;
-        }
-
-        String token = SharedPrefsManager.get(getApplication(), "token");
-        if (token == null || token.isEmpty()) {
-            errorMessage.setValue("Authentication token is missing. Cannot save draft.");
+        if (localDraftId == null) {
             return;
         }
-
-        //patch existing draft
-        repository.updateDraft(current.getId(), to, subject, body, token, new MailService.DraftMailCallback() {
-            @Override
-            public void onSuccess(Email updatedEmail) {
-                _currentDraft.setValue(updatedEmail);
-                _actionSuccess.postValue(true);
-                errorMessage.setValue(null);
-            }
-
-            @Override
-            public void onFailure(String error) {
-                errorMessage.setValue("Failed to save draft: " + error);
-                _actionSuccess.postValue(false);
-            }
-        });
+        onDraftEdited(to, subject, body);
+        draftStore.flush(localDraftId);
+        _actionSuccess.postValue(true);
     }
 
     public void sendEmail(String mailId, String to, String subject, String body) {
@@ -161,46 +119,13 @@ public class CreateMailViewModel extends AndroidViewModel {
             return;
         }
 
-        String token = SharedPrefsManager.get(getApplication(), "token");
-        if (token == null || token.isEmpty()) {
-            errorMessage.setValue("Authentication token not found. Please log in again.");
-            _isLoading.postValue(false);
-            _actionSuccess.postValue(false);
-            return;
-        }
-
-        //send mail
-        repository.sendEmail(mailId, to, subject, body, token, new SendCallback() {
-            @Override
-            public void onSuccess() {
-                emailSent.setValue(true);
-                errorMessage.setValue(null);
-                _isLoading.postValue(false);
-                _actionSuccess.postValue(true);
-
-                if (mailId != null && !mailId.isEmpty()) {
-                    repository.deleteDraft(mailId, new MailRepository.ActionCallback() {
-                        @Override
-                        public void onSuccess() {
-                            _currentDraft.postValue(null);
-                        }
-                        @Override
-                        public void onFailure(String error) {
-                        }
-                    });
-                } else {
-                    _currentDraft.postValue(null);
-                }
-            }
-
-            @Override
-            public void onFailure(String error) {
-                emailSent.setValue(false);
-                errorMessage.setValue(error);
-                _isLoading.postValue(false);
-                _actionSuccess.postValue(false);
-            }
-        });
+        //queue the mail (as the server's draft if it has one) and close right away; SendQueue delivers it
+        draftStore.send(mailId, to, subject, body);
+        localDraftId = null;
+        emailSent.setValue(true);
+        _isLoading.postValue(false);
+        _actionSuccess.postValue(true);
+        _currentDraft.postValue(null);
     }
 
 }
\ No newline at end of file
@@ -20,17 +20,18 @@ public class EditProfileViewModel extends AndroidViewModel {
     private final MutableLiveData<String> successMsg = new MutableLiveData<>();
     private final MutableLiveData<String> errorMsg = new MutableLiveData<>();
     private final MutableLiveData<UserEntity> updatedUser = new MutableLiveData<>();
+    private final MutableLiveData<Integer> uploadProgress = new MutableLiveData<>(); // percent of the new picture sent
 
 
     public EditProfileViewModel(@NonNull Application application) {
         super(application);
-        repository = new UserRepository(application);
+        repository = UserRepository.getInstance(application);
     }
 
     public void updateProfile(String name, Uri imageUri) {
         String userId = SharedPrefsManager.get(getApplication(), "userId");
 
-        repository.updateUserProfile(userId, name, imageUri, successMsg, errorMsg);
+        repository.updateUserProfile(userId, name, imageUri, uploadProgress, successMsg, errorMsg);
         loadUpdatedUser();
     }
     public void loadUpdatedUser() {
@@ -47,5 +48,6 @@ public class EditProfileViewModel extends AndroidViewModel {
     public LiveData<String> getSuccessMessage() { return successMsg; }
     public LiveData<String> getErrorMessage() { return errorMsg; }
     public LiveData<UserEntity> getUpdatedUser() { return updatedUser; }
+    public LiveData<Integer> getUploadProgress() { return uploadProgress; }
 
 }
@@ -5,8 +5,11 @@ import android.app.Application;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.example.android_app.data.network.LabelService;
+import com.example.android_app.data.repository.LabelStore;
 import com.example.android_app.data.repository.MailRepository;
 import com.example.android_app.model.Email;
 import com.example.android_app.model.Label;
@@ -17,13 +20,18 @@ import java.util.List;
 public class EmailDetailsViewModel extends AndroidViewModel {
 
     private final MailRepository mailRepository;
-    private final MutableLiveData<Email> emailDetails = new MutableLiveData<>();
+    // the cached header from Room, with the body filled in once it is loaded
+    private final MediatorLiveData<Email> emailDetails = new MediatorLiveData<>();
+    private LiveData<Email> observedHeader;
+    private String shownId;
+    private String loadedBody;
     private final MutableLiveData<String> error = new MutableLiveData<>();
-    private final MutableLiveData<List<Label>> allLabels = new MutableLiveData<>();
+    private final LabelStore labelStore;
 
     public EmailDetailsViewModel(@NonNull Application application) {
         super(application);
-        mailRepository = new MailRepository(application);
+        mailRepository = MailRepository.getInstance(application);
+        labelStore = LabelStore.getInstance(application);
     }
 
     public LiveData<Email> getEmailDetails() {
@@ -34,7 +42,7 @@ public class EmailDetailsViewModel extends AndroidViewModel {
         return error;
     }
     public LiveData<List<Label>> getAllLabels() {
-        return allLabels;
+        return labelStore.getLabels();
     }
 
 // This method toggles the important status of an email.
@@ -44,7 +52,7 @@ public class EmailDetailsViewModel extends AndroidViewModel {
             mailRepository.markMailAsImportant(emailId, new MailRepository.MailActionCallback() {
                 @Override
                 public void onSuccess(String id) {
-                    fetchEmailById(id);
+                    updateShownEmail(id, email -> email.setImportant(true));
                 }
                 @Override
                 public void onFailure(String errorMessage) {
@@ -55,7 +63,7 @@ public class EmailDetailsViewModel extends AndroidViewModel {
             mailRepository.unmarkMailAsImportant(emailId, new MailRepository.MailActionCallback() {
                 @Override
                 public void onSuccess(String id) {
-                    fetchEmailById(id);
+                    updateShownEmail(id, email -> email.setImportant(false));
                 }
                 @Override
                 public void onFailure(String errorMessage) {
@@ -72,7 +80,7 @@ public class EmailDetailsViewModel extends AndroidViewModel {
             mailRepository.markMailAsStarred(emailId, new MailRepository.MailActionCallback() {
                 @Override
                 public void onSuccess(String id) {
-                    fetchEmailById(id);
+                    updateShownEmail(id, email -> email.setStarred(true));
                 }
                 @Override
                 public void onFailure(String errorMessage) {
@@ -83,7 +91,7 @@ public class EmailDetailsViewModel extends AndroidViewModel {
             mailRepository.unmarkMailAsStarred(emailId, new MailRepository.MailActionCallback() {
                 @Override
                 public void onSuccess(String id) {
-                    fetchEmailById(id);
+                    updateShownEmail(id, email -> email.setStarred(false));
                 }
                 @Override
                 public void onFailure(String errorMessage) {
@@ -100,7 +108,7 @@ public class EmailDetailsViewModel extends AndroidViewModel {
             mailRepository.markAsRead(emailId, new MailRepository.MailActionCallback() {
                 @Override
                 public void onSuccess(String id) {
-                    fetchEmailById(id);
+                    updateShownEmail(id, email -> email.setIsRead(true));
                 }
                 @Override
                 public void onFailure(String errorMessage) {
@@ -111,7 +119,7 @@ public class EmailDetailsViewModel extends AndroidViewModel {
             mailRepository.markAsUnread(emailId, new MailRepository.MailActionCallback() {
                 @Override
                 public void onSuccess(String id) {
-                    fetchEmailById(id);
+                    updateShownEmail(id, email -> email.setIsRead(false));
                 }
                 @Override
                 public void onFailure(String errorMessage) {
@@ -128,7 +136,7 @@ public class EmailDetailsViewModel extends AndroidViewModel {
             mailRepository.markMailAsSpam(emailId, new MailRepository.MailActionCallback() {
                 @Override
                 public void onSuccess(String id) {
-                    fetchEmailById(id);
+                    updateShownEmail(id, email -> email.setSpam(true));
                 }
                 @Override
                 public void onFailure(String errorMessage) {
@@ -139,7 +147,7 @@ public class EmailDetailsViewModel extends AndroidViewModel {
             mailRepository.unmarkMailAsSpam(emailId, new MailRepository.MailActionCallback() {
                 @Override
                 public void onSuccess(String id) {
-                    fetchEmailById(id);
+                    updateShownEmail(id, email -> email.setSpam(false));
                 }
                 @Override
                 public void onFailure(String errorMessage) {
@@ -163,12 +171,52 @@ public class EmailDetailsViewModel extends AndroidViewModel {
         });
     }
 
-    // Activate the API call
+    private interface EmailUpdate {
+        void apply(Email email);
+    }
+
+    // Toggles are in Room before the server has them (see Outbox), so fetching the mail again could
+    // still return the old flag; the shown copy is updated in place instead. A cached mail is also
+    // re-emitted by Room with the new flag; this covers mails that are not cached.
+    private void updateShownEmail(String emailId, EmailUpdate update) {
+        Email email = emailDetails.getValue();
+        if (email != null && emailId.equals(email.getId())) {
+            update.apply(email);
+            emailDetails.setValue(email);
+        }
+    }
+
+    // Shows the cached header straight from Room (no round trip), then adds the body: from
+    // mail_bodies when it was opened or prefetched before, otherwise from the server.
     public void fetchEmailById(String emailId) {
+        if (!emailId.equals(shownId)) {
+            shownId = emailId;
+            loadedBody = null;
+            if (observedHeader != null) {
+                emailDetails.removeSource(observedHeader);
+            }
+            observedHeader = mailRepository.observeEmail(emailId);
+            emailDetails.addSource(observedHeader, header -> {
+                if (header != null) {
+                    header.setBody(loadedBody);
+                    emailDetails.setValue(header);
+                }
+            });
+        }
         mailRepository.getEmailById(emailId, new MailRepository.EmailDetailsCallback() {
             @Override
             public void onSuccess(Email email) {
-                emailDetails.postValue(email);
+                if (!emailId.equals(shownId)) {
+                    return;
+                }
+                loadedBody = email.getBody();
+                Email shown = emailDetails.getValue();
+                if (shown != null && emailId.equals(shown.getId())) {
+                    shown.setBody(loadedBody);
+                    emailDetails.setValue(shown);
+                } else {
+                    emailDetails.setValue(email); // not cached, e.g. a mail only seen in a label
+                }
             }
 
             @Override
@@ -177,13 +225,12 @@ public class EmailDetailsViewModel extends AndroidViewModel {
             }
         });
     }
-    // This method fetches all labels from the repository and updates the LiveData.
-    // It uses a callback to handle success and failure cases.
-    public void fetchAllLabels() { 
-        mailRepository.getLabels(new MailRepository.LabelsCallback() {
+    // Makes sure the shared label list is current; getAllLabels() emits it when it changes.
+    // It uses a callback to handle failure cases.
+    public void fetchAllLabels() {
+        labelStore.refresh(false, new LabelService.LabelServiceCallback<List<Label>>() {
             @Override
             public void onSuccess(List<Label> labels) {
-                allLabels.postValue(labels);
             }
 
             @Override
@@ -199,7 +246,7 @@ public class EmailDetailsViewModel extends AndroidViewModel {
         mailRepository.addMailToLabel(emailId, labelId, new MailRepository.MailActionCallback() {
             @Override
             public void onSuccess(String id) {
-                fetchEmailById(id); // After adding the label, refresh the email details to reflect the changes
+                // nothing shown here depends on the mail's labels, so there is nothing to refetch
             }
 
             @Override
@@ -214,7 +261,7 @@ public class EmailDetailsViewModel extends AndroidViewModel {
         mailRepository.removeMailFromLabel(emailId, labelId, new MailRepository.MailActionCallback() {
             @Override
             public void onSuccess(String id) {
-                fetchEmailById(id); // After removing the label, refresh the email details to reflect the changes
+                // nothing shown here depends on the mail's labels, so there is nothing to refetch
             }
 
             @Override
@@ -6,32 +6,88 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
-
+import androidx.lifecycle.Transformations;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
+
+import com.example.android_app.data.local.PendingOpEntity;
+import com.example.android_app.data.network.LabelService;
+import com.example.android_app.data.repository.DetailPrefetcher;
+import com.example.android_app.data.repository.LabelStore;
 import com.example.android_app.data.repository.MailRepository;
-import com.example.android_app.data.repository.MailRepository.LabelsCallback;
+import com.example.android_app.data.repository.SyncEngine;
 import com.example.android_app.model.Email;
 import com.example.android_app.model.Label;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class InboxViewModel extends AndroidViewModel {
 
     private final MailRepository mailRepository;
-    private final MutableLiveData<List<Email>> currentEmails = new MutableLiveData<>(); // changed fron inbox to current to generelize the view model
+    private final SyncEngine syncEngine;
+    private final DetailPrefetcher detailPrefetcher;
+    // cached folders whose newest page was fetched in this session; after that only deltas are pulled
+    private final Set<String> revalidatedFolders = Collections.synchronizedSet(new HashSet<>());
+    private final MediatorLiveData<PagingData<Email>> currentEmails = new MediatorLiveData<>(); // changed fron inbox to current to generelize the view model
+    private LiveData<PagingData<Email>> pagedSource; // Room rows currently feeding currentEmails: folder pages or a label's mails
+    private String pagedFolder; // folder or label id pagedSource was built for
+    private PagingData<Email> folderData; // latest emission of pagedSource, shown again when a search ends
+    private boolean showingSearch; // currentEmails holds search results; pagedSource emissions are held back
     private final MutableLiveData<String> error = new MutableLiveData<>();
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>();
-    private final MutableLiveData<List<Label>> labels = new MutableLiveData<>(); //LiveData for labels
+    private final LabelStore labelStore;
     private String currentCategoryOrLabelId = "inbox"; // default to "inbox"
 
     public InboxViewModel(@NonNull Application application) {
         super(application);
-        mailRepository = new MailRepository(application);
+        mailRepository = MailRepository.getInstance(application);
+        syncEngine = SyncEngine.getInstance(application);
+        detailPrefetcher = DetailPrefetcher.getInstance(application);
+        labelStore = LabelStore.getInstance(application);
+        // catch up on whatever changed while the app was closed (or record the cursor on first run)
+        syncEngine.sync(new MailRepository.ActionCallback() {
+            @Override
+            public void onSuccess() {
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                Log.w("InboxViewModel", errorMessage);
+            }
+        });
+        syncEngine.startPush(); // from here on new and changed mails are pushed into Room
         fetchEmailsForCategoryOrLabel("inbox");
         fetchLabels(); // Fetch labels when ViewModel is created
     }
 
-    public LiveData<List<Email>> getCurrentEmails() {
+    @Override
+    protected void onCleared() {
+        syncEngine.stopPush();
+    }
+
+    // Search results (see MailViewModel) replace the folder in currentEmails until they are cleared with
+    // null. Every Room write makes the folder's pager emit, the search's own caching of server hits
+    // included, so those emissions are held back while results are shown instead of replacing them.
+    public void showSearchResults(List<Email> results) {
+        showingSearch = results != null;
+        if (results != null) {
+            currentEmails.setValue(PagingData.from(results));
+        } else if (folderData != null) {
+            currentEmails.setValue(folderData);
+        }
+    }
+
+    // warms the bodies of mails the user is likely to open; ids in priority order
+    public void prefetchDetails(List<String> emailIds) {
+        detailPrefetcher.prefetch(emailIds);
+    }
+
+    public LiveData<PagingData<Email>> getCurrentEmails() {
         return currentEmails;
     }
 
@@ -43,8 +99,8 @@ public class InboxViewModel extends AndroidViewModel {
         return isLoading;
     }
 
-    public LiveData<List<Label>> getLabels() { // New getter for labels
-        return labels;
+    public LiveData<List<Label>> getLabels() { // the app-wide label stream, see LabelStore
+        return labelStore.getLabels();
     }
 
     public String getCurrentCategoryOrLabelId() {
@@ -60,10 +116,51 @@ public class InboxViewModel extends AndroidViewModel {
         isLoading.setValue(true);
         error.setValue(null); // clear previous errors
 
+        // folders are paged out of Room right away and labels are read through mail_labels; the network
+        // call below only refreshes what Room holds. The source is kept when the same folder or label is
+        // fetched again so the scroll position survives.
+        boolean servedLocally = MailRepository.LOCAL_FOLDERS.contains(identifier);
+        if (!identifier.equals(pagedFolder)) {
+            if (pagedSource != null) {
+                currentEmails.removeSource(pagedSource);
+            }
+            pagedSource = servedLocally
+                    ? PagingLiveData.cachedIn(mailRepository.getFolderPages(identifier), this)
+                    : Transformations.map(mailRepository.observeLabelMails(identifier), PagingData::from);
+            pagedFolder = identifier;
+            folderData = null;
+            showingSearch = false; // picking another folder or label ends a search
+            currentEmails.addSource(pagedSource, data -> {
+                folderData = data;
+                if (!showingSearch) {
+                    currentEmails.setValue(data);
+                }
+            });
+        }
+
+        if (servedLocally && revalidatedFolders.contains(identifier) && syncEngine.hasCursor()) {
+            // Room already mirrors this folder; the changes land in Room and the pager picks them up
+            syncEngine.sync(new MailRepository.ActionCallback() {
+                @Override
+                public void onSuccess() {
+                    isLoading.postValue(false);
+                }
+
+                @Override
+                public void onFailure(String errorMessage) {
+                    error.postValue(errorMessage);
+                    isLoading.postValue(false);
+                }
+            });
+            return;
+        }
+
         MailRepository.ListEmailsCallback callback = new MailRepository.ListEmailsCallback() {
             @Override
             public void onSuccess(List<Email> emails) {
-                currentEmails.postValue(emails);
+                if (servedLocally) {
+                    revalidatedFolders.add(identifier);
+                }
                 isLoading.postValue(false);
                 error.postValue(null);
             }
@@ -108,42 +205,13 @@ public class InboxViewModel extends AndroidViewModel {
         }
     }
 
-
-    private void updateEmailStatusInList(String emailId, EmailUpdater updater) {
-        List<Email> currentEmailsList = currentEmails.getValue();
-        if (currentEmailsList != null) {
-            List<Email> updatedList = new java.util.ArrayList<>(currentEmailsList);
-            boolean found = false;
-            for (int i = 0; i < updatedList.size(); i++) {
-                Email email = updatedList.get(i);
-                if (email.getId().equals(emailId)) {
-                    updater.update(email);
-                    found = true;
-                    break;
-                }
-            }
-            if (found) {
-                currentEmails.postValue(updatedList); // update the LiveData with the new list
-            }
-        }
-    }
-
-    private interface EmailUpdater {
-        void update(Email email);
-    }
+    // Actions land in Room before the server sees them (see Outbox), and folders and labels are both
+    // read from Room, so the shown list updates on its own after any of the actions below.
 
     public void deleteEmail(String emailId) {
         mailRepository.deleteMail(emailId, new MailRepository.MailActionCallback() {
             @Override
             public void onSuccess(String updatedEmailId) {
-                List<Email> currentEmailsList = currentEmails.getValue();
-                if (currentEmailsList != null) {
-                    List<Email> updatedList = new java.util.ArrayList<>(currentEmailsList);
-                    updatedList.removeIf(email -> email.getId().equals(emailId));
-                    currentEmails.postValue(updatedList);
-                }
-                // Refresh the current emails list after deletion
-                fetchEmailsForCategoryOrLabel(currentCategoryOrLabelId);
             }
 
             @Override
@@ -157,8 +225,6 @@ public class InboxViewModel extends AndroidViewModel {
         mailRepository.markAsRead(emailId, new MailRepository.MailActionCallback() {
             @Override
             public void onSuccess(String updatedEmailId) {
-                updateEmailStatusInList(emailId, email -> email.setIsRead(true));
-                fetchEmailsForCategoryOrLabel(currentCategoryOrLabelId);
             }
 
             @Override
@@ -172,8 +238,6 @@ public class InboxViewModel extends AndroidViewModel {
         mailRepository.markAsUnread(emailId, new MailRepository.MailActionCallback() {
             @Override
             public void onSuccess(String updatedEmailId) {
-                updateEmailStatusInList(emailId, email -> email.setIsRead(false));
-                fetchEmailsForCategoryOrLabel(currentCategoryOrLabelId);
             }
 
             @Override
@@ -187,9 +251,6 @@ public class InboxViewModel extends AndroidViewModel {
         mailRepository.markMailAsImportant(emailId, new MailRepository.MailActionCallback() {
             @Override
             public void onSuccess(String updatedEmailId) {
-                updateEmailStatusInList(emailId, email -> email.setImportant(true));
-                fetchEmailsForCategoryOrLabel(currentCategoryOrLabelId);
-
             }
 
             @Override
@@ -203,8 +264,6 @@ public class InboxViewModel extends AndroidViewModel {
         mailRepository.unmarkMailAsImportant(emailId, new MailRepository.MailActionCallback() {
             @Override
             public void onSuccess(String updatedEmailId) {
-                updateEmailStatusInList(emailId, email -> email.setImportant(false));
-                fetchEmailsForCategoryOrLabel(currentCategoryOrLabelId);
             }
 
             @Override
@@ -218,13 +277,6 @@ public class InboxViewModel extends AndroidViewModel {
         mailRepository.markMailAsSpam(emailId, new MailRepository.MailActionCallback() {
             @Override
             public void onSuccess(String updatedEmailId) {
-                List<Email> currentEmailsList = currentEmails.getValue();
-                if (currentEmailsList != null) {
-                    List<Email> updatedList = new java.util.ArrayList<>(currentEmailsList);
-                    updatedList.removeIf(email -> email.getId().equals(emailId));
-                    currentEmails.postValue(updatedList); // Update the LiveData immediately
-                }
-                fetchEmailsForCategoryOrLabel(currentCategoryOrLabelId);
             }
 
             @Override
@@ -238,8 +290,6 @@ public class InboxViewModel extends AndroidViewModel {
         mailRepository.markMailAsStarred(emailId, new MailRepository.MailActionCallback() {
             @Override
             public void onSuccess(String updatedEmailId) {
-                updateEmailStatusInList(updatedEmailId, email -> email.setStarred(true));
-                fetchEmailsForCategoryOrLabel(currentCategoryOrLabelId);
             }
 
             @Override
@@ -253,8 +303,6 @@ public class InboxViewModel extends AndroidViewModel {
         mailRepository.unmarkMailAsStarred(emailId, new MailRepository.MailActionCallback() {
             @Override
             public void onSuccess(String updatedEmailId) {
-                updateEmailStatusInList(emailId, email -> email.setStarred(false));
-                fetchEmailsForCategoryOrLabel(currentCategoryOrLabelId);
             }
 
             @Override
@@ -264,11 +312,45 @@ public class InboxViewModel extends AndroidViewModel {
         });
     }
 
+    // --- Multi-select: one Room transaction and one batch request for all selected mails ---
+    public void deleteEmails(List<String> emailIds) {
+        applyBatch(emailIds, PendingOpEntity.DELETE, true, "Failed to delete emails: ");
+    }
+
+    public void markEmailsAsRead(List<String> emailIds) {
+        applyBatch(emailIds, PendingOpEntity.READ, true, "Failed to mark as read: ");
+    }
+
+    public void markEmailsAsUnread(List<String> emailIds) {
+        applyBatch(emailIds, PendingOpEntity.READ, false, "Failed to mark as unread: ");
+    }
+
+    public void markEmailsAsSpam(List<String> emailIds) {
+        applyBatch(emailIds, PendingOpEntity.SPAM, true, "Failed to mark as spam: ");
+    }
+
+    public void markEmailsAsImportant(List<String> emailIds) {
+        applyBatch(emailIds, PendingOpEntity.IMPORTANT, true, "Failed to mark as important: ");
+    }
+
+    private void applyBatch(List<String> emailIds, String action, boolean value, String errorPrefix) {
+        mailRepository.applyBatch(emailIds, action, value, new MailRepository.ActionCallback() {
+            @Override
+            public void onSuccess() {
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                error.postValue(errorPrefix + errorMessage);
+            }
+        });
+    }
+
     public void fetchLabels() {
-        mailRepository.getLabels(new LabelsCallback() {
+        labelStore.refresh(false, new LabelService.LabelServiceCallback<List<Label>>() {
             @Override
             public void onSuccess(List<Label> fetchedLabels) {
-                labels.postValue(fetchedLabels);
+                // getLabels() emits the change, if there was one
             }
 
             @Override
@@ -9,10 +9,12 @@ import androidx.lifecycle.MutableLiveData;
 
 import com.example.android_app.data.network.LabelService;
 import com.example.android_app.data.repository.LabelRepository;
+import com.example.android_app.data.repository.LabelStore;
 import com.example.android_app.model.Email;
 import com.example.android_app.model.Label;
 
 import java.util.List;
+import java.util.Map;
 
 import okhttp3.ResponseBody;
 
@@ -20,11 +22,22 @@ public class LabelViewModel extends AndroidViewModel {
 
     // Now, this refers to your LabelRepository
     private final LabelRepository repository;
+    // the app-wide label list; every screen observes the same one
+    private final LabelStore labelStore;
 
-    // LiveData for labels list
-    private final MutableLiveData<List<Label>> _labels = new MutableLiveData<>();
-    public MutableLiveData<List<Label>> getLabels() {
-        return _labels;
+    /**
+     * The user's labels. Emits whenever they change, from any screen.
+     */
+    public LiveData<List<Label>> getLabels() {
+        return labelStore.getLabels();
+    }
+
+    /**
+     * How many cached mails carry each label, by label id. Counted locally, so it is a lower bound
+     * until the label's mails have been listed once.
+     */
+    public LiveData<Map<String, Integer>> getLabelCounts() {
+        return labelStore.getMailCounts();
     }
 
     // LiveData for any error messages
@@ -43,20 +56,20 @@ public class LabelViewModel extends AndroidViewModel {
     public LabelViewModel(@NonNull Application application) {
         super(application);
         // Initialize LabelRepository using the application context
-        this.repository = new LabelRepository(application.getApplicationContext());
+        this.repository = LabelRepository.getInstance(application.getApplicationContext());
+        this.labelStore = LabelStore.getInstance(application.getApplicationContext());
     }
 
     /**
-     * Fetches all labels for the authenticated user.
-     * Updates _labels LiveData on success, _errorMessage on failure.
+     * Makes sure the labels are current. getLabels() emits only if the server's list changed;
+     * requests from several screens at once share one check.
+     * Updates _errorMessage on failure.
      */
     public void fetchLabels() {
         _isLoading.setValue(true); // Indicate loading
-        // Token retrieval and checking is now handled by the repository
-        repository.getLabels(new LabelService.LabelServiceCallback<List<Label>>() {
+        labelStore.refresh(false, new LabelService.LabelServiceCallback<List<Label>>() {
             @Override
             public void onSuccess(List<Label> result) {
-                _labels.setValue(result); // Update LiveData with new labels
                 _isLoading.setValue(false); // End loading
                 _errorMessage.setValue(null); // Clear any previous error
             }
@@ -71,7 +84,7 @@ public class LabelViewModel extends AndroidViewModel {
 
     /**
      * Creates a new label with the given name.
-     * On success, it refreshes the list of labels.
+     * The label shows up at once and is removed again if the server refuses it.
      *
      * @param name The name of the label to create.
      */
@@ -83,11 +96,10 @@ public class LabelViewModel extends AndroidViewModel {
 
         _isLoading.setValue(true);
         // Token retrieval and checking is now handled by the repository
-        repository.createLabel(name, new LabelService.LabelServiceCallback<Label>() {
+        labelStore.create(name, new LabelService.LabelServiceCallback<Label>() {
             @Override
             public void onSuccess(Label result) {
-                // If creation is successful, re-fetch the entire list to update the UI
-                fetchLabels();
+                _isLoading.setValue(false);
                 // Optionally, show a success message
                 _errorMessage.setValue("Label '" + result.getName() + "' created successfully.");
             }
@@ -102,7 +114,7 @@ public class LabelViewModel extends AndroidViewModel {
 
     /**
      * Updates an existing label's name.
-     * On success, it refreshes the list of labels.
+     * The new name shows up at once; the old one comes back if the server refuses it.
      *
      * @param labelId The ID of the label to update.
      * @param newName The new name for the label.
@@ -119,10 +131,10 @@ public class LabelViewModel extends AndroidViewModel {
 
         _isLoading.setValue(true);
         // Token retrieval and checking is now handled by the repository
-        repository.updateLabel(labelId, newName, new LabelService.LabelServiceCallback<Label>() {
+        labelStore.rename(labelId, newName, new LabelService.LabelServiceCallback<Label>() {
             @Override
             public void onSuccess(Label result) {
-                fetchLabels(); // Refresh the list
+                _isLoading.setValue(false);
                 _errorMessage.setValue("Label updated to '" + result.getName() + "' successfully.");
             }
 
@@ -136,7 +148,7 @@ public class LabelViewModel extends AndroidViewModel {
 
     /**
      * Deletes a label.
-     * On success, it refreshes the list of labels.
+     * The label disappears at once and comes back if the server refuses.
      *
      * @param labelId The ID of the label to delete.
      */
@@ -148,10 +160,10 @@ public class LabelViewModel extends AndroidViewModel {
 
         _isLoading.setValue(true);
         // Token retrieval and checking is now handled by the repository
-        repository.deleteLabel(labelId, new LabelService.LabelServiceCallback<Void>() {
+        labelStore.delete(labelId, new LabelService.LabelServiceCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
-                fetchLabels(); // Refresh the list
+                _isLoading.setValue(false);
                 _errorMessage.setValue("Label deleted successfully.");
             }
 
@@ -21,7 +21,7 @@ public class LoginViewModel extends AndroidViewModel {
 
     public LoginViewModel(@NonNull Application application) {
         super(application);
-        repository = new UserRepository(application);
+        repository = UserRepository.getInstance(application);
     }
     public LiveData<LoginResponse> getLoginResult() {
         return loginResult;
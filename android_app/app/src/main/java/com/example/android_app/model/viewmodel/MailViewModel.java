@@ -3,7 +3,10 @@
 package com.example.android_app.model.viewmodel;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.util.LruCache;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
@@ -14,8 +17,9 @@ import com.example.android_app.data.repository.MailRepository;
 import com.example.android_app.model.Email;
 import com.example.android_app.model.Label;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 public class MailViewModel extends AndroidViewModel {
@@ -26,8 +30,8 @@ public class MailViewModel extends AndroidViewModel {
 
     public MailViewModel(@NonNull Application application) {
         super(application);
-        this.mailRepository = new MailRepository(application.getApplicationContext());
-        initializeMailCounts();
+        this.mailRepository = MailRepository.getInstance(application.getApplicationContext());
+        fetchAllCategoryCounts();
     }
 
     // LiveData for various mail lists
@@ -66,11 +70,22 @@ public class MailViewModel extends AndroidViewModel {
         return _starredMails;
     }
 
+    // null when the search field is cleared
     private final MutableLiveData<List<Email>> _searchResults = new MutableLiveData<>();
     public LiveData<List<Email>> getSearchResults() {
         return _searchResults;
     }
 
+    private static final long SEARCH_DEBOUNCE_MS = 300;
+    private static final int SEARCH_CACHE_SIZE = 20; // recent query -> first page of results
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<String, List<Email>> searchCache = new LruCache<>(SEARCH_CACHE_SIZE);
+    private final Runnable pendingSearch = () -> startSearch(typedQuery);
+    private String typedQuery = ""; // what is in the search field, normalized
+    private volatile String activeQuery; // query of the running search; answers for any other are dropped
+    private volatile String answeredQuery; // last query with a full answer in searchCache, the base for refining
+    private MailRepository.SearchRequest runningSearch;
+
     private final MutableLiveData<List<Email>> _mailsByLabel = new MutableLiveData<>();
     public LiveData<List<Email>> getMailsByLabel() {
         return _mailsByLabel;
@@ -112,154 +127,12 @@ public class MailViewModel extends AndroidViewModel {
         return _mailCounts;
     }
 
-    // A map to hold the current counts, initialized to 0
-    private Map<String, Integer> currentMailCounts = new HashMap<>();
-
-
-    private void initializeMailCounts() {
-        // Initialize common categories
-        currentMailCounts.put("inbox", 0);
-        currentMailCounts.put("sent", 0);
-        currentMailCounts.put("drafts", 0);
-        currentMailCounts.put("spam", 0);
-        currentMailCounts.put("deleted", 0);
-        currentMailCounts.put("important", 0);
-        currentMailCounts.put("starred", 0);
-        _mailCounts.postValue(currentMailCounts); // Set initial values
-    }
-
     /**
-     * Fetches mail counts for all standard categories and updates _mailCounts LiveData.
+     * Fetches the mail count of every standard category in one request and publishes them in
+     * _mailCounts. Offline, the repository counts the cached mails instead.
      */
     public void fetchAllCategoryCounts() {
-        _isLoading.postValue(true);
-
-        // Use a counter or a latch if you need to know when all fetches are complete
-        // For simplicity, we'll update as each one completes.
-        // In a real app, consider using a CompletableFuture or RxJava for better coordination.
-
-        // Fetch Inbox count
-        mailRepository.getInbox(new MailRepository.ListEmailsCallback() {
-            @Override
-            public void onSuccess(List<Email> emails) {
-                currentMailCounts.put("inbox", emails.size());
-                _mailCounts.postValue(currentMailCounts); // Update LiveData
-                checkAllCountsFetched();
-            }
-
-            @Override
-            public void onFailure(String error) {
-                _errorMessage.postValue(error);
-                checkAllCountsFetched();
-            }
-        });
-
-        // Fetch Sent count
-        mailRepository.getSentMails(new MailRepository.ListEmailsCallback() {
-            @Override
-            public void onSuccess(List<Email> emails) {
-                currentMailCounts.put("sent", emails.size());
-                _mailCounts.postValue(currentMailCounts);
-                checkAllCountsFetched();
-            }
-
-            @Override
-            public void onFailure(String error) {
-                _errorMessage.postValue(error);
-                checkAllCountsFetched();
-            }
-        });
-
-        // Fetch Drafts count
-        mailRepository.getDrafts(new MailRepository.ListEmailsCallback() {
-            @Override
-            public void onSuccess(List<Email> emails) {
-                currentMailCounts.put("drafts", emails.size());
-                _mailCounts.postValue(currentMailCounts);
-                checkAllCountsFetched();
-            }
-
-            @Override
-            public void onFailure(String error) {
-                _errorMessage.postValue(error);
-                checkAllCountsFetched();
-            }
-        });
-
-        // Fetch Spam count
-        mailRepository.getSpamMails(new MailRepository.ListEmailsCallback() {
-            @Override
-            public void onSuccess(List<Email> emails) {
-                currentMailCounts.put("spam", emails.size());
-                _mailCounts.postValue(currentMailCounts);
-                checkAllCountsFetched();
-            }
-
-            @Override
-            public void onFailure(String error) {
-                _errorMessage.postValue(error);
-                checkAllCountsFetched();
-            }
-        });
-
-        // Fetch Deleted count
-        mailRepository.getDeletedMails(new MailRepository.ListEmailsCallback() {
-            @Override
-            public void onSuccess(List<Email> emails) {
-                currentMailCounts.put("deleted", emails.size());
-                _mailCounts.postValue(currentMailCounts);
-                checkAllCountsFetched();
-            }
-
-            @Override
-            public void onFailure(String error) {
-                _errorMessage.postValue(error);
-                checkAllCountsFetched();
-            }
-        });
-
-        // Fetch Important count
-        mailRepository.getImportantMails(new MailRepository.ListEmailsCallback() {
-            @Override
-            public void onSuccess(List<Email> emails) {
-                currentMailCounts.put("important", emails.size());
-                _mailCounts.postValue(currentMailCounts);
-                checkAllCountsFetched();
-            }
-
-            @Override
-            public void onFailure(String error) {
-                _errorMessage.postValue(error);
-                checkAllCountsFetched();
-            }
-        });
-
-        // Fetch Starred count
-        mailRepository.getStarredMails(new MailRepository.ListEmailsCallback() {
-            @Override
-            public void onSuccess(List<Email> emails) {
-                currentMailCounts.put("starred", emails.size());
-                _mailCounts.postValue(currentMailCounts);
-                checkAllCountsFetched();
-            }
-
-            @Override
-            public void onFailure(String error) {
-                _errorMessage.postValue(error);
-                checkAllCountsFetched();
-            }
-        });
-    }
-
-    private int completedCountFetches = 0;
-    private final int TOTAL_CATEGORY_COUNTS = 7; // Inbox, Sent, Drafts, Spam, Deleted, Important, Starred
-
-    private void checkAllCountsFetched() {
-        completedCountFetches++;
-        if (completedCountFetches == TOTAL_CATEGORY_COUNTS) {
-            _isLoading.postValue(false);
-            completedCountFetches = 0; // Reset for next fetch
-        }
+        mailRepository.getMailCounts(_mailCounts::postValue);
     }
 
 
@@ -308,9 +181,6 @@ public class MailViewModel extends AndroidViewModel {
                 _sentMails.postValue(emails);
                 _isLoading.postValue(false);
                 _errorMessage.postValue(null);
-                // Also update count
-                currentMailCounts.put("sent", emails.size());
-                _mailCounts.postValue(currentMailCounts);
             }
 
             @Override
@@ -329,9 +199,6 @@ public class MailViewModel extends AndroidViewModel {
                 _drafts.postValue(emails);
                 _isLoading.postValue(false);
                 _errorMessage.postValue(null);
-                // Also update count
-                currentMailCounts.put("drafts", emails.size());
-                _mailCounts.postValue(currentMailCounts);
             }
 
             @Override
@@ -350,9 +217,6 @@ public class MailViewModel extends AndroidViewModel {
                 _spamMails.postValue(emails);
                 _isLoading.postValue(false);
                 _errorMessage.postValue(null);
-                // Also update count
-                currentMailCounts.put("spam", emails.size());
-                _mailCounts.postValue(currentMailCounts);
             }
 
             @Override
@@ -371,9 +235,6 @@ public class MailViewModel extends AndroidViewModel {
                 _deletedMails.postValue(emails);
                 _isLoading.postValue(false);
                 _errorMessage.postValue(null);
-                // Also update count
-                currentMailCounts.put("deleted", emails.size());
-                _mailCounts.postValue(currentMailCounts);
             }
 
             @Override
@@ -392,9 +253,6 @@ public class MailViewModel extends AndroidViewModel {
                 _importantMails.postValue(emails);
                 _isLoading.postValue(false);
                 _errorMessage.postValue(null);
-                // Also update count
-                currentMailCounts.put("important", emails.size());
-                _mailCounts.postValue(currentMailCounts);
             }
 
             @Override
@@ -413,9 +271,6 @@ public class MailViewModel extends AndroidViewModel {
                 _starredMails.postValue(emails);
                 _isLoading.postValue(false);
                 _errorMessage.postValue(null);
-                // Also update count
-                currentMailCounts.put("starred", emails.size());
-                _mailCounts.postValue(currentMailCounts);
             }
 
             @Override
@@ -426,23 +281,126 @@ public class MailViewModel extends AndroidViewModel {
         });
     }
 
-    public void searchMails(String query) { 
+    // --- Search as you type ---
+    // Every keystroke lands in onSearchQueryChanged. A cached answer is shown at once; otherwise, when
+    // the query only grew, the last answer is narrowed down locally while the real search waits for
+    // the typing to pause. Starting a search cancels the one before it.
+
+    public void onSearchQueryChanged(String input) {
+        String query = normalizeQuery(input);
+        if (query.equals(typedQuery)) {
+            return; // e.g. a trailing space
+        }
+        typedQuery = query;
+        searchHandler.removeCallbacks(pendingSearch);
+        cancelRunningSearch();
+        if (query.isEmpty()) {
+            answeredQuery = null;
+            searchCache.evictAll(); // the next search starts from the current mailbox
+            _searchResults.setValue(null);
+            return;
+        }
+
+        List<Email> cached = searchCache.get(query);
+        if (cached != null) {
+            _searchResults.setValue(cached);
+            return;
+        }
+        String base = answeredQuery;
+        List<Email> previous = base != null && query.startsWith(base) ? searchCache.get(base) : null;
+        if (previous != null) {
+            _searchResults.setValue(refine(previous, query));
+        }
+        searchHandler.postDelayed(pendingSearch, SEARCH_DEBOUNCE_MS);
+    }
+
+    // Search right away (the IME search action)
+    public void searchMails(String input) {
+        typedQuery = normalizeQuery(input);
+        searchHandler.removeCallbacks(pendingSearch);
+        if (!typedQuery.isEmpty()) {
+            startSearch(typedQuery);
+        }
+    }
+
+    private void startSearch(String query) {
+        cancelRunningSearch();
+        activeQuery = query;
         _isLoading.postValue(true);
-        mailRepository.searchMails(query, new MailRepository.ListEmailsCallback() {
+        runningSearch = mailRepository.searchMails(query, new MailRepository.SearchCallback() {
             @Override
-            public void onSuccess(List<Email> emails) {
+            public void onLocalResults(List<Email> emails) {
+                if (query.equals(activeQuery)) {
+                    _searchResults.postValue(emails); // shown, but not cached: the server may add to it
+                }
+            }
+
+            @Override
+            public void onServerResults(List<Email> emails) {
+                if (!query.equals(activeQuery)) {
+                    return; // superseded while the answer was on its way
+                }
+                searchCache.put(query, emails); // only complete answers, so a cache hit never skips the server
+                answeredQuery = query;
                 _searchResults.postValue(emails);
                 _isLoading.postValue(false);
                 _errorMessage.postValue(null);
             }
 
             @Override
-            public void onFailure(String error) {
-                _errorMessage.postValue(error);
-                _isLoading.postValue(false);
+            public void onServerUnavailable() {
+                if (query.equals(activeQuery)) {
+                    _isLoading.postValue(false); // the local results stay, the query is asked again next time
+                }
             }
         });
     }
+
+    private void cancelRunningSearch() {
+        activeQuery = null;
+        if (runningSearch != null) {
+            runningSearch.cancel();
+            runningSearch = null;
+            _isLoading.postValue(false); // a search started after this posts true again
+        }
+    }
+
+    static String normalizeQuery(String input) {
+        return input == null ? "" : input.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // The rows of a shorter query's answer that still match: every word has to start a word of the
+    // subject or sender. Bodies are not in list rows, so body-only hits drop out until the real answer.
+    static List<Email> refine(List<Email> emails, String query) {
+        String[] words = query.split(" ");
+        List<Email> refined = new ArrayList<>();
+        for (Email email : emails) {
+            String text = " " + (orEmpty(email.getSubject()) + " " + orEmpty(email.getSenderName()) + " " + orEmpty(email.getFrom()))
+                    .toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ");
+            boolean matches = true;
+            for (String word : words) {
+                if (!text.contains(" " + word)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                refined.add(email);
+            }
+        }
+        return refined;
+    }
+
+    private static String orEmpty(String text) {
+        return text != null ? text : ""; // a missing sender name must not match "null"
+    }
+
+    @Override
+    protected void onCleared() {
+        searchHandler.removeCallbacks(pendingSearch);
+        cancelRunningSearch();
+        super.onCleared();
+    }
     public void fetchMailsByLabel(String labelId) { 
         _isLoading.postValue(true);
         mailRepository.getMailsByLabel(labelId, new MailRepository.ListEmailsCallback() {
@@ -21,15 +21,16 @@ public class RegistrationViewModel extends AndroidViewModel {
     private final UserRepository repository; //interface for interacting with the Network layer
 
     public MutableLiveData<String> status = new MutableLiveData<>(); //live data to notify the view about the registration status
+    public MutableLiveData<Integer> uploadProgress = new MutableLiveData<>(); //percent of the profile picture sent
 
     public RegistrationViewModel(@NonNull Application application) {
         super(application);
-        repository = new UserRepository(application);
+        repository = UserRepository.getInstance(application);
     }
 
     //call registerUser method from repository
     public void registerUser(String fullName, String email, String birthDate, String gender, String password, Uri imageUri) {
-        repository.registerUser(fullName, email, birthDate, gender, password, imageUri)
+        repository.registerUser(fullName, email, birthDate, gender, password, imageUri, uploadProgress)
                 .enqueue(new Callback<ResponseBody>() {
                     @Override
                     public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
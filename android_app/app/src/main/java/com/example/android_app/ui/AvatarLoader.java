@@ -0,0 +1,136 @@
+package com.example.android_app.ui;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.example.android_app.R;
+import com.example.android_app.utils.AppExecutors;
+
+import java.util.Locale;
+
+// Sender avatars for the mail list. Every request is decoded straight to the row's avatar size and
+// circle-cropped once: Glide keys its memory and disk caches on (url, size, transformation), so the
+// hundreds of rows from one sender share a single small bitmap, and the preloader's requests are the
+// very same keys the rows ask for. Senders without a picture get a monogram (initial on a colored
+// circle); those are drawn on the compute pool and memoized, there are only a few distinct ones.
+public class AvatarLoader {
+    private static final int[] MONOGRAM_COLORS = {
+            0xFFE57373, 0xFFF06292, 0xFFBA68C8, 0xFF7986CB, 0xFF4FC3F7, 0xFF4DB6AC, 0xFFAED581, 0xFFFFB74D
+    };
+    private static final LruCache<String, Bitmap> MONOGRAMS = new LruCache<>(64); // by letter and color
+
+    private final Context context;
+    private final RequestManager glide;
+    private final int sizePx;
+
+    public AvatarLoader(Context context) {
+        this.context = context;
+        this.glide = Glide.with(context);
+        this.sizePx = context.getResources().getDimensionPixelSize(R.dimen.avatar_size);
+    }
+
+    public int getSizePx() {
+        return sizePx;
+    }
+
+    // The one request shape used by rows and by the preloader, so a preloaded avatar is a cache hit
+    public RequestBuilder<Drawable> request(String url) {
+        return glide.load(url)
+                .override(sizePx)
+                .circleCrop()
+                .dontAnimate(); // a cache hit replaces the placeholder at once, no cross-fade flicker
+    }
+
+    public void bind(@NonNull ImageView view, String senderKey, String displayName, String url) {
+        String monogramKey = monogramKey(senderKey, displayName);
+        Bitmap monogram = MONOGRAMS.get(monogramKey);
+        view.setBackgroundResource(0);
+        view.setTag(R.id.imageSenderOrSelected, monogramKey);
+
+        if (url != null && !url.isEmpty()) {
+            Drawable placeholder = monogram != null
+                    ? new BitmapDrawable(context.getResources(), monogram)
+                    : ContextCompat.getDrawable(context, R.drawable.ic_profile_placeholder);
+            request(url).placeholder(placeholder).error(placeholder).into(view);
+            if (monogram == null) {
+                renderMonogram(monogramKey, null); // ready for the next row of this sender
+            }
+            return;
+        }
+
+        glide.clear(view);
+        if (monogram != null) {
+            view.setImageBitmap(monogram);
+        } else {
+            view.setImageResource(R.drawable.ic_profile_placeholder);
+            renderMonogram(monogramKey, view);
+        }
+    }
+
+    // Cancels a pending load, e.g. when the row is recycled or shows the selection check instead
+    public void clear(@NonNull ImageView view) {
+        view.setTag(R.id.imageSenderOrSelected, null);
+        glide.clear(view);
+    }
+
+    private void renderMonogram(String monogramKey, ImageView target) {
+        AppExecutors.getInstance().compute().execute(() -> {
+            Bitmap bitmap = MONOGRAMS.get(monogramKey);
+            if (bitmap == null) {
+                bitmap = drawMonogram(monogramKey);
+                MONOGRAMS.put(monogramKey, bitmap);
+            }
+            if (target == null) {
+                return;
+            }
+            Bitmap rendered = bitmap;
+            AppExecutors.getInstance().mainThread().execute(() -> {
+                // the view may have been rebound to another sender in the meantime
+                if (monogramKey.equals(target.getTag(R.id.imageSenderOrSelected))) {
+                    target.setImageBitmap(rendered);
+                }
+            });
+        });
+    }
+
+    private Bitmap drawMonogram(String monogramKey) {
+        int color = MONOGRAM_COLORS[monogramKey.charAt(monogramKey.length() - 1) - '0'];
+        String letter = monogramKey.substring(0, monogramKey.length() - 2);
+
+        Bitmap bitmap = Bitmap.createBitmap(sizePx, sizePx, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        canvas.drawCircle(sizePx / 2f, sizePx / 2f, sizePx / 2f, paint);
+
+        paint.setColor(Color.WHITE);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setTextSize(sizePx * 0.45f);
+        float baseline = sizePx / 2f - (paint.descent() + paint.ascent()) / 2f;
+        canvas.drawText(letter, sizePx / 2f, baseline, paint);
+        return bitmap;
+    }
+
+    // "<letter>:<color index>"; the color comes from the sender so it stays the same on every row
+    private static String monogramKey(String senderKey, String displayName) {
+        String source = displayName != null && !displayName.isEmpty() ? displayName : senderKey;
+        String letter = source != null && !source.isEmpty()
+                ? source.substring(0, Character.charCount(source.codePointAt(0))).toUpperCase(Locale.ROOT)
+                : "?";
+        int color = Math.floorMod(senderKey != null ? senderKey.hashCode() : 0, MONOGRAM_COLORS.length);
+        return letter + ":" + color;
+    }
+}
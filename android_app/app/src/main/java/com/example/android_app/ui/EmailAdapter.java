@@ -2,6 +2,9 @@ package com.example.android_app.ui;
 
 import android.content.Context;
 import android.graphics.Typeface;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.BackgroundColorSpan;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,24 +14,76 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.lifecycle.Lifecycle;
+import androidx.paging.ItemSnapshotList;
+import androidx.paging.PagingData;
+import androidx.paging.PagingDataAdapter;
+import androidx.paging.PagingDataTransforms;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
 import com.example.android_app.R;
 import com.example.android_app.model.Email;
+import com.example.android_app.model.MailRowModel;
+import com.example.android_app.utils.AppExecutors;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
-public class EmailAdapter extends RecyclerView.Adapter<EmailAdapter.EmailViewHolder> {
+import kotlin.Unit;
+
+// Rows arrive as PagingData: cached folders page in from Room, labels and search results are wrapped
+// with PagingData.from(list). Only the loaded pages are kept in memory.
+// Each mail is turned into a MailRowModel on a background thread before it reaches the adapter, so
+// binding does no parsing or formatting. Paging diffs every new page off the main thread. A row whose only change is its read or star state
+// gets a payload, so just that part of the row is rebound instead of the whole item.
+public class EmailAdapter extends PagingDataAdapter<MailRowModel, EmailAdapter.EmailViewHolder> {
+    private static final String PAYLOAD_READ = "read";
+    private static final String PAYLOAD_STAR = "star";
+    private static final String PAYLOAD_SELECTION = "selection";
+
+    private static final DiffUtil.ItemCallback<MailRowModel> DIFF_CALLBACK = new DiffUtil.ItemCallback<MailRowModel>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MailRowModel oldItem, @NonNull MailRowModel newItem) {
+            return Objects.equals(oldItem.getId(), newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MailRowModel oldItem, @NonNull MailRowModel newItem) {
+            return oldItem.getFlags() == newItem.getFlags() && oldItem.sameContentExceptFlags(newItem);
+        }
+
+        // null (full rebind) unless nothing but the read and/or star state changed
+        @Override
+        public Object getChangePayload(@NonNull MailRowModel oldItem, @NonNull MailRowModel newItem) {
+            if (!oldItem.sameContentExceptFlags(newItem)) {
+                return null;
+            }
+            Set<String> changes = new HashSet<>();
+            if (oldItem.isRead() != newItem.isRead()) {
+                changes.add(PAYLOAD_READ);
+            }
+            if (oldItem.isStarred() != newItem.isStarred()) {
+                changes.add(PAYLOAD_STAR);
+            }
+            return changes;
+        }
+    };
 
     private final Context context;
-    private List<Email> emailList;
+    private final int textColor;
+    private final int highlightColor;
+    private final AvatarLoader avatarLoader;
     private final Set<String> selectedEmailIds; // Keeps track of selected email IDs
+    private final Map<String, Integer> positionsById = new HashMap<>(); // loaded rows, rebuilt on every page update
     private boolean isMultiSelectMode = false;
     private MultiSelectModeListener multiSelectModeListener; // Listener for activity callbacks
     private EmailItemClickListener itemClickListener; // Listener for regular/long clicks
@@ -50,17 +105,34 @@ public class EmailAdapter extends RecyclerView.Adapter<EmailAdapter.EmailViewHol
     }
 
     // Updated constructor to accept the click listener
-    public EmailAdapter(Context context, List<Email> emailList, EmailItemClickListener listener) {
+    public EmailAdapter(Context context, EmailItemClickListener listener) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.emailList = emailList;
+        this.textColor = ContextCompat.getColor(context, R.color.text_color);
+        this.highlightColor = ContextCompat.getColor(context, R.color.custom_yellow);
+        this.avatarLoader = new AvatarLoader(context);
         this.itemClickListener = listener;
         this.selectedEmailIds = new HashSet<>();
+        // Re-index the loaded rows and re-validate selections whenever new pages come in
+        addOnPagesUpdatedListener(() -> {
+            indexPositions();
+            if (isMultiSelectMode) {
+                selectedEmailIds.retainAll(positionsById.keySet());
+                updateMultiSelectMode();
+            }
+            return Unit.INSTANCE;
+        });
     }
 
     public void setMultiSelectModeListener(MultiSelectModeListener listener) {
         this.multiSelectModeListener = listener;
     }
 
+    // Use this instead of submitData: the row models are built off the main thread
+    public void submitEmails(@NonNull Lifecycle lifecycle, @NonNull PagingData<Email> emails) {
+        submitData(lifecycle, PagingDataTransforms.map(emails, AppExecutors.getInstance().compute(), MailRowModel::of));
+    }
+
     @NonNull
     @Override
     public EmailViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -68,126 +140,183 @@ public class EmailAdapter extends RecyclerView.Adapter<EmailAdapter.EmailViewHol
         return new EmailViewHolder(view);
     }
 
+    // Partial rebind: the payloads name the parts of the row that changed
+    @Override
+    public void onBindViewHolder(@NonNull EmailViewHolder holder, int position, @NonNull List<Object> payloads) {
+        MailRowModel row = payloads.isEmpty() ? null : getItem(position);
+        if (row == null) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        for (Object payload : payloads) {
+            if (!(payload instanceof Set)) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+            for (Object change : (Set<?>) payload) {
+                if (PAYLOAD_READ.equals(change)) {
+                    bindReadState(holder, row);
+                } else if (PAYLOAD_STAR.equals(change)) {
+                    bindStar(holder, row);
+                } else if (PAYLOAD_SELECTION.equals(change)) {
+                    bindSelection(holder, row);
+                }
+            }
+        }
+    }
+
     @Override
     public void onBindViewHolder(@NonNull EmailViewHolder holder, int position) {
-        Email currentEmail = emailList.get(position);
+        MailRowModel row = getItem(position);
+        if (row == null) {
+            return; // placeholders are disabled, but getItem is nullable
+        }
 
-        // --- 1. Set basic text fields ---
-        holder.subjectTextView.setText(currentEmail.getSubject());
+        // --- 1. Text fields, all prepared by MailRowModel ---
+        holder.subjectTextView.setText(highlight(row.getSubject(), row.getSubjectHighlights()));
+        holder.textTime.setText(row.isPending() ? context.getString(R.string.sending) : row.getDateLabel());
+        holder.senderTextView.setText(row.getSenderDisplayName());
 
-        if (currentEmail.getDate() != null) {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd", Locale.getDefault());
-            holder.textTime.setText(dateFormat.format(currentEmail.getDate()));
-        } else {
-            holder.textTime.setText("");
-        }
+        // --- 2. Profile picture or selection check, activated state ---
+        bindSelection(holder, row);
 
-        // --- 2. Handle Sender Name & Profile Picture Logic ---
-        // Set initial sender name (either actual name, loading text, or error)
-        if (currentEmail.getSenderName() != null) {
-            holder.senderTextView.setText(currentEmail.getSenderName());
-        } else {
-            // Show loading text while we wait for the API call to complete
-            holder.senderTextView.setText("Unknown Sender");
-        }
+        // --- 3. Handle Read/Unread Status and Text Style ---
+        bindReadState(holder, row);
 
-        // --- 3. Handle Profile Picture (using fromUser) ---
-        boolean isSelected = selectedEmailIds.contains(currentEmail.getId());
+        // --- 4. Handle Star Icon (Important/Starred) ---
+        bindStar(holder, row);
+    }
+
+    private void bindSelection(EmailViewHolder holder, MailRowModel row) {
+        boolean isSelected = selectedEmailIds.contains(row.getId());
 
         // Determine what to show in the image view (profile pic or selection icon)
-        if (isMultiSelectMode) {
-            holder.imageSenderOrSelected.setVisibility(View.VISIBLE);
-            if (isSelected) {
-                // Show blue checkmark if item is selected in multi-select mode
-                holder.imageSenderOrSelected.setImageResource(R.drawable.ic_check_circle_blue);
-                holder.imageSenderOrSelected.setBackgroundResource(0); // Remove any background circle
-            } else {
-                // Item is not selected but in multi-select mode, show profile pic or placeholder
-                loadProfileImage(holder.imageSenderOrSelected, currentEmail.getProfilePicUrl());
-            }
+        holder.imageSenderOrSelected.setVisibility(View.VISIBLE);
+        if (isMultiSelectMode && isSelected) {
+            // Show blue checkmark if item is selected in multi-select mode
+            avatarLoader.clear(holder.imageSenderOrSelected); // a pending avatar load must not replace it
+            holder.imageSenderOrSelected.setImageResource(R.drawable.ic_check_circle_blue);
+            holder.imageSenderOrSelected.setBackgroundResource(0); // Remove any background circle
         } else {
-            // Not in multi-select mode, always show the sender's profile image
-            holder.imageSenderOrSelected.setVisibility(View.VISIBLE);
-            loadProfileImage(holder.imageSenderOrSelected, currentEmail.getProfilePicUrl());
+            // not selected, or not in multi-select mode: the sender's profile image
+            avatarLoader.bind(holder.imageSenderOrSelected, row.getSenderKey(), row.getSenderDisplayName(), row.getAvatarUrl());
         }
 
-        // --- 4. Handle Item Background and Activated State (for selector) ---
+        // Item Background and Activated State (for selector)
         holder.itemView.setActivated(isMultiSelectMode && isSelected);
+    }
 
-        // --- 5. Handle Read/Unread Status and Text Style ---
-        if (currentEmail.isRead()) {
-            holder.senderTextView.setTypeface(null, Typeface.NORMAL);
-            holder.subjectTextView.setTypeface(null, Typeface.NORMAL);
-            holder.textTime.setTypeface(null, Typeface.NORMAL);
-            // holder.unreadIndicator.setVisibility(View.GONE);
-            holder.senderTextView.setTextColor(ContextCompat.getColor(context, R.color.text_color));
-            holder.subjectTextView.setTextColor(ContextCompat.getColor(context, R.color.text_color));
-            holder.textTime.setTextColor(ContextCompat.getColor(context, R.color.text_color));
-        } else {
-            holder.senderTextView.setTypeface(null, Typeface.BOLD);
-            holder.subjectTextView.setTypeface(null, Typeface.BOLD);
-            holder.textTime.setTypeface(null, Typeface.BOLD);
-            // holder.unreadIndicator.setVisibility(View.VISIBLE);
-            holder.senderTextView.setTextColor(ContextCompat.getColor(context, R.color.text_color));
-            holder.subjectTextView.setTextColor(ContextCompat.getColor(context, R.color.text_color));
-            holder.textTime.setTextColor(ContextCompat.getColor(context, R.color.text_color));
-        }
+    private void bindReadState(EmailViewHolder holder, MailRowModel row) {
+        int style = row.isRead() ? Typeface.NORMAL : Typeface.BOLD;
+        int color = textColor;
+        holder.senderTextView.setTypeface(null, style);
+        holder.subjectTextView.setTypeface(null, style);
+        holder.textTime.setTypeface(null, style);
+        holder.senderTextView.setTextColor(color);
+        holder.subjectTextView.setTextColor(color);
+        holder.textTime.setTextColor(color);
+    }
 
-        // --- 6. Handle Star Icon (Important/Starred) ---
-        if (currentEmail.isStarred()) {
-            holder.iconStar.setImageResource(R.drawable.full_star);
-        } else {
-            holder.iconStar.setImageResource(R.drawable.starred);
-        }
+    private void bindStar(EmailViewHolder holder, MailRowModel row) {
+        holder.iconStar.setImageResource(row.isStarred() ? R.drawable.full_star : R.drawable.starred);
         holder.iconStar.setVisibility(View.VISIBLE);
     }
 
-    // --- NEW Helper method for loading profile images ---
-    private void loadProfileImage(ImageView imageView, String imageUrl) {
-        if (imageUrl != null && !imageUrl.isEmpty()) {
-            Glide.with(context)
-                    .load(imageUrl)
-                    .placeholder(R.drawable.ic_profile_placeholder)
-                    .error(R.drawable.ic_profile_placeholder)
-                    .circleCrop()
-                    .into(imageView);
-            imageView.setBackgroundResource(0); // Remove any background circle when image is loaded
-        } else {
-            imageView.setImageResource(R.drawable.ic_profile_placeholder);
-            imageView.setBackgroundResource(R.drawable.circle_background); // Assuming this draws a circle
+    // search results: marks the parts of the subject that matched the query
+    private CharSequence highlight(String text, int[] ranges) {
+        if (text == null || ranges == null) {
+            return text;
+        }
+        SpannableString highlighted = new SpannableString(text);
+        int color = highlightColor;
+        for (int i = 0; i + 1 < ranges.length; i += 2) {
+            if (ranges[i] >= 0 && ranges[i + 1] <= text.length() && ranges[i] < ranges[i + 1]) {
+                highlighted.setSpan(new BackgroundColorSpan(color), ranges[i], ranges[i + 1], Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
         }
+        return highlighted;
     }
 
+    // a recycled row must not receive the avatar its previous mail was still loading
     @Override
-    public int getItemCount() {
-        return emailList != null ? emailList.size() : 0;
+    public void onViewRecycled(@NonNull EmailViewHolder holder) {
+        super.onViewRecycled(holder);
+        avatarLoader.clear(holder.imageSenderOrSelected);
     }
 
-    public void setEmails(List<Email> newEmails) {
-        this.emailList = newEmails;
-        if (!isMultiSelectMode) {
-            selectedEmailIds.clear(); // Clear selection if not in multi-select
-        } else {
-            // Re-validate existing selections if new emails list came in while in multi-select
-            selectedEmailIds.retainAll(getEmailIds(newEmails));
-            updateMultiSelectMode();
+    // For a RecyclerViewPreloader: the avatars of the rows about to scroll in, requested exactly as
+    // bindSelection will ask for them
+    public ListPreloader.PreloadModelProvider<String> avatarPreloadProvider() {
+        return new ListPreloader.PreloadModelProvider<String>() {
+            @NonNull
+            @Override
+            public List<String> getPreloadItems(int position) {
+                MailRowModel row = position < getItemCount() ? peek(position) : null;
+                String url = row != null ? row.getAvatarUrl() : null;
+                return url != null && !url.isEmpty() ? Collections.singletonList(url) : Collections.emptyList();
+            }
+
+            @Override
+            public RequestBuilder<?> getPreloadRequestBuilder(@NonNull String url) {
+                return avatarLoader.request(url);
+            }
+        };
+    }
+
+    public int getAvatarSizePx() {
+        return avatarLoader.getSizePx();
+    }
+
+    private void indexPositions() {
+        positionsById.clear();
+        ItemSnapshotList<MailRowModel> snapshot = snapshot();
+        List<MailRowModel> items = snapshot.getItems();
+        int offset = snapshot.getPlaceholdersBefore();
+        for (int i = 0; i < items.size(); i++) {
+            positionsById.put(items.get(i).getId(), offset + i);
+        }
+    }
+
+    // Ids of the rows in [first, last], unread ones first; see DetailPrefetcher
+    public List<String> getPrefetchCandidates(int first, int last) {
+        List<String> unread = new ArrayList<>();
+        List<String> read = new ArrayList<>();
+        for (int position = Math.max(0, first); position <= last && position < getItemCount(); position++) {
+            MailRowModel row = peek(position);
+            if (row != null) {
+                (row.isRead() ? read : unread).add(row.getId());
+            }
         }
-        notifyDataSetChanged(); // Refresh the entire view
+        unread.addAll(read);
+        return unread;
     }
 
-    private Set<String> getEmailIds(List<Email> emails) {
-        Set<String> ids = new HashSet<>();
-        for (Email email : emails) {
-            ids.add(email.getId());
+    // Ids of up to `radius` rows on each side of the given mail, nearest first
+    public List<String> getNeighbourIds(String emailId, int radius) {
+        List<String> ids = new ArrayList<>();
+        Integer position = positionsById.get(emailId);
+        if (position == null) {
+            return ids;
+        }
+        for (int offset = 1; offset <= radius; offset++) {
+            for (int neighbour : new int[]{position + offset, position - offset}) {
+                MailRowModel row = neighbour >= 0 && neighbour < getItemCount() ? peek(neighbour) : null;
+                if (row != null) {
+                    ids.add(row.getId());
+                }
+            }
         }
         return ids;
     }
 
+    // O(selected) through the id index instead of a scan of every loaded row
     public List<Email> getSelectedEmails() {
         List<Email> selected = new ArrayList<>();
-        for (Email email : emailList) {
-            if (selectedEmailIds.contains(email.getId())) {
-                selected.add(email);
+        for (String id : selectedEmailIds) {
+            Integer position = positionsById.get(id);
+            MailRowModel row = position != null && position < getItemCount() ? peek(position) : null;
+            if (row != null && id.equals(row.getId())) {
+                selected.add(row.getEmail());
             }
         }
         return selected;
@@ -198,16 +327,13 @@ public class EmailAdapter extends RecyclerView.Adapter<EmailAdapter.EmailViewHol
         setMultiSelectMode(false); // Exit multi-select mode when clearing selection
     }
 
-    public void toggleEmailSelection(Email email) {
-        if (selectedEmailIds.contains(email.getId())) {
-            selectedEmailIds.remove(email.getId());
+    private void toggleEmailSelection(MailRowModel row, int position) {
+        if (selectedEmailIds.contains(row.getId())) {
+            selectedEmailIds.remove(row.getId());
         } else {
-            selectedEmailIds.add(email.getId());
-        }
-        int position = emailList.indexOf(email);
-        if (position != -1) {
-            notifyItemChanged(position); // Notify specific item changed
+            selectedEmailIds.add(row.getId());
         }
+        notifyItemChanged(position, selectionPayload()); // only the avatar/check and background change
         updateMultiSelectMode(); // Update mode and count
     }
 
@@ -220,7 +346,7 @@ public class EmailAdapter extends RecyclerView.Adapter<EmailAdapter.EmailViewHol
             multiSelectModeListener.onSelectedCountChanged(selectedEmailIds.size());
         }
         if (selectedEmailIds.isEmpty() && isMultiSelectMode) { // Exit multi-select if nothing is selected
-            setMultiSelectMode(false); // This will call notifyDataSetChanged()
+            setMultiSelectMode(false); // rebinds the selection state of every row
         }
     }
 
@@ -240,10 +366,17 @@ public class EmailAdapter extends RecyclerView.Adapter<EmailAdapter.EmailViewHol
             if (multiSelectModeListener != null) {
                 multiSelectModeListener.onMultiSelectModeChanged(multiSelectMode);
             }
-            notifyDataSetChanged(); // Important: Redraw all items to reflect mode change
+            // every row's avatar/check may change, nothing else: rebind just that, no relayout
+            notifyItemRangeChanged(0, getItemCount(), selectionPayload());
         }
     }
 
+    private static Set<String> selectionPayload() {
+        Set<String> payload = new HashSet<>();
+        payload.add(PAYLOAD_SELECTION);
+        return payload;
+    }
+
     // The ViewHolder that holds the components of each row
     // Make this class public static to avoid potential memory leak warnings in some lint checks
     public class EmailViewHolder extends RecyclerView.ViewHolder {
@@ -269,20 +402,17 @@ public class EmailAdapter extends RecyclerView.Adapter<EmailAdapter.EmailViewHol
             itemView.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION) {
-                    Email clickedEmail = emailList.get(position);
+                    MailRowModel clickedRow = getItem(position);
+                    if (clickedRow == null) {
+                        return;
+                    }
 
                     if (isMultiSelectMode) {
-                        toggleEmailSelection(clickedEmail);
+                        toggleEmailSelection(clickedRow, position);
                     } else {
                         if (itemClickListener != null) {
-                            itemClickListener.onEmailClick(clickedEmail);
-                            // After clicking an email in normal mode, mark it as read.
-                            // Assuming you have a way to update the 'read' status in your model/DB.
-                            // For immediate UI update, toggle isRead and notifyItemChanged.
-                            if (!clickedEmail.isRead()) {
-                                clickedEmail.setIsRead(true); // Update data model
-                                notifyItemChanged(position); // Refresh this item's view
-                            }
+                            // the details screen marks it as read; the row restyles when Room emits the change
+                            itemClickListener.onEmailClick(clickedRow.getEmail());
                         }
                     }
                 }
@@ -291,15 +421,18 @@ public class EmailAdapter extends RecyclerView.Adapter<EmailAdapter.EmailViewHol
             itemView.setOnLongClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION) {
-                    Email longClickedEmail = emailList.get(position);
+                    MailRowModel longClickedRow = getItem(position);
+                    if (longClickedRow == null) {
+                        return false;
+                    }
 
                     if (!isMultiSelectMode) {
                         setMultiSelectMode(true); // Enter multi-select mode
                     }
-                    toggleEmailSelection(longClickedEmail); // Select the item that was long-clicked
+                    toggleEmailSelection(longClickedRow, position); // Select the item that was long-clicked
 
                     if (itemClickListener != null) {
-                        itemClickListener.onEmailLongClick(longClickedEmail); // Notify Activity of long click
+                        itemClickListener.onEmailLongClick(longClickedRow.getEmail()); // Notify Activity of long click
                     }
                     return true; // Consume the long click event
                 }
@@ -308,35 +441,17 @@ public class EmailAdapter extends RecyclerView.Adapter<EmailAdapter.EmailViewHol
 
             iconStar.setOnClickListener(v -> {
                 int position = getAdapterPosition();
-                if (position != RecyclerView.NO_POSITION && itemClickListener != null) {
-                    Email starredEmail = emailList.get(position);
-                    boolean newStarredStatus = !starredEmail.isStarred();
-                    starredEmail.setStarred(newStarredStatus);
-
-                    if (newStarredStatus) {
-                        itemClickListener.onMarkAsStarred(starredEmail.getId());
+                MailRowModel starredRow = position != RecyclerView.NO_POSITION ? getItem(position) : null;
+                if (starredRow != null && itemClickListener != null) {
+                    // the star is written to Room right away and the new page redraws the row
+                    if (!starredRow.isStarred()) {
+                        itemClickListener.onMarkAsStarred(starredRow.getId());
                     } else {
-                        itemClickListener.onUnmarkAsStarred(starredEmail.getId());
+                        itemClickListener.onUnmarkAsStarred(starredRow.getId());
                     }
-                    notifyItemChanged(position);
                 }
 
             });
         }
-
-        // bind method is mostly for setting text/image resources based on email data
-        void bind(Email email) {
-            senderTextView.setText(email.getFrom());
-            subjectTextView.setText(email.getSubject());
-
-            if (email.getDate() != null) {
-                SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd", Locale.getDefault());
-                textTime.setText(dateFormat.format(email.getDate()));
-            } else {
-                textTime.setText("");
-            }
-            // The imageSenderOrSelected and iconStar are set in onBindViewHolder due to conditional logic
-            // The background is also set in onBindViewHolder based on multi-select/read state
-        }
     }
 }
\ No newline at end of file
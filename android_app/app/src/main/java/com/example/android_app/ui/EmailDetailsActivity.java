@@ -24,9 +24,7 @@ import com.example.android_app.model.Label;
 import com.example.android_app.model.viewmodel.EmailDetailsViewModel;
 import com.example.android_app.model.viewmodel.InboxViewModel;
 import com.example.android_app.ui.fragments.CreateMailFragment;
-
-import java.text.SimpleDateFormat;
-import java.util.Locale;
+import com.example.android_app.utils.MailDates;
 
 
 public class EmailDetailsActivity extends AppCompatActivity {
@@ -134,12 +132,7 @@ public class EmailDetailsActivity extends AppCompatActivity {
             senderProfileImageView.setImageResource(R.drawable.ic_profile_placeholder);
         }
 
-        if (email.getDate() != null) {
-            SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
-            emailTimeView.setText(sdf.format(email.getDate()));
-        } else {
-            emailTimeView.setText("");
-        }
+        emailTimeView.setText(MailDates.formatFull(MailDates.millisOf(email.getTimestamp(), email.getRawDate())));
         //important button
         updateImportantButton(email.isImportant());
         btnImportant.setOnClickListener(v -> {
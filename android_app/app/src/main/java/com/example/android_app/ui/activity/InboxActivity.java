@@ -4,10 +4,10 @@ import android.app.Activity;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 import android.view.ContextThemeWrapper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.KeyEvent;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -35,6 +35,8 @@ import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
 import com.example.android_app.BuildConfig;
 import com.example.android_app.R;
 import com.example.android_app.data.network.ApiClient;
@@ -50,6 +52,7 @@ import com.example.android_app.ui.EmailDetailsActivity;
 import com.example.android_app.ui.fragments.CreateMailFragment;
 import com.example.android_app.ui.fragments.EditProfileFragment;
 import com.example.android_app.ui.fragments.SideBarFragment;
+import com.example.android_app.utils.AppExecutors;
 import com.example.android_app.utils.SharedPrefsManager;
 import com.example.android_app.utils.UserManager;
 
@@ -57,6 +60,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
+import kotlin.Unit;
+
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
@@ -66,6 +71,8 @@ public class InboxActivity extends AppCompatActivity implements
         EmailAdapter.MultiSelectModeListener,
         SideBarFragment.SideBarFragmentListener,
         EditProfileFragment.OnProfilePictureUpdatedListener {
+    private static final int AVATAR_PRELOAD_ROWS = 10; // rows ahead of the scroll whose avatars are decoded
+    private static final int DETAIL_PREFETCH_NEIGHBOURS = 2; // rows on each side of an opened mail
 
     private InboxViewModel viewModel;
     private MailViewModel viewModel_mail;
@@ -113,7 +120,7 @@ public class InboxActivity extends AppCompatActivity implements
         String profileImage = SharedPrefsManager.get(this, "profileImage");
 
         if (userId != null && !userId.isEmpty()) {
-            ApiService apiService = ApiClient.getClient().create(ApiService.class);
+            ApiService apiService = ApiClient.getApiService();
             Call<User> call = apiService.getUserById(userId);
             call.enqueue(new Callback<User>() {
                 @Override
@@ -199,6 +206,21 @@ public class InboxActivity extends AppCompatActivity implements
                 return false;
             }
         });
+        // search as you type: the view model debounces and drops superseded searches
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                viewModel_mail.onSearchQueryChanged(s.toString());
+            }
+        });
 
         // Set up profile picture click listener
         profilePicture.setOnClickListener(v -> {
@@ -369,9 +391,38 @@ public class InboxActivity extends AppCompatActivity implements
 
     private void setupRecyclerView() {
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        adapter = new EmailAdapter(this, new ArrayList<>(), this); // Pass 'this' as EmailItemClickListener
+        adapter = new EmailAdapter(this, this); // Pass 'this' as EmailItemClickListener
         adapter.setMultiSelectModeListener(this); // Set this activity as MultiSelectModeListener
         recyclerView.setAdapter(adapter);
+        // decode the avatars of the next rows before they scroll in
+        int avatarSize = adapter.getAvatarSizePx();
+        recyclerView.addOnScrollListener(new RecyclerViewPreloader<>(Glide.with(this), adapter.avatarPreloadProvider(),
+                new FixedPreloadSizeProvider<>(avatarSize, avatarSize), AVATAR_PRELOAD_ROWS));
+        // once the list stops moving, warm the bodies of what is on screen
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView view, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchVisibleDetails();
+                }
+            }
+        });
+        adapter.addOnPagesUpdatedListener(() -> {
+            prefetchVisibleDetails();
+            return Unit.INSTANCE;
+        });
+    }
+
+    private void prefetchVisibleDetails() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        if (layoutManager == null || adapter.isMultiSelectMode()) {
+            return;
+        }
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first != RecyclerView.NO_POSITION) {
+            viewModel.prefetchDetails(adapter.getPrefetchCandidates(first, last));
+        }
     }
 
     private void setupRefreshListener() {
@@ -396,9 +447,7 @@ public class InboxActivity extends AppCompatActivity implements
                 return;
             }
             
-            for (Email email : selectedEmails) {
-                viewModel.markEmailAsSpam(email.getId());
-            }
+            viewModel.markEmailsAsSpam(getIds(selectedEmails));
             Toast.makeText(this, "Marked as spam", Toast.LENGTH_SHORT).show();
             adapter.clearSelection();
         });
@@ -410,10 +459,7 @@ public class InboxActivity extends AppCompatActivity implements
                         .setTitle("Delete Emails")
                         .setMessage("Are you sure you want to delete " + selectedEmails.size() + " selected emails?")
                         .setPositiveButton("Delete", (dialog, which) -> {
-                            // Call ViewModel to delete each selected email
-                            for (Email email : selectedEmails) {
-                                viewModel.deleteEmail(email.getId());
-                            }
+                            viewModel.deleteEmails(getIds(selectedEmails));
                             adapter.clearSelection(); // Clear selection after action
                             Toast.makeText(this, "Deleting selected mails", Toast.LENGTH_SHORT).show();
                         })
@@ -435,14 +481,10 @@ public class InboxActivity extends AppCompatActivity implements
                 }
 
                 if (allRead) { // If all are read, mark them as unread
-                    for (Email email : selectedEmails) {
-                        viewModel.markEmailAsUnread(email.getId());
-                    }
+                    viewModel.markEmailsAsUnread(getIds(selectedEmails));
                     Toast.makeText(this, "Marked as unread", Toast.LENGTH_SHORT).show();
                 } else { // If any are unread, mark all as read
-                    for (Email email : selectedEmails) {
-                        viewModel.markEmailAsRead(email.getId());
-                    }
+                    viewModel.markEmailsAsRead(getIds(selectedEmails));
                     Toast.makeText(this, "Marked as read", Toast.LENGTH_SHORT).show();
                 }
                 adapter.clearSelection(); // Clear selection after action
@@ -450,6 +492,15 @@ public class InboxActivity extends AppCompatActivity implements
         });
         iconMoreOptions.setOnClickListener(this::showMoreOptionsPopupMenu);
     }
+
+    private static List<String> getIds(List<Email> emails) {
+        List<String> ids = new ArrayList<>();
+        for (Email email : emails) {
+            ids.add(email.getId());
+        }
+        return ids;
+    }
+
     private void showMoreOptionsPopupMenu(View anchorView) {
         if (currentPopupMenu != null) {
             currentPopupMenu.dismiss();
@@ -497,7 +548,7 @@ public class InboxActivity extends AppCompatActivity implements
 
                 if (!isPopupMenuReadyToShow) {
                     isPopupMenuReadyToShow = true;
-                    new Handler(Looper.getMainLooper()).post(() -> {
+                    AppExecutors.getInstance().mainThread().execute(() -> {
                         if (currentPopupMenu != null) {
                             currentPopupMenu.show();
                         }
@@ -518,9 +569,7 @@ public class InboxActivity extends AppCompatActivity implements
             }
 
             if (id == R.id.action_mark_important) {
-                for (Email email : selectedEmails) {
-                    viewModel.markEmailAsImportant(email.getId());
-                }
+                viewModel.markEmailsAsImportant(getIds(selectedEmails));
                 Toast.makeText(this, "Marking as important", Toast.LENGTH_SHORT).show();
                 adapter.clearSelection();
                 return true;
@@ -582,6 +631,8 @@ public class InboxActivity extends AppCompatActivity implements
     public void onEmailClick(Email email) {
         // If not in multi-select mode, navigate to email details
         if (!adapter.isMultiSelectMode()) {
+            // the mails around this one are the likeliest to be opened next
+            viewModel.prefetchDetails(adapter.getNeighbourIds(email.getId(), DETAIL_PREFETCH_NEIGHBOURS));
             Intent intent = new Intent(this, EmailDetailsActivity.class);
             intent.putExtra("email_id", email.getId());
 //            startActivity(intent);
@@ -624,9 +675,18 @@ public class InboxActivity extends AppCompatActivity implements
     }
 
     private void observeViewModel() {
-        viewModel.getCurrentEmails().observe(this, emails -> {
-            if (emails != null) {
-                adapter.setEmails(emails);
+        // registered once; the results go through getCurrentEmails(), the only source of the list.
+        // null means the search field was cleared, so the current folder comes back and is refreshed
+        viewModel_mail.getSearchResults().observe(this, emails -> {
+            viewModel.showSearchResults(emails);
+            if (emails == null) {
+                String current = viewModel.getCurrentCategoryOrLabelId();
+                viewModel.fetchEmailsForCategoryOrLabel(current != null ? current : "inbox");
+            }
+        });
+        viewModel.getCurrentEmails().observe(this, pagingData -> {
+            if (pagingData != null) {
+                adapter.submitEmails(getLifecycle(), pagingData);
             }
             swipeRefreshLayout.setRefreshing(false); // Stop refresh animation regardless
             loadingProgressBar.setVisibility(View.GONE); // Hide progress bar regardless
@@ -683,17 +743,12 @@ public class InboxActivity extends AppCompatActivity implements
     }
 
     /**
-     * Placeholder method for performing the search.
-     * You would implement your email filtering logic here.
+     * Searches right away for the query entered by the user (IME search action).
+     * Results arrive through the observer registered in observeViewModel.
      * @param query The search query entered by the user.
      */
     private void performSearch(String query) {
         viewModel_mail.searchMails(query);
-        viewModel_mail.getSearchResults().observe(this, emails -> {
-            if (emails != null) {
-                adapter.setEmails(emails);
-            }
-        });
     }
 
     private void performLogout() {
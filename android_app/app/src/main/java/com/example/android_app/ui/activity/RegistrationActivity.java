@@ -73,7 +73,12 @@ public class RegistrationActivity extends AppCompatActivity {
         });
 
         RegistrationViewModel viewModel = new ViewModelProvider(this).get(RegistrationViewModel.class);
+        CharSequence registerLabel = btnRegister.getText();
+        //show how much of the profile picture is sent while registering
+        viewModel.uploadProgress.observe(this, percent ->
+                btnRegister.setText(getString(R.string.uploading_picture, percent)));
         viewModel.status.observe(this, message -> {
+                btnRegister.setText(registerLabel);
                 Toast.makeText(this, message, Toast.LENGTH_LONG).show();
                 if(message.equals("Registration successful")) {
                     Intent intent = new Intent(this, LoginActivity.class);
@@ -1,6 +1,8 @@
 package com.example.android_app.ui.fragments;
 
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -28,6 +30,7 @@ public class CreateMailFragment extends Fragment {
     private ImageButton buttonBack;
     private CreateMailViewModel viewModel;
     private String currentDraftIdForSending;
+    private boolean applyingDraft; // the fields are being filled from the draft, not typed into
     public static final String REQUEST_KEY_EMAIL_SENT = "email_sent_request_key";
     public static final String BUNDLE_KEY_EMAIL_SENT_SUCCESS = "email_sent_success";
     public static final String ARG_MAIL_ID = "mail_id";
@@ -83,6 +86,7 @@ public class CreateMailFragment extends Fragment {
         //get the current draft to show in the UI
         viewModel.getCurrentDraft().observe(getViewLifecycleOwner(), email -> {
             if (email != null) {
+                applyingDraft = true;
                 //update just if the value changed
                 if (!editTextTo.getText().toString().equals(email.getTo())) {
                     editTextTo.setText(email.getTo());
@@ -93,9 +97,32 @@ public class CreateMailFragment extends Fragment {
                 if (!editTextBody.getText().toString().equals(email.getBody())) {
                     editTextBody.setText(email.getBody());
                 }
+                applyingDraft = false;
             }
         });
 
+        // every edit is saved locally right away; the view model skips edits that change nothing
+        TextWatcher draftWatcher = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (!applyingDraft) {
+                    viewModel.onDraftEdited(editTextTo.getText().toString(),
+                            editTextSubject.getText().toString(), editTextBody.getText().toString());
+                }
+            }
+        };
+        editTextTo.addTextChangedListener(draftWatcher);
+        editTextSubject.addTextChangedListener(draftWatcher);
+        editTextBody.addTextChangedListener(draftWatcher);
+
         // show in progress while loading
         viewModel.getIsLoading().observe(getViewLifecycleOwner(), isLoading -> {
             editTextTo.setEnabled(!isLoading);
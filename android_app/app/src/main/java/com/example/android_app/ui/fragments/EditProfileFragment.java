@@ -101,6 +101,15 @@ public class EditProfileFragment extends Fragment {
             viewModel.updateProfile(newName, selectedImageUri);
         });
 
+        //see how much of the new picture is sent
+        viewModel.getUploadProgress().observe(getViewLifecycleOwner(), percent -> {
+            if (percent != null && percent < 100) {
+                textSuccess.setText(getString(R.string.uploading_picture, percent));
+                textSuccess.setVisibility(View.VISIBLE);
+                textError.setVisibility(View.GONE);
+            }
+        });
+
         //see error message if failed
         viewModel.getErrorMessage().observe(getViewLifecycleOwner(), error -> {
             if (error != null) {
@@ -27,7 +27,9 @@ import com.example.android_app.model.viewmodel.LabelViewModel;
 import com.example.android_app.model.viewmodel.MailViewModel;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.ArrayList;
 
@@ -66,6 +68,8 @@ public class SideBarFragment extends Fragment implements LabelDialogFragment.Lab
     // Custom labels section
     private ImageView addCustomLabelButton;
     private LinearLayout customLabelsContainer; // This will hold the dynamic labels
+    private final Map<String, TextView> labelCountViews = new HashMap<>(); // label id -> its count badge
+    private Map<String, Integer> labelCounts = new HashMap<>();
 
     // Listener for communication with the hosting Activity
     private SideBarFragmentListener listener;
@@ -255,6 +259,7 @@ public class SideBarFragment extends Fragment implements LabelDialogFragment.Lab
         // Observe LiveData from LabelViewModel to populate custom labels dynamically
         // The displayCustomLabels method will now filter out the predefined categories
         labelViewModel.getLabels().observe(getViewLifecycleOwner(), this::displayCustomLabels); //
+        labelViewModel.getLabelCounts().observe(getViewLifecycleOwner(), this::displayLabelCounts);
 
         // Fetch initial data when the fragment is created
         mailViewModel.fetchInboxMails(); // Fetch inbox mails on startup
@@ -292,6 +297,7 @@ public class SideBarFragment extends Fragment implements LabelDialogFragment.Lab
         if (customLabelsContainer == null) return; //
 
         customLabelsContainer.removeAllViews(); // Clear existing labels
+        labelCountViews.clear();
 
         // Filter out the predefined category labels
         List<Label> filteredLabels = new ArrayList<>();
@@ -311,6 +317,11 @@ public class SideBarFragment extends Fragment implements LabelDialogFragment.Lab
             if (labelNameTextView != null) { //
                 labelNameTextView.setText(label.getName()); //
             }
+            TextView mailCountTextView = labelView.findViewById(R.id.mail_count);
+            if (mailCountTextView != null) {
+                labelCountViews.put(label.getId(), mailCountTextView);
+                bindLabelCount(mailCountTextView, labelCounts.get(label.getId()));
+            }
 
             // Set click listener for the label itself to fetch mails by that label
             labelView.setOnClickListener(v -> { //
@@ -327,6 +338,26 @@ public class SideBarFragment extends Fragment implements LabelDialogFragment.Lab
         }
     }
 
+    /**
+     * Updates the count next to each custom label without rebuilding the list.
+     * @param counts Mails per label id, counted from the local cache.
+     */
+    private void displayLabelCounts(Map<String, Integer> counts) {
+        labelCounts = counts != null ? counts : new HashMap<>();
+        for (Map.Entry<String, TextView> entry : labelCountViews.entrySet()) {
+            bindLabelCount(entry.getValue(), labelCounts.get(entry.getKey()));
+        }
+    }
+
+    private static void bindLabelCount(TextView view, Integer count) {
+        if (count == null || count == 0) {
+            view.setVisibility(View.GONE);
+        } else {
+            view.setText("(" + count + ")");
+            view.setVisibility(View.VISIBLE);
+        }
+    }
+
     /**
      * Shows the Label creation dialog.
      */
@@ -346,7 +377,6 @@ public class SideBarFragment extends Fragment implements LabelDialogFragment.Lab
     public void onSubmit(String labelName) { //
         labelViewModel.createLabel(labelName);
         inboxViewModel.fetchEmailsForCategoryOrLabel(inboxViewModel.getCurrentCategoryOrLabelId());
-        inboxViewModel.fetchLabels();
     }
 
     private void showLabelActionsMenu(View anchorView, Label label) {
@@ -360,7 +390,6 @@ public class SideBarFragment extends Fragment implements LabelDialogFragment.Lab
             } else if (itemId == R.id.action_delete_label) { // Corrected this line
                 labelViewModel.deleteLabel(label.getId()); // Call ViewModel to delete label
                 inboxViewModel.fetchEmailsForCategoryOrLabel(inboxViewModel.getCurrentCategoryOrLabelId());
-                inboxViewModel.fetchLabels();
                 return true;
             }
             return false;
@@ -374,11 +403,9 @@ public class SideBarFragment extends Fragment implements LabelDialogFragment.Lab
         dialogFragment.setTitle("Edit Label");
         dialogFragment.setInitialValue(labelToEdit.getName());
         dialogFragment.setListener(newValue -> { //
-            // Update the label via ViewModel
-            labelToEdit.setName(newValue);
+            // Update the label via ViewModel; the shared label list shows the new name right away
             labelViewModel.updateLabel(labelToEdit.getId(), newValue); // Assuming you have an updateLabel method in ViewModel
             inboxViewModel.fetchEmailsForCategoryOrLabel(inboxViewModel.getCurrentCategoryOrLabelId());
-            inboxViewModel.fetchLabels();
         });
         dialogFragment.show(getChildFragmentManager(), "edit_label_dialog"); //
     }
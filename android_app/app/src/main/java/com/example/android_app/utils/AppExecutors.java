@@ -0,0 +1,260 @@
+package com.example.android_app.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The app's threads, shared by every repository instead of each one starting its own:
+// - diskIO: one thread; Room writes (and reads that must see them) run in the order they were queued
+// - networkIO: IO_THREADS threads for blocking network calls; only the thread count is bounded, tasks
+//   beyond it wait in an unbounded FIFO queue
+// - compute: one thread per core for CPU work such as building list rows or drawing bitmaps
+// - mainThread: posts to the UI thread
+// serial(name) gives a queue that runs its tasks one at a time on the networkIO pool, for background
+// work that must not overlap (the paging mediator, prefetching). Each such queue holds at most one
+// pool thread, but they compete for the IO_THREADS threads, so a slow one delays the others.
+// dedicated(name) is the same kind of queue on a thread of its own, for work the user is waiting on
+// (syncs, sending mails and actions) that must not queue behind those; the thread exits when idle.
+// schedule() runs a task on one of these later; a single timer thread serves every delayed task.
+// longRunning(name) is a thread of its own for a task that blocks for as long as it runs (the push stream).
+// Every executor counts its queue depth and how long tasks wait and run; see logMetrics().
+public final class AppExecutors {
+    private static final String TAG = "AppExecutors";
+    private static final int IO_THREADS = 4;
+    private static final long SLOW_TASK_MS = 1_000; // waited for or ran longer than this: logged
+
+    private static AppExecutors instance;
+
+    private final MeteredExecutor diskIO;
+    private final MeteredExecutor networkIO;
+    private final MeteredExecutor compute;
+    private final MeteredExecutor mainThread;
+    private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+    private final ScheduledThreadPoolExecutor timer; // only hands tasks over, never runs them
+    private final List<MeteredExecutor> all = new ArrayList<>();
+
+    private AppExecutors() {
+        int cores = Math.max(2, Runtime.getRuntime().availableProcessors());
+        diskIO = register(new MeteredExecutor("disk", pool(1, "app-disk")));
+        networkIO = register(new MeteredExecutor("network", pool(IO_THREADS, "app-io")));
+        compute = register(new MeteredExecutor("compute", pool(cores, "app-cpu")));
+        mainThread = register(new MeteredExecutor("main", mainThreadHandler::post));
+        timer = new ScheduledThreadPoolExecutor(1, new BackgroundThreadFactory("app-timer"));
+        timer.setKeepAliveTime(30, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true); // the thread stays while a task is waiting
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            instance = new AppExecutors();
+        }
+        return instance;
+    }
+
+    public Executor diskIO() {
+        return diskIO;
+    }
+
+    public Executor networkIO() {
+        return networkIO;
+    }
+
+    public Executor compute() {
+        return compute;
+    }
+
+    public Executor mainThread() {
+        return mainThread;
+    }
+
+    public Handler mainThreadHandler() {
+        return mainThreadHandler;
+    }
+
+    public synchronized Executor serial(String name) {
+        return register(new MeteredExecutor(name, new SerialExecutor(networkIO)));
+    }
+
+    public synchronized Executor dedicated(String name) {
+        return register(new MeteredExecutor(name, pool(1, "app-" + name)));
+    }
+
+    // Hands the task to the executor after the delay. Cancelling the future only stops a task that
+    // has not been handed over yet.
+    public ScheduledFuture<?> schedule(Executor executor, Runnable task, long delayMs) {
+        return timer.schedule(() -> executor.execute(task), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // not metered: its task runs for as long as its connection stays open
+    public Executor longRunning(String name) {
+        return pool(1, name);
+    }
+
+    public void logMetrics() {
+        List<MeteredExecutor> executors;
+        synchronized (this) {
+            executors = new ArrayList<>(all);
+        }
+        for (MeteredExecutor executor : executors) {
+            Log.d(TAG, executor.metrics().toString());
+        }
+    }
+
+    private synchronized MeteredExecutor register(MeteredExecutor executor) {
+        all.add(executor);
+        return executor;
+    }
+
+    // fixed size, threads exit after 30s idle so an idle app holds none
+    private static ThreadPoolExecutor pool(int threads, String name) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new BackgroundThreadFactory(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        BackgroundThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, name + "-" + count.incrementAndGet());
+        }
+    }
+
+    // One task at a time, in order, on a shared pool
+    private static class SerialExecutor implements Executor {
+        private final Executor pool;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private Runnable active;
+
+        SerialExecutor(Executor pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull Runnable task) {
+            tasks.offer(() -> {
+                try {
+                    task.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (active == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            active = tasks.poll();
+            if (active != null) {
+                pool.execute(active);
+            }
+        }
+    }
+
+    public static class Metrics {
+        public final String name;
+        public final int queueDepth;
+        public final int maxQueueDepth;
+        public final long completed;
+        public final long averageWaitMs;
+        public final long maxWaitMs;
+        public final long averageRunMs;
+        public final long maxRunMs;
+
+        Metrics(String name, int queueDepth, int maxQueueDepth, long completed, long totalWaitMs, long maxWaitMs,
+                long totalRunMs, long maxRunMs) {
+            this.name = name;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.completed = completed;
+            this.averageWaitMs = completed > 0 ? totalWaitMs / completed : 0;
+            this.maxWaitMs = maxWaitMs;
+            this.averageRunMs = completed > 0 ? totalRunMs / completed : 0;
+            this.maxRunMs = maxRunMs;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return name + ": queued " + queueDepth + " (max " + maxQueueDepth + "), done " + completed
+                    + ", wait avg " + averageWaitMs + "ms max " + maxWaitMs + "ms"
+                    + ", run avg " + averageRunMs + "ms max " + maxRunMs + "ms";
+        }
+    }
+
+    // Counts tasks from execute() until they finish; the wait is the time spent queued
+    private static class MeteredExecutor implements Executor {
+        private final String name;
+        private final Executor delegate;
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong totalWaitMs = new AtomicLong();
+        private final AtomicLong maxWaitMs = new AtomicLong();
+        private final AtomicLong totalRunMs = new AtomicLong();
+        private final AtomicLong maxRunMs = new AtomicLong();
+
+        MeteredExecutor(String name, Executor delegate) {
+            this.name = name;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(@NonNull Runnable task) {
+            long queuedAt = System.nanoTime();
+            int depth = queueDepth.incrementAndGet();
+            maxQueueDepth.accumulateAndGet(depth, Math::max);
+            delegate.execute(() -> {
+                long startedAt = System.nanoTime();
+                queueDepth.decrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    long waitMs = TimeUnit.NANOSECONDS.toMillis(startedAt - queuedAt);
+                    long runMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+                    completed.incrementAndGet();
+                    totalWaitMs.addAndGet(waitMs);
+                    maxWaitMs.accumulateAndGet(waitMs, Math::max);
+                    totalRunMs.addAndGet(runMs);
+                    maxRunMs.accumulateAndGet(runMs, Math::max);
+                    if (waitMs > SLOW_TASK_MS || runMs > SLOW_TASK_MS) {
+                        Log.w(TAG, name + " task waited " + waitMs + "ms, ran " + runMs + "ms");
+                    }
+                }
+            });
+        }
+
+        Metrics metrics() {
+            return new Metrics(name, queueDepth.get(), maxQueueDepth.get(), completed.get(), totalWaitMs.get(),
+                    maxWaitMs.get(), totalRunMs.get(), maxRunMs.get());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.android_app.utils;
+
+import com.example.android_app.data.local.MailBodyEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Turns a mail body into the bytes stored in mail_bodies and back. Bodies from COMPRESS_THRESHOLD
+// bytes up are DEFLATE-compressed (text mail usually shrinks to a third); shorter ones, and ones that
+// do not get smaller, are stored as plain UTF-8.
+public final class BodyCodec {
+    static final int COMPRESS_THRESHOLD = 1024;
+
+    private BodyCodec() {
+    }
+
+    public static MailBodyEntity encode(String id, String body) {
+        byte[] raw = body.getBytes(StandardCharsets.UTF_8);
+        if (raw.length >= COMPRESS_THRESHOLD) {
+            byte[] packed = deflate(raw);
+            if (packed.length < raw.length) {
+                return new MailBodyEntity(id, packed, true);
+            }
+        }
+        return new MailBodyEntity(id, raw, false);
+    }
+
+    // null when the row is empty or cannot be inflated, so the caller fetches the mail again
+    public static String decode(MailBodyEntity row) {
+        if (row == null || row.data == null) {
+            return null;
+        }
+        if (!row.compressed) {
+            return new String(row.data, StandardCharsets.UTF_8);
+        }
+        try {
+            return new String(inflate(row.data), StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            return null;
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] packed) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(packed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(packed.length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated body");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
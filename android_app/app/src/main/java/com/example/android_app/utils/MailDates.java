@@ -0,0 +1,87 @@
+package com.example.android_app.utils;
+
+import android.os.Build;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+// Shared date parsing and formatting for mails. SimpleDateFormat is not thread safe and is expensive
+// to create, so each thread keeps one instance per pattern instead of allocating one per row.
+public class MailDates {
+    // anonymous ThreadLocals rather than ThreadLocal.withInitial, which needs API 26
+    private static final ThreadLocal<SimpleDateFormat> ISO = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("UTC")); // the server sends UTC ("...Z")
+            return format;
+        }
+    };
+    private static final ThreadLocal<SimpleDateFormat> TIME_OF_DAY = localFormat("HH:mm");
+    private static final ThreadLocal<SimpleDateFormat> DAY_OF_YEAR = localFormat("MMM dd");
+    private static final ThreadLocal<SimpleDateFormat> SHORT_DATE = localFormat("dd/MM/yy");
+    private static final ThreadLocal<SimpleDateFormat> FULL = localFormat("MMM dd, yyyy HH:mm");
+    private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return Calendar.getInstance();
+        }
+    };
+
+    private static ThreadLocal<SimpleDateFormat> localFormat(String pattern) {
+        return new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                return new SimpleDateFormat(pattern, Locale.getDefault());
+            }
+        };
+    }
+
+    // epoch millis of the server's ISO date, 0 when it is missing or cannot be read
+    public static long parseMillis(String iso) {
+        if (iso == null || iso.isEmpty()) {
+            return 0;
+        }
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                return Instant.parse(iso).toEpochMilli();
+            }
+            return ISO.get().parse(iso).getTime(); // parses the prefix, fractions and "Z" are ignored
+        } catch (ParseException | DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    // The mail's time in epoch millis: the server's sort timestamp when there is one, else its date
+    public static long millisOf(long timestamp, String iso) {
+        return timestamp > 0 ? timestamp : parseMillis(iso);
+    }
+
+    // List label: the time for today's mails, the day for this year's, the full date before that
+    public static String formatRelative(long millis, long now) {
+        if (millis <= 0) {
+            return "";
+        }
+        Calendar calendar = CALENDAR.get();
+        calendar.setTimeInMillis(now);
+        int year = calendar.get(Calendar.YEAR);
+        int day = calendar.get(Calendar.DAY_OF_YEAR);
+        calendar.setTimeInMillis(millis);
+        Date date = calendar.getTime();
+        if (calendar.get(Calendar.YEAR) != year) {
+            return SHORT_DATE.get().format(date);
+        }
+        return calendar.get(Calendar.DAY_OF_YEAR) == day ? TIME_OF_DAY.get().format(date) : DAY_OF_YEAR.get().format(date);
+    }
+
+    // Details screen label, e.g. "Mar 04, 2025 14:30"
+    public static String formatFull(long millis) {
+        return millis > 0 ? FULL.get().format(new Date(millis)) : "";
+    }
+}
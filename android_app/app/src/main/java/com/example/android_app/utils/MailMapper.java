@@ -1,27 +1,30 @@
 package com.example.android_app.utils;
 
 import com.example.android_app.model.Email;
+import com.example.android_app.data.local.MailBodyEntity;
 import com.example.android_app.data.local.MailEntity;
+import com.example.android_app.data.local.MailFolderQuery;
+import com.example.android_app.data.local.PendingOpEntity;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-
-import java.text.SimpleDateFormat;
 import java.util.Locale;
+import java.util.Set;
 
 //this class use to switch between the two model
 public class MailMapper {
-    public static MailEntity toEntity(Email email) {
+    // owner = the signed-in account the mail was fetched for
+    public static MailEntity toEntity(Email email, String owner) {
         MailEntity entity = new MailEntity();
 
         entity.id = email.getId();
         entity.from = email.getFrom();
         entity.to = email.getTo();
         entity.subject = email.getSubject();
-        entity.body = email.getBody();
-        entity.date = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault())
-                .format(email.getDate());
-        entity.timestamp = email.getTimestamp();
+        // keep the server's ISO string so Email.getDate() can parse it back when read from Room
+        entity.date = email.getRawDate();
+        entity.timestamp = MailDates.millisOf(email.getTimestamp(), email.getRawDate());
         entity.send = email.isSend();
         entity.isRead = email.getIsRead();
         entity.isSpam = email.isSpam();
@@ -29,13 +32,101 @@ public class MailMapper {
         entity.isStarred = email.isStarred();
         entity.deletedForSender = email.isDeletedForSender();
         entity.deletedForReceiver = email.isDeletedForReceiver();
-        //default values
-        entity.labelsForSender = new ArrayList<>();
-        entity.labelsForReceiver = new ArrayList<>();
+        if (email.getFromUser() != null) {
+            entity.senderName = email.getFromUser().getFullName();
+            entity.senderProfileImage = email.getFromUser().getProfileImage();
+        }
 
+        entity.owner = owner != null ? owner.toLowerCase(Locale.ROOT) : null;
+        entity.labelIds = ownerLabels(email, entity.owner);
+        assignFolder(entity);
         return entity;
     }
 
+    // The labels the owner filed the mail under: the list of each side of the mail they are on.
+    // null when the response carried neither list, so the cached links are left as they are.
+    private static List<String> ownerLabels(Email email, String owner) {
+        if (email.getLabelsForSender() == null && email.getLabelsForReceiver() == null) {
+            return null;
+        }
+        Set<String> ids = new LinkedHashSet<>();
+        if (owner != null && owner.equalsIgnoreCase(email.getFrom()) && email.getLabelsForSender() != null) {
+            ids.addAll(email.getLabelsForSender());
+        }
+        if (owner != null && owner.equalsIgnoreCase(email.getTo()) && email.getLabelsForReceiver() != null) {
+            ids.addAll(email.getLabelsForReceiver());
+        }
+        return new ArrayList<>(ids);
+    }
+
+    // Works out where the row shows up for its owner, with the same rules the server uses for its
+    // folder routes. Call it again whenever a flag of a cached row is changed.
+    public static void assignFolder(MailEntity entity) {
+        boolean isSender = entity.owner != null && entity.owner.equalsIgnoreCase(entity.from);
+        boolean isReceiver = entity.owner != null && entity.owner.equalsIgnoreCase(entity.to);
+
+        entity.sentByOwner = isSender && !entity.deletedForSender && entity.send;
+        if (isReceiver && !entity.deletedForReceiver && entity.send) {
+            entity.folder = entity.isSpam ? MailFolderQuery.SPAM : MailFolderQuery.INBOX;
+        } else if (isSender && !entity.deletedForSender) {
+            entity.folder = entity.send ? MailFolderQuery.SENT : MailFolderQuery.DRAFTS;
+        } else if ((isSender && entity.deletedForSender) || (isReceiver && entity.deletedForReceiver)) {
+            entity.folder = MailFolderQuery.TRASH;
+        } else {
+            entity.folder = MailFolderQuery.HIDDEN;
+        }
+    }
+
+    // Reads the flag a PendingOpEntity action sets; DELETE is the soft-delete flag of the owner's role.
+    public static boolean getFlag(MailEntity entity, String action) {
+        switch (action) {
+            case PendingOpEntity.STAR:
+                return entity.isStarred;
+            case PendingOpEntity.IMPORTANT:
+                return entity.isImportant;
+            case PendingOpEntity.READ:
+                return entity.isRead;
+            case PendingOpEntity.SPAM:
+                return entity.isSpam;
+            case PendingOpEntity.DELETE:
+                boolean isSender = entity.owner != null && entity.owner.equalsIgnoreCase(entity.from);
+                boolean isReceiver = entity.owner != null && entity.owner.equalsIgnoreCase(entity.to);
+                return (!isSender || entity.deletedForSender) && (!isReceiver || entity.deletedForReceiver);
+            default:
+                throw new IllegalArgumentException("Unknown mail action: " + action);
+        }
+    }
+
+    // Sets the flag of a PendingOpEntity action and moves the row to the folder it now belongs to.
+    public static void setFlag(MailEntity entity, String action, boolean value) {
+        switch (action) {
+            case PendingOpEntity.STAR:
+                entity.isStarred = value;
+                break;
+            case PendingOpEntity.IMPORTANT:
+                entity.isImportant = value;
+                break;
+            case PendingOpEntity.READ:
+                entity.isRead = value;
+                break;
+            case PendingOpEntity.SPAM:
+                entity.isSpam = value;
+                break;
+            case PendingOpEntity.DELETE:
+                // the server deletes the mail for every role the user has on it
+                if (entity.owner != null && entity.owner.equalsIgnoreCase(entity.from)) {
+                    entity.deletedForSender = value;
+                }
+                if (entity.owner != null && entity.owner.equalsIgnoreCase(entity.to)) {
+                    entity.deletedForReceiver = value;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mail action: " + action);
+        }
+        assignFolder(entity);
+    }
+
     public static Email toEmail(MailEntity entity) {
         Email email = new Email();
 
@@ -43,7 +134,6 @@ public class MailMapper {
         email.setSender(entity.from);
         email.setReceiver(entity.to);
         email.setSubject(entity.subject);
-        email.setBody(entity.body);
         email.setDate(entity.date);
         email.setTimestamp(entity.timestamp);
         email.setSend(entity.send);
@@ -51,14 +141,36 @@ public class MailMapper {
         email.setSpam(entity.isSpam);
         email.setImportant(entity.isImportant);
         email.setStarred(entity.isStarred);
+        email.setDeletedForSender(entity.deletedForSender);
+        email.setDeletedForReceiver(entity.deletedForReceiver);
+        email.setPending(entity.pending);
+        if (entity.senderName != null || entity.senderProfileImage != null) {
+            Email.FromUser fromUser = new Email.FromUser();
+            fromUser.setFullName(entity.senderName);
+            fromUser.setEmail(entity.from);
+            fromUser.setProfileImage(entity.senderProfileImage);
+            email.setFromUser(fromUser);
+        }
 
         return email;
     }
 
-    public static List<MailEntity> toEntities(List<Email> emails) {
+    public static List<MailEntity> toEntities(List<Email> emails, String owner) {
         List<MailEntity> result = new ArrayList<>();
         for (Email email : emails) {
-            result.add(toEntity(email));
+            result.add(toEntity(email, owner));
+        }
+        return result;
+    }
+
+    // Bodies that came with the mails, encoded for storage; list responses are headers only and give
+    // none, which leaves the cached bodies alone.
+    public static List<MailBodyEntity> toBodies(List<Email> emails) {
+        List<MailBodyEntity> result = new ArrayList<>();
+        for (Email email : emails) {
+            if (email.getId() != null && email.getBody() != null) {
+                result.add(BodyCodec.encode(email.getId(), email.getBody()));
+            }
         }
         return result;
     }
@@ -0,0 +1,46 @@
+package com.example.android_app.utils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// One default-network callback for the whole app. What waits for the network to come back (the
+// retry queues, the push stream) adds a listener here instead of registering a callback of its own.
+public final class NetworkMonitor {
+    private static NetworkMonitor instance;
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    private NetworkMonitor(Context context) {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getApplicationContext()
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager != null) {
+            connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(@NonNull Network network) {
+                    for (Runnable listener : listeners) {
+                        listener.run();
+                    }
+                }
+            });
+        }
+    }
+
+    public static synchronized NetworkMonitor getInstance(Context context) {
+        if (instance == null) {
+            instance = new NetworkMonitor(context);
+        }
+        return instance;
+    }
+
+    // Runs on the ConnectivityManager's thread each time a network becomes the default: hand any
+    // real work to an executor
+    public void addOnAvailableListener(Runnable listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.android_app.data.local;
+
+import androidx.lifecycle.LiveData;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link LabelDao#replaceIfChanged}: the server's label list replaces the confirmed labels only when
+ * it differs, and labels still waiting for the server survive. {@link LabelDao#replaceId} then swaps
+ * in the server's id whether or not a refresh got there first.
+ */
+public class LabelDaoTest {
+    private static final String OWNER = "a@smail.com";
+
+    private FakeLabelDao dao;
+
+    @Before
+    public void setUp() {
+        dao = new FakeLabelDao();
+        dao.insertAll(Arrays.asList(label("l1", "Work", 0), label("l2", "Home", 1)));
+        dao.writes = 0;
+    }
+
+    @Test
+    public void sameList_writesNothing() {
+        dao.replaceIfChanged(OWNER, Arrays.asList(label("l1", "Work", 0), label("l2", "Home", 1)));
+
+        assertEquals(0, dao.writes);
+    }
+
+    @Test
+    public void renamedLabel_replacesList() {
+        dao.replaceIfChanged(OWNER, Arrays.asList(label("l1", "Job", 0), label("l2", "Home", 1)));
+
+        assertEquals(1, dao.writes);
+        assertEquals("Job", dao.getNow("l1").name);
+    }
+
+    @Test
+    public void reorderedOrRemovedLabels_replaceList() {
+        dao.replaceIfChanged(OWNER, Arrays.asList(label("l2", "Home", 0), label("l1", "Work", 1)));
+        assertEquals(1, dao.writes);
+
+        dao.replaceIfChanged(OWNER, Arrays.asList(label("l2", "Home", 0)));
+        assertEquals(2, dao.writes);
+        assertNull(dao.getNow("l1"));
+    }
+
+    @Test
+    public void localLabels_ignoredInComparisonAndKept() {
+        LabelEntity local = label(LabelEntity.LOCAL_PREFIX + "x", "New", 2);
+        dao.insert(local);
+        dao.writes = 0;
+
+        dao.replaceIfChanged(OWNER, Arrays.asList(label("l1", "Work", 0), label("l2", "Home", 1)));
+        assertEquals(0, dao.writes);
+
+        dao.replaceIfChanged(OWNER, Arrays.asList(label("l1", "Work", 0)));
+        assertEquals(1, dao.writes);
+        assertNotNull(dao.getNow(local.id));
+    }
+
+    @Test
+    public void otherOwnersLabels_untouched() {
+        LabelEntity other = label("o1", "Theirs", 0);
+        other.owner = "b@smail.com";
+        dao.insert(other);
+
+        dao.replaceIfChanged(OWNER, new ArrayList<>());
+
+        assertNull(dao.getNow("l1"));
+        assertNotNull(dao.getNow("o1"));
+    }
+
+    @Test
+    public void replaceId_givesLocalLabelTheServerId() {
+        String localId = LabelEntity.LOCAL_PREFIX + "x";
+        dao.insert(label(localId, "New", 2));
+
+        dao.replaceId(localId, "l3");
+
+        assertNull(dao.getNow(localId));
+        assertEquals("New", dao.getNow("l3").name);
+        assertEquals(2, dao.getNow("l3").position);
+    }
+
+    @Test
+    public void replaceId_afterRefreshStoredServerLabel_dropsLocalRow() {
+        String localId = LabelEntity.LOCAL_PREFIX + "x";
+        dao.insert(label(localId, "New", 2));
+        dao.replaceIfChanged(OWNER, Arrays.asList(label("l1", "Work", 0), label("l2", "Home", 1), label("l3", "New", 2)));
+
+        dao.replaceId(localId, "l3");
+
+        assertNull(dao.getNow(localId));
+        assertNotNull(dao.getNow("l3"));
+        assertEquals(3, dao.getLabelsNow(OWNER).size());
+    }
+
+    private static LabelEntity label(String id, String name, int position) {
+        LabelEntity label = new LabelEntity();
+        label.id = id;
+        label.owner = OWNER;
+        label.name = name;
+        label.position = position;
+        return label;
+    }
+
+    // labels as a map; writes counts the statements that change rows
+    private static class FakeLabelDao implements LabelDao {
+        final Map<String, LabelEntity> rows = new LinkedHashMap<>();
+        int writes;
+
+        @Override
+        public LiveData<List<LabelEntity>> observeLabels(String owner) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<LabelEntity> getLabelsNow(String owner) {
+            List<LabelEntity> labels = new ArrayList<>();
+            for (LabelEntity label : rows.values()) {
+                if (owner.equals(label.owner)) {
+                    labels.add(label);
+                }
+            }
+            labels.sort((a, b) -> a.position != b.position ? Integer.compare(a.position, b.position) : a.id.compareTo(b.id));
+            return labels;
+        }
+
+        @Override
+        public LabelEntity getNow(String id) {
+            return rows.get(id);
+        }
+
+        @Override
+        public int nextPositionNow(String owner) {
+            int next = 0;
+            for (LabelEntity label : getLabelsNow(owner)) {
+                next = Math.max(next, label.position + 1);
+            }
+            return next;
+        }
+
+        @Override
+        public void insert(LabelEntity label) {
+            rows.put(label.id, label);
+            writes++;
+        }
+
+        @Override
+        public void insertAll(List<LabelEntity> labels) {
+            for (LabelEntity label : labels) {
+                rows.put(label.id, label);
+            }
+            writes++;
+        }
+
+        @Override
+        public void rename(String id, String name) {
+            LabelEntity label = rows.get(id);
+            if (label != null) {
+                label.name = name;
+            }
+            writes++;
+        }
+
+        @Override
+        public void updateId(String localId, String serverId) {
+            if (rows.containsKey(serverId)) {
+                throw new IllegalStateException("UNIQUE constraint failed: labels.id"); // as SQLite would
+            }
+            LabelEntity label = rows.remove(localId);
+            if (label != null) {
+                label.id = serverId;
+                rows.put(serverId, label);
+            }
+            writes++;
+        }
+
+        @Override
+        public void delete(String id) {
+            rows.remove(id);
+            writes++;
+        }
+
+        @Override
+        public void deleteConfirmed(String owner) {
+            rows.values().removeIf(label -> owner.equals(label.owner) && !label.id.startsWith(LabelEntity.LOCAL_PREFIX));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.android_app.data.local;
+
+import androidx.sqlite.db.SupportSQLiteProgram;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The keyset SQL of {@link MailFolderQuery}: each query binds one argument per placeholder, in order,
+ * and the page boundaries include or exclude the key's row as documented.
+ */
+public class MailFolderQueryTest {
+    private static final String OWNER = "a@smail.com";
+    private static final MailPageKey KEY = new MailPageKey(1_000L, "m5");
+
+    @Test
+    public void where_everyFolderBindsOwnerFirst() {
+        for (String folder : new String[]{"inbox", "sent", "drafts", "spam", "trash", "important", "starred", "allmail"}) {
+            assertTrue(folder, MailFolderQuery.where(folder).startsWith("owner = ? AND "));
+            assertEquals(folder, 1, placeholders(MailFolderQuery.where(folder)));
+        }
+    }
+
+    @Test
+    public void where_sentUsesSentByOwner() {
+        assertTrue(MailFolderQuery.where("sent").contains("sentByOwner = 1"));
+    }
+
+    @Test
+    public void where_unknownFolderThrows() {
+        assertThrows(IllegalArgumentException.class, () -> MailFolderQuery.where("outbox"));
+    }
+
+    @Test
+    public void head_newestFirstWithLimit() {
+        SupportSQLiteQuery query = MailFolderQuery.head(OWNER, "inbox", 30);
+
+        assertTrue(query.getSql().endsWith(" ORDER BY timestamp DESC, id DESC LIMIT ?"));
+        assertArgs(query, OWNER, 30L);
+    }
+
+    @Test
+    public void before_excludesKeyRow() {
+        SupportSQLiteQuery query = MailFolderQuery.before(OWNER, "inbox", KEY, 30);
+
+        assertTrue(query.getSql().contains("timestamp <= ? AND (timestamp < ? OR id < ?)"));
+        assertTrue(query.getSql().contains(" ORDER BY timestamp DESC, id DESC LIMIT ?"));
+        assertArgs(query, OWNER, 1_000L, 1_000L, "m5", 30L);
+    }
+
+    @Test
+    public void from_includesKeyRow() {
+        SupportSQLiteQuery query = MailFolderQuery.from(OWNER, "starred", KEY, 30);
+
+        assertTrue(query.getSql().contains("timestamp <= ? AND (timestamp < ? OR id <= ?)"));
+        assertTrue(query.getSql().contains(" ORDER BY timestamp DESC, id DESC LIMIT ?"));
+        assertArgs(query, OWNER, 1_000L, 1_000L, "m5", 30L);
+    }
+
+    @Test
+    public void after_oldestFirstSoClosestRowsComeFirst() {
+        SupportSQLiteQuery query = MailFolderQuery.after(OWNER, "inbox", KEY, 30);
+
+        assertTrue(query.getSql().contains("timestamp >= ? AND (timestamp > ? OR id > ?)"));
+        assertTrue(query.getSql().contains(" ORDER BY timestamp ASC, id ASC LIMIT ?"));
+        assertArgs(query, OWNER, 1_000L, 1_000L, "m5", 30L);
+    }
+
+    @Test
+    public void idsBetween_skipsPendingRows() {
+        SupportSQLiteQuery query = MailFolderQuery.idsBetween(OWNER, "sent", 100L, 200L);
+
+        assertTrue(query.getSql().contains("timestamp >= ? AND timestamp < ? AND pending = 0"));
+        assertArgs(query, OWNER, 100L, 200L, OWNER);
+    }
+
+    @Test
+    public void idsBetween_skipsMailsWithQueuedActions() {
+        // a star the server has not seen yet must not make the mail stale in Starred
+        SupportSQLiteQuery query = MailFolderQuery.idsBetween(OWNER, "starred", 100L, 200L);
+
+        assertTrue(query.getSql().endsWith(" AND id NOT IN (SELECT mailId FROM pending_ops WHERE owner = ?)"));
+        assertArgs(query, OWNER, 100L, 200L, OWNER);
+    }
+
+    private static int placeholders(String sql) {
+        int count = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void assertArgs(SupportSQLiteQuery query, Object... expected) {
+        assertEquals(placeholders(query.getSql()), query.getArgCount());
+        RecordingProgram program = new RecordingProgram();
+        query.bindTo(program);
+        assertArrayEquals(expected, program.args.toArray());
+    }
+
+    // Collects bound arguments in index order, integers as Long like SQLite stores them
+    private static class RecordingProgram implements SupportSQLiteProgram {
+        final List<Object> args = new ArrayList<>();
+
+        private void bind(int index, Object value) {
+            while (args.size() < index) {
+                args.add(null);
+            }
+            args.set(index - 1, value);
+        }
+
+        @Override
+        public void bindNull(int index) {
+            bind(index, null);
+        }
+
+        @Override
+        public void bindLong(int index, long value) {
+            bind(index, value);
+        }
+
+        @Override
+        public void bindDouble(int index, double value) {
+            bind(index, value);
+        }
+
+        @Override
+        public void bindString(int index, String value) {
+            bind(index, value);
+        }
+
+        @Override
+        public void bindBlob(int index, byte[] value) {
+            bind(index, value);
+        }
+
+        @Override
+        public void clearBindings() {
+            args.clear();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.android_app.data.local;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link MailSearchQuery}: the MATCH expression built from typed text, the ranking over FTS
+ * matchinfo and the UTF-8 byte offsets turned into highlight ranges of the subject.
+ */
+public class MailSearchQueryTest {
+
+    @Test
+    public void match_everyWordBecomesAPrefixTerm() {
+        assertEquals("hello* world*", MailSearchQuery.match("Hello, World!"));
+        assertEquals("caf\u00e9* 42*", MailSearchQuery.match("  Caf\u00e9   42 "));
+    }
+
+    @Test
+    public void match_nullWithoutWords() {
+        assertNull(MailSearchQuery.match(""));
+        assertNull(MailSearchQuery.match(" ,.-! "));
+    }
+
+    @Test
+    public void match_dropsFtsSyntax() {
+        // quotes and stars are dropped; lowercase keeps OR a word instead of an operator
+        assertEquals("a* or* b*", MailSearchQuery.match("a\" OR b*"));
+    }
+
+    @Test
+    public void rank_subjectHitBeatsBodyHit() {
+        SearchHit body = hit("body", 300, matchinfo(1, 3, 0, 10, 5, 0, 10, 5, 1, 10, 5));
+        SearchHit subject = hit("subject", 100, matchinfo(1, 3, 1, 10, 5, 0, 10, 5, 0, 10, 5));
+        List<SearchHit> hits = new ArrayList<>(Arrays.asList(body, subject));
+
+        MailSearchQuery.rank(hits);
+
+        assertEquals("subject", hits.get(0).id);
+        assertEquals(0.3, subject.score, 1e-9);
+        assertEquals(0.1, body.score, 1e-9);
+    }
+
+    @Test
+    public void rank_rareTermCountsMore() {
+        SearchHit common = hit("common", 100, matchinfo(1, 3, 1, 50, 40, 0, 0, 0, 0, 0, 0));
+        SearchHit rare = hit("rare", 100, matchinfo(1, 3, 1, 2, 2, 0, 0, 0, 0, 0, 0));
+        List<SearchHit> hits = new ArrayList<>(Arrays.asList(common, rare));
+
+        MailSearchQuery.rank(hits);
+
+        assertEquals("rare", hits.get(0).id);
+    }
+
+    @Test
+    public void rank_equalScoresNewestFirst() {
+        byte[] same = matchinfo(1, 3, 1, 4, 2, 0, 4, 2, 0, 4, 2);
+        SearchHit older = hit("older", 100, same);
+        SearchHit newer = hit("newer", 200, same);
+        SearchHit unranked = hit("unranked", 300, null);
+        List<SearchHit> hits = new ArrayList<>(Arrays.asList(unranked, older, newer));
+
+        MailSearchQuery.rank(hits);
+
+        assertEquals("newer", hits.get(0).id);
+        assertEquals("older", hits.get(1).id);
+        assertEquals("unranked", hits.get(2).id);
+    }
+
+    @Test
+    public void subjectHighlights_byteOffsetsBecomeCharRanges() {
+        // the subject starts with a 2-byte char: "\u00dcber" is 5 bytes and 4 chars, "Rechnung" starts at byte 10, char 9
+        String offsets = "0 0 0 5 2 0 3 4 0 1 10 8";
+
+        int[] ranges = MailSearchQuery.subjectHighlights(offsets, "\u00dcber die Rechnung");
+
+        assertArrayEquals(new int[]{0, 4, 9, 17}, ranges);
+    }
+
+    @Test
+    public void subjectHighlights_ignoresOtherColumnsAndStaleOffsets() {
+        assertNull(MailSearchQuery.subjectHighlights("2 0 3 4", "Hello"));
+        assertNull(MailSearchQuery.subjectHighlights("0 0 3 40", "Hello")); // subject changed since indexing
+        assertNull(MailSearchQuery.subjectHighlights(null, "Hello"));
+        assertNull(MailSearchQuery.subjectHighlights("0 0 0 5", null));
+    }
+
+    @Test
+    public void indexableBody_capsLength() {
+        char[] longBody = new char[MailSearchQuery.MAX_INDEXED_BODY_CHARS + 10];
+        Arrays.fill(longBody, 'x');
+
+        assertEquals(MailSearchQuery.MAX_INDEXED_BODY_CHARS, MailSearchQuery.indexableBody(new String(longBody)).length());
+        assertEquals("short", MailSearchQuery.indexableBody("short"));
+    }
+
+    private static SearchHit hit(String id, long timestamp, byte[] matchinfo) {
+        SearchHit hit = new SearchHit();
+        hit.id = id;
+        hit.timestamp = timestamp;
+        hit.matchinfo = matchinfo;
+        return hit;
+    }
+
+    // matchinfo 'pcx' as SQLite returns it: 32-bit ints in the machine's byte order
+    private static byte[] matchinfo(int... ints) {
+        ByteBuffer buffer = ByteBuffer.allocate(ints.length * 4).order(ByteOrder.nativeOrder());
+        for (int value : ints) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+}
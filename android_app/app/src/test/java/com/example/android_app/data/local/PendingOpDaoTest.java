@@ -0,0 +1,226 @@
+package com.example.android_app.data.local;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Coalescing rules of the outbox: {@link PendingOpDao#record}, {@link PendingOpDao#confirm} and
+ * {@link PendingOpDao#reject}, run against an in-memory table.
+ */
+public class PendingOpDaoTest {
+    private static final String OWNER = "a@smail.com";
+    private static final String MAIL = "m1";
+
+    private FakePendingOpDao dao;
+
+    @Before
+    public void setUp() {
+        dao = new FakePendingOpDao();
+    }
+
+    @Test
+    public void record_firstChangeQueuesOpAgainstServerValue() {
+        dao.record(OWNER, MAIL, PendingOpEntity.STAR, true, false);
+
+        PendingOpEntity op = dao.getNow(MAIL, PendingOpEntity.STAR);
+        assertNotNull(op);
+        assertTrue(op.value);
+        assertFalse(op.serverValue);
+        assertEquals(OWNER, op.owner);
+    }
+
+    @Test
+    public void record_unchangedValueQueuesNothing() {
+        dao.record(OWNER, MAIL, PendingOpEntity.STAR, true, true);
+
+        assertNull(dao.getNow(MAIL, PendingOpEntity.STAR));
+    }
+
+    @Test
+    public void record_toggleBackRemovesOp() {
+        dao.record(OWNER, MAIL, PendingOpEntity.STAR, true, false);
+        dao.record(OWNER, MAIL, PendingOpEntity.STAR, false, true);
+
+        assertNull(dao.getNow(MAIL, PendingOpEntity.STAR));
+    }
+
+    @Test
+    public void record_toggleBackWhileInFlightKeepsOp() {
+        dao.record(OWNER, MAIL, PendingOpEntity.STAR, true, false);
+        dao.markInFlight(MAIL, PendingOpEntity.STAR);
+        dao.record(OWNER, MAIL, PendingOpEntity.STAR, false, true);
+
+        PendingOpEntity op = dao.getNow(MAIL, PendingOpEntity.STAR);
+        assertNotNull(op);
+        assertFalse(op.value);
+        assertFalse(op.serverValue);
+    }
+
+    @Test
+    public void record_keepsActionsApart() {
+        dao.record(OWNER, MAIL, PendingOpEntity.STAR, true, false);
+        dao.record(OWNER, MAIL, PendingOpEntity.READ, true, false);
+
+        assertNotNull(dao.getNow(MAIL, PendingOpEntity.STAR));
+        assertNotNull(dao.getNow(MAIL, PendingOpEntity.READ));
+    }
+
+    @Test
+    public void confirm_dropsOpThatWasSent() {
+        dao.record(OWNER, MAIL, PendingOpEntity.STAR, true, false);
+        PendingOpEntity sent = dao.getNow(MAIL, PendingOpEntity.STAR);
+        dao.markInFlight(MAIL, PendingOpEntity.STAR);
+
+        dao.confirm(sent);
+
+        assertNull(dao.getNow(MAIL, PendingOpEntity.STAR));
+    }
+
+    @Test
+    public void confirm_requeuesToggleMadeWhileInFlight() {
+        dao.record(OWNER, MAIL, PendingOpEntity.STAR, true, false);
+        PendingOpEntity sent = dao.getNow(MAIL, PendingOpEntity.STAR);
+        dao.markInFlight(MAIL, PendingOpEntity.STAR);
+        dao.reschedule(MAIL, PendingOpEntity.STAR, 2, 5_000);
+        dao.markInFlight(MAIL, PendingOpEntity.STAR);
+        dao.record(OWNER, MAIL, PendingOpEntity.STAR, false, true);
+
+        dao.confirm(sent);
+
+        PendingOpEntity op = dao.getNow(MAIL, PendingOpEntity.STAR);
+        assertNotNull(op);
+        assertFalse(op.value);
+        assertTrue(op.serverValue); // the server has the sent value now
+        assertFalse(op.inFlight);
+        assertEquals(0, op.attempts);
+        assertEquals(0, op.nextAttemptAt);
+    }
+
+    @Test
+    public void confirm_withoutRowDoesNothing() {
+        PendingOpEntity sent = new PendingOpEntity();
+        sent.mailId = MAIL;
+        sent.action = PendingOpEntity.STAR;
+        sent.value = true;
+
+        dao.confirm(sent);
+
+        assertTrue(dao.rows.isEmpty());
+    }
+
+    @Test
+    public void reject_returnsOpWhenFlagWasLeftAtRefusedValue() {
+        dao.record(OWNER, MAIL, PendingOpEntity.SPAM, true, false);
+        PendingOpEntity sent = dao.getNow(MAIL, PendingOpEntity.SPAM);
+        dao.markInFlight(MAIL, PendingOpEntity.SPAM);
+
+        PendingOpEntity rejected = dao.reject(sent);
+
+        assertNotNull(rejected);
+        assertFalse(rejected.serverValue); // what the cached mail goes back to
+        assertNull(dao.getNow(MAIL, PendingOpEntity.SPAM));
+    }
+
+    @Test
+    public void reject_afterToggleBackDropsOpAndLeavesMail() {
+        dao.record(OWNER, MAIL, PendingOpEntity.SPAM, true, false);
+        PendingOpEntity sent = dao.getNow(MAIL, PendingOpEntity.SPAM);
+        dao.markInFlight(MAIL, PendingOpEntity.SPAM);
+        dao.record(OWNER, MAIL, PendingOpEntity.SPAM, false, true);
+
+        assertNull(dao.reject(sent)); // the mail already shows what the server has
+        assertNull(dao.getNow(MAIL, PendingOpEntity.SPAM));
+    }
+
+    // pending_ops as a map; rows are copied in and out like Room does
+    private static class FakePendingOpDao implements PendingOpDao {
+        final Map<String, PendingOpEntity> rows = new LinkedHashMap<>();
+
+        @Override
+        public void upsert(PendingOpEntity op) {
+            rows.put(op.mailId + ":" + op.action, copy(op));
+        }
+
+        @Override
+        public PendingOpEntity getNow(String mailId, String action) {
+            PendingOpEntity op = rows.get(mailId + ":" + action);
+            return op != null ? copy(op) : null;
+        }
+
+        @Override
+        public void delete(String mailId, String action) {
+            rows.remove(mailId + ":" + action);
+        }
+
+        @Override
+        public List<PendingOpEntity> getDueNow(String owner, long now, int limit) {
+            List<PendingOpEntity> due = new ArrayList<>();
+            for (PendingOpEntity op : rows.values()) {
+                if (owner.equals(op.owner) && op.nextAttemptAt <= now && due.size() < limit) {
+                    due.add(copy(op));
+                }
+            }
+            return due;
+        }
+
+        @Override
+        public Long getNextAttemptAtNow(String owner) {
+            Long next = null;
+            for (PendingOpEntity op : rows.values()) {
+                if (owner.equals(op.owner) && (next == null || op.nextAttemptAt < next)) {
+                    next = op.nextAttemptAt;
+                }
+            }
+            return next;
+        }
+
+        @Override
+        public List<PendingOpEntity> getForMailsNow(String owner, List<String> mailIds) {
+            List<PendingOpEntity> ops = new ArrayList<>();
+            for (PendingOpEntity op : rows.values()) {
+                if (owner.equals(op.owner) && mailIds.contains(op.mailId)) {
+                    ops.add(copy(op));
+                }
+            }
+            return ops;
+        }
+
+        @Override
+        public void markInFlight(String mailId, String action) {
+            PendingOpEntity op = rows.get(mailId + ":" + action);
+            if (op != null) {
+                op.inFlight = true;
+            }
+        }
+
+        @Override
+        public void reschedule(String mailId, String action, int attempts, long nextAttemptAt) {
+            PendingOpEntity op = rows.get(mailId + ":" + action);
+            if (op != null) {
+                op.attempts = attempts;
+                op.nextAttemptAt = nextAttemptAt;
+                op.inFlight = false;
+            }
+        }
+
+        private static PendingOpEntity copy(PendingOpEntity op) {
+            PendingOpEntity copy = new PendingOpEntity();
+            copy.mailId = op.mailId;
+            copy.action = op.action;
+            copy.owner = op.owner;
+            copy.value = op.value;
+            copy.serverValue = op.serverValue;
+            copy.inFlight = op.inFlight;
+            copy.attempts = op.attempts;
+            copy.nextAttemptAt = op.nextAttemptAt;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.android_app.data.network;
+
+import com.example.android_app.model.Email;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.*;
+
+/**
+ * The hand-written mail adapters behind {@link MailJson}, and the chunked reader of mail arrays.
+ */
+public class MailJsonTest {
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private static final String MAIL = "{"
+            + "\"_id\":\"m1\",\"from\":\"a@smail.com\",\"to\":\"b@smail.com\",\"subject\":\"Hi\",\"body\":\"Text\","
+            + "\"date\":\"2024-05-01T10:00:00.000Z\",\"timestamp\":1714557600000,\"isRead\":true,\"send\":true,"
+            + "\"isSpam\":false,\"isImportant\":true,\"isStarred\":false,"
+            + "\"deletedForSender\":false,\"deletedForReceiver\":true,"
+            + "\"fromUser\":{\"fullName\":\"Ann\",\"email\":\"a@smail.com\",\"profileImage\":null,\"extra\":[1,2]},"
+            + "\"labelsForSender\":[\"l1\",{\"_id\":\"l2\",\"name\":\"Work\"},{\"id\":\"l3\"},7],"
+            + "\"labelsForReceiver\":null,"
+            + "\"createdAt\":\"2024-05-01T10:00:00.000Z\",\"__v\":0,\"meta\":{\"nested\":{\"deep\":[true]}}"
+            + "}";
+
+    @Test
+    public void read_fillsEveryFieldAndSkipsTheRest() {
+        Email mail = MailJson.gson().fromJson(MAIL, Email.class);
+
+        assertEquals("m1", mail.getId());
+        assertEquals("a@smail.com", mail.getFrom());
+        assertEquals("b@smail.com", mail.getTo());
+        assertEquals("Hi", mail.getSubject());
+        assertEquals("Text", mail.getBody());
+        assertEquals("2024-05-01T10:00:00.000Z", mail.getRawDate());
+        assertEquals(1714557600000L, mail.getTimestamp());
+        assertTrue(mail.getIsRead());
+        assertTrue(mail.isSend());
+        assertFalse(mail.isSpam());
+        assertTrue(mail.isImportant());
+        assertFalse(mail.isStarred());
+        assertFalse(mail.isDeletedForSender());
+        assertTrue(mail.isDeletedForReceiver());
+        assertEquals("Ann", mail.getFromUser().getFullName());
+        assertNull(mail.getFromUser().getProfileImage());
+    }
+
+    @Test
+    public void read_labelIdsFromStringsOrPopulatedLabels() {
+        Email mail = MailJson.gson().fromJson(MAIL, Email.class);
+
+        assertEquals(Arrays.asList("l1", "l2", "l3"), mail.getLabelsForSender());
+        assertNull(mail.getLabelsForReceiver());
+    }
+
+    @Test
+    public void writeThenRead_keepsTheMail() {
+        Email mail = MailJson.gson().fromJson(MAIL, Email.class);
+
+        Email copy = MailJson.gson().fromJson(MailJson.gson().toJson(mail), Email.class);
+
+        assertEquals(mail.getId(), copy.getId());
+        assertEquals(mail.getSubject(), copy.getSubject());
+        assertEquals(mail.getRawDate(), copy.getRawDate());
+        assertEquals(mail.getTimestamp(), copy.getTimestamp());
+        assertEquals(mail.isImportant(), copy.isImportant());
+        assertEquals(mail.getFromUser().getEmail(), copy.getFromUser().getEmail());
+        assertEquals(mail.getLabelsForSender(), copy.getLabelsForSender());
+    }
+
+    @Test
+    public void readEmails_handsOverChunks() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 5; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"_id\":\"m").append(i).append("\",\"subject\":\"s\"}");
+        }
+        json.append(",null]");
+        List<Integer> sizes = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+
+        int count = MailJson.readEmails(ResponseBody.create(json.toString(), JSON), 2, chunk -> {
+            sizes.add(chunk.size());
+            for (Email mail : chunk) {
+                ids.add(mail.getId());
+            }
+        });
+
+        assertEquals(5, count);
+        assertEquals(Arrays.asList(2, 2, 1), sizes);
+        assertEquals(Arrays.asList("m0", "m1", "m2", "m3", "m4"), ids);
+    }
+
+    @Test
+    public void readEmails_emptyArrayCallsNothing() throws IOException {
+        List<Integer> sizes = new ArrayList<>();
+
+        int count = MailJson.readEmails(ResponseBody.create("[]", JSON), 10, chunk -> sizes.add(chunk.size()));
+
+        assertEquals(0, count);
+        assertTrue(sizes.isEmpty());
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.android_app.model.viewmodel;
+
+import com.example.android_app.model.Email;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The query handling behind search as you type in {@link MailViewModel}: how typed text is
+ * normalized into a cache key, and how a shorter query's answer is narrowed down locally.
+ */
+public class MailViewModelSearchTest {
+
+    @Test
+    public void normalizeQuery_trimsCollapsesAndLowercases() {
+        assertEquals("quarterly report", MailViewModel.normalizeQuery("  Quarterly \t REPORT  "));
+        assertEquals("", MailViewModel.normalizeQuery("   "));
+        assertEquals("", MailViewModel.normalizeQuery(null));
+    }
+
+    @Test
+    public void refine_keepsRowsWhereEveryWordStartsAWord() {
+        Email report = email("1", "Quarterly report", "Ann Lee", "ann@smail.com");
+        Email reply = email("2", "Re: the report", "Bob", "bob@smail.com");
+        Email other = email("3", "Lunch", "Ann Lee", "ann@smail.com");
+
+        List<Email> refined = MailViewModel.refine(Arrays.asList(report, reply, other), "ann rep");
+
+        assertEquals(ids(report), ids(refined));
+    }
+
+    @Test
+    public void refine_matchesWordStartsOnly() {
+        Email mail = email("1", "Reporting", "Ann", "ann@smail.com");
+
+        assertEquals(1, MailViewModel.refine(Arrays.asList(mail), "rep").size());
+        assertEquals(0, MailViewModel.refine(Arrays.asList(mail), "port").size());
+    }
+
+    @Test
+    public void refine_splitsSenderAddressIntoWords() {
+        Email mail = email("1", "Hi", null, "bob.smith@smail.com");
+
+        assertEquals(1, MailViewModel.refine(Arrays.asList(mail), "smith").size());
+        assertEquals(1, MailViewModel.refine(Arrays.asList(mail), "smail").size());
+    }
+
+    @Test
+    public void refine_missingFieldsDoNotMatch() {
+        Email mail = email("1", null, null, "ann@smail.com");
+
+        assertTrue(MailViewModel.refine(Arrays.asList(mail), "null").isEmpty());
+    }
+
+    private static Email email(String id, String subject, String senderName, String from) {
+        Email email = new Email();
+        email.setId(id);
+        email.setSubject(subject);
+        email.setFrom(from);
+        if (senderName != null) {
+            Email.FromUser user = new Email.FromUser();
+            user.setFullName(senderName);
+            email.setFromUser(user);
+        }
+        return email;
+    }
+
+    private static List<String> ids(Email... emails) {
+        return ids(Arrays.asList(emails));
+    }
+
+    private static List<String> ids(List<Email> emails) {
+        List<String> ids = new ArrayList<>();
+        for (Email email : emails) {
+            ids.add(email.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.android_app.utils;
+
+import com.example.android_app.data.local.MailBodyEntity;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link BodyCodec}: which bodies get compressed, and that every stored form decodes back.
+ */
+public class BodyCodecTest {
+
+    @Test
+    public void shortBody_storedPlain() {
+        MailBodyEntity row = BodyCodec.encode("m1", "Hello");
+
+        assertEquals("m1", row.id);
+        assertFalse(row.compressed);
+        assertArrayEquals("Hello".getBytes(StandardCharsets.UTF_8), row.data);
+        assertEquals("Hello", BodyCodec.decode(row));
+    }
+
+    @Test
+    public void longTextBody_compressedAndDecodedBack() {
+        StringBuilder body = new StringBuilder();
+        while (body.length() < 4 * BodyCodec.COMPRESS_THRESHOLD) {
+            body.append("Dear team, the meeting moves to Thursday. \u00dcbermorgen \u2014 ok? ");
+        }
+
+        MailBodyEntity row = BodyCodec.encode("m1", body.toString());
+
+        assertTrue(row.compressed);
+        assertTrue(row.data.length < body.toString().getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(body.toString(), BodyCodec.decode(row));
+    }
+
+    @Test
+    public void bodyUnderThreshold_storedPlainEvenIfCompressible() {
+        char[] chars = new char[BodyCodec.COMPRESS_THRESHOLD - 1];
+        Arrays.fill(chars, 'a');
+        String body = new String(chars);
+
+        MailBodyEntity row = BodyCodec.encode("m1", body);
+
+        assertFalse(row.compressed);
+        assertEquals(body, BodyCodec.decode(row));
+    }
+
+    @Test
+    public void decode_nullForMissingOrBrokenRows() {
+        assertNull(BodyCodec.decode(null));
+        assertNull(BodyCodec.decode(new MailBodyEntity("m1", null, false)));
+
+        StringBuilder body = new StringBuilder();
+        while (body.length() < 2 * BodyCodec.COMPRESS_THRESHOLD) {
+            body.append("repeated text ");
+        }
+        MailBodyEntity row = BodyCodec.encode("m1", body.toString());
+        assertTrue(row.compressed);
+        MailBodyEntity truncated = new MailBodyEntity("m1", Arrays.copyOf(row.data, row.data.length / 2), true);
+        assertNull(BodyCodec.decode(truncated));
+        assertNull(BodyCodec.decode(new MailBodyEntity("m1", new byte[]{1, 2, 3, 4}, true)));
+    }
+}
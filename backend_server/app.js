@@ -1,5 +1,6 @@
 const express = require('express');
 const cors = require('cors');
+const compression = require('compression');
 const mongoose = require('mongoose');
 const path = require('path');
 
@@ -11,7 +12,7 @@ const authenticateToken = require('./middlewares/authMiddleware'); // Correct pa
 const corsOptions = {
   origin: 'http://localhost:8080',
   methods: ['GET', 'POST', 'PATCH', 'DELETE', 'OPTIONS'],
-  allowedHeaders: ['Content-Type', 'Authorization'],
+  allowedHeaders: ['Content-Type', 'Authorization', 'Idempotency-Key', 'Last-Event-ID'],
   credentials: true
 };
 
@@ -22,6 +23,9 @@ mongoose.connect(DB_URI)
 .then(() => console.log('MongoDB connected successfully'))
 .catch(err => console.error('MongoDB connection error:', err));
 
+// gzip responses for clients that send Accept-Encoding (mail lists are repetitive JSON)
+app.use(compression());
+
 app.use('/uploads', express.static(path.join(__dirname, 'uploads')));
 app.use(cors(corsOptions));
 
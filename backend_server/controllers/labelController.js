@@ -1,5 +1,27 @@
 const Label = require('../models/labelModel');
 const userModel = require('../models/userModel');
+const mailModel = require('../models/mailModel');
+const conditionalGet = require('../middlewares/conditionalGet');
+
+/**
+ * Conditional GET for the label list: 304 while no label was created, renamed, deleted or
+ * had mails added or removed.
+ */
+exports.ifLabelsChanged = conditionalGet((req) => Label.getLabelsVersion(req.userId));
+
+/**
+ * Conditional GET for the mails of a label: the version covers the label's membership and the
+ * state of the user's mails.
+ */
+exports.ifLabelMailsChanged = conditionalGet(async (req) => {
+    const label = await Label.getLabel(req.params.id, req.userId);
+    const user = await userModel.findById(req.userId);
+    if (!label || !user) {
+        return null; // let the handler answer 404
+    }
+    const labelMs = label.updatedAt ? label.updatedAt.getTime() : 0;
+    return `${labelMs}_${await mailModel.getMailboxVersion(user.emailAddress)}`;
+});
 
 /**
  * Get all labels for the authenticated user.
@@ -210,8 +232,13 @@ exports.removeMailFromLabel = async (req, res) => {
         if (!mailId) {
             return res.status(400).json({ error: 'Mail Id is required' });
         }
+
+        const user = await userModel.findById(req.userId);
+        if (!user) {
+            return res.status(404).json({ error: 'User not found' });
+        }
         // removeMailFromLabel returns the updated label, or null.
-        const updatedLabel = await Label.removeMailFromLabel(id, mailId, req.userId);
+        const updatedLabel = await Label.removeMailFromLabel(id, mailId, req.userId, user.emailAddress);
         if (!updatedLabel) {
             return res.status(404).json({ error: 'Mail not found in label or label not found' });
         }
@@ -257,10 +284,17 @@ exports.getMailsByLabel = async (req, res) => {
 
         // Map mails to include 'id' property for frontend compatibility
         // Mails are ALREADY plain objects from mailModel.js's attachFromUserDetails
-        const formattedMails = mails.map(mail => ({
-            ...mail, // use spread operator directly on 'mail'
-            id: mail._id // Add 'id' property
-        }));
+        const headersOnly = req.query.fields === 'headers'; // same option as the folder listings
+        const formattedMails = mails.map(mail => {
+            const formatted = {
+                ...mail, // use spread operator directly on 'mail'
+                id: mail._id // Add 'id' property
+            };
+            if (headersOnly) {
+                delete formatted.body;
+            }
+            return formatted;
+        });
         res.json(formattedMails);
     } catch (error) {
         console.error('Error getting mails by label:', error);
@@ -1,5 +1,7 @@
 const mailModel = require('../models/mailModel');
 const userModel = require('../models/userModel');
+const conditionalGet = require('../middlewares/conditionalGet');
+const mailEvents = require('../services/mailEvents');
 const { checkUrl, addUrl, removeUrl, removeUrl_s, addUrl_s } = require('../services/blacklistService');
 const URL_REGEX = /(?:https?:\/\/)?(?:www\.)?[a-zA-Z0-9-]+(?:\.[a-zA-Z0-9-]+)+(?:\/\S*)?/gi;
 
@@ -36,6 +38,41 @@ async function getUserEmail(req) {
     return user ? user.emailAddress : null;
 }
 
+/**
+ * Helper function to read the optional keyset cursor of a folder listing.
+ * `before` is a timestamp in ms, `beforeId` breaks ties on that timestamp and `limit` is the page size.
+ * `fields=headers` leaves the bodies out; clients fetch a body with GET /api/mails/:id when it is opened.
+ * @param {Object} req - Express request object.
+ * @returns {Object} { before, beforeId, limit, headersOnly } with only the parameters that were sent and valid.
+ */
+function getPageParams(req) {
+    const page = {};
+    const before = parseInt(req.query.before, 10);
+    if (!isNaN(before)) {
+        page.before = before;
+        if (typeof req.query.beforeId === 'string') {
+            page.beforeId = req.query.beforeId;
+        }
+    }
+    const limit = parseInt(req.query.limit, 10);
+    if (!isNaN(limit) && limit > 0) {
+        page.limit = limit;
+    }
+    if (req.query.fields === 'headers') {
+        page.headersOnly = true;
+    }
+    return page;
+}
+
+/**
+ * Conditional GET for the folder listings. The ETag is the mailbox version, so while nothing in the
+ * user's mailbox changed the client gets a 304 and the folder is neither queried nor formatted.
+ */
+exports.ifMailboxChanged = conditionalGet(async (req) => {
+    const email = await getUserEmail(req);
+    return email ? mailModel.getMailboxVersion(email) : null;
+});
+
 /**
  * GET /api/mails
  * List up to 25 most recent mails for the authenticated user.
@@ -47,7 +84,7 @@ exports.listMails = async (req, res) => {
             return res.status(404).json({ error: 'User not found' });
         }
 
-        const mails = await mailModel.getAll(email);
+        const mails = await mailModel.getAll(email, getPageParams(req));
         const mailsWithSenderInfo = await Promise.all(mails.map(async mail => {
             const senderUser = await userModel.findByEmail(mail.from);
             return formatMailForResponse(mail, senderUser);
@@ -59,6 +96,117 @@ exports.listMails = async (req, res) => {
     }
 };
 
+/**
+ * GET /api/mails/changes?updatedSince=<cursor>&limit=<n>
+ * Mails of the authenticated user changed since the cursor, for incremental sync.
+ * Responds with { mails, deleted, cursor, hasMore }. Mails are only ever soft-deleted (they move
+ * to trash and come back in `mails`), so `deleted` stays empty until hard deletes exist.
+ */
+exports.getChanges = async (req, res) => {
+    try {
+        const email = await getUserEmail(req);
+        if (!email) {
+            return res.status(404).json({ error: 'User not found' });
+        }
+
+        const limit = Math.min(parseInt(req.query.limit, 10) || 100, 500);
+        const changes = await mailModel.getChanges(email, req.query.updatedSince, limit);
+        const formattedMails = await Promise.all(changes.mails.map(async mail => {
+            const senderUser = await userModel.findByEmail(mail.from);
+            return formatMailForResponse(mail, senderUser);
+        }));
+        res.status(200).json({
+            mails: formattedMails,
+            deleted: [],
+            cursor: changes.cursor,
+            hasMore: changes.hasMore
+        });
+    } catch (error) {
+        console.error('Error getting mail changes:', error);
+        res.status(500).json({ error: 'Internal server error' });
+    }
+};
+
+/**
+ * GET /api/mails/events
+ * Server-sent event stream of the authenticated user's mailbox changes (see services/mailEvents).
+ * Send the last received event id as Last-Event-ID when reconnecting to get the missed events.
+ */
+exports.streamEvents = async (req, res) => {
+    try {
+        const email = await getUserEmail(req);
+        if (!email) {
+            return res.status(404).json({ error: 'User not found' });
+        }
+        mailEvents.subscribe(email, req, res);
+    } catch (error) {
+        console.error('Error opening mail event stream:', error);
+        res.status(500).json({ error: 'Internal server error' });
+    }
+};
+
+/**
+ * GET /api/mails/counts
+ * Number of mails in each folder of the authenticated user, for the sidebar badges.
+ * Responds with { inbox, sent, drafts, spam, deleted, important, starred }.
+ */
+exports.getCounts = async (req, res) => {
+    try {
+        const email = await getUserEmail(req);
+        if (!email) {
+            return res.status(404).json({ error: 'User not found' });
+        }
+        res.status(200).json(await mailModel.getCounts(email));
+    } catch (error) {
+        console.error('Error counting mails:', error);
+        res.status(500).json({ error: 'Internal server error' });
+    }
+};
+
+/**
+ * POST /api/mails/batch
+ * Apply one action to many mails of the authenticated user (multi-select in the client).
+ * Body: { ids: [mailId], op } where op is read, unread, star, unstar, important, unimportant, spam,
+ * unspam or delete. Responds with { matched }: the number of mails the action applied to.
+ */
+exports.applyBatch = async (req, res) => {
+    try {
+        const email = await getUserEmail(req);
+        if (!email) {
+            return res.status(404).json({ error: 'User not found' });
+        }
+
+        const { ids, op } = req.body || {};
+        if (!Array.isArray(ids) || ids.length === 0 || ids.length > 500) {
+            return res.status(400).json({ error: 'ids must be a non-empty array of at most 500 mail ids' });
+        }
+        if (!mailModel.BATCH_OPS.includes(op)) {
+            return res.status(400).json({ error: `op must be one of ${mailModel.BATCH_OPS.join(', ')}` });
+        }
+
+        if (op === 'spam') {
+            // same as POST /:id/spam: the URLs of spam mails go on the blacklist
+            const mails = await mailModel.getContents(email, ids);
+            for (const mail of mails) {
+                const urls = [...(mail.subject.match(URL_REGEX) || []), ...(mail.body.match(URL_REGEX) || [])];
+                for (const url of urls) {
+                    try {
+                        addUrl_s(url);
+                    } catch (e) {
+                        console.error(`Error adding URL to blacklist: ${url}`, e);
+                    }
+                }
+            }
+        }
+
+        const matched = await mailModel.applyBatch(email, ids, op);
+        res.status(200).json({ matched });
+    } catch (error) {
+        console.error('Error applying batch action:', error);
+        res.status(500).json({ error: 'Internal server error' });
+    }
+};
+
 /**
  * GET /api/mails/:id
  * Retrieve a single mail by ID for the authenticated user.
@@ -86,18 +234,22 @@ exports.getMail = async (req, res) => {
 };
 
 /**
- * GET /api/mails/search/:query
- * Search mails by query string in subject or body for the authenticated user.
+ * GET /api/mails/search?q=<query>&limit=<n>&fields=headers (or the older GET /api/mails/search/:query)
+ * Search mails by query string in subject or body for the authenticated user, newest first.
  */
 exports.searchMails = async (req, res) => {
     try {
-        const query = req.params.query;
+        const query = typeof req.query.q === 'string' ? req.query.q : req.params.query;
+        if (!query) {
+            return res.status(400).json({ error: 'Missing search query' });
+        }
         const email = await getUserEmail(req);
         if (!email) {
             return res.status(404).json({ error: 'User not found' });
         }
 
-        const results = await mailModel.search(email, query);
+        const { limit, headersOnly } = getPageParams(req);
+        const results = await mailModel.search(email, query, { limit, headersOnly });
         const formattedResults = await Promise.all(results.map(async mail => {
             const senderUser = await userModel.findByEmail(mail.from);
             return formatMailForResponse(mail, senderUser);
@@ -345,7 +497,7 @@ exports.getDrafts = async (req, res) => {
             return res.status(404).json({ error: 'User not found' });
         }
 
-        const drafts = await mailModel.getDrafts(email);
+        const drafts = await mailModel.getDrafts(email, getPageParams(req));
         const formattedDrafts = await Promise.all(drafts.map(async draft => {
             const senderUser = await userModel.findByEmail(draft.from); // Draft's sender is always the current user
             return formatMailForResponse(draft, senderUser);
@@ -367,7 +519,7 @@ exports.getInbox = async (req, res) => {
         if (!email) {
             return res.status(404).json({ error: "User not found" });
         }
-        const inbox = await mailModel.getInbox(email);
+        const inbox = await mailModel.getInbox(email, getPageParams(req));
         const formattedInbox = await Promise.all(inbox.map(async mail => {
             const senderUser = await userModel.findByEmail(mail.from);
             return formatMailForResponse(mail, senderUser);
@@ -390,7 +542,7 @@ exports.getSent = async (req, res) => {
             return res.status(404).json({ error: 'User not found' });
         }
 
-        const sent = await mailModel.getSent(email);
+        const sent = await mailModel.getSent(email, getPageParams(req));
         const formattedSent = await Promise.all(sent.map(async mail => {
             const senderUser = await userModel.findByEmail(mail.from); // Sender is always the current user for sent mails
             return formatMailForResponse(mail, senderUser);
@@ -413,7 +565,7 @@ exports.getSpamMails = async (req, res) => {
             return res.status(404).json({ error: 'User not found' });
         }
 
-        const spamMails = await mailModel.getSpam(email);
+        const spamMails = await mailModel.getSpam(email, getPageParams(req));
         const formattedSpamMails = await Promise.all(spamMails.map(async mail => {
             const senderUser = await userModel.findByEmail(mail.from);
             return formatMailForResponse(mail, senderUser);
@@ -518,7 +670,7 @@ exports.getDeletedMails = async (req, res) => {
             return res.status(404).json({ error: 'User not found' });
         }
 
-        const deletedMails = await mailModel.getDeletedMails(email);
+        const deletedMails = await mailModel.getDeletedMails(email, getPageParams(req));
         const formattedDeletedMails = await Promise.all(deletedMails.map(async mail => {
             const senderUser = await userModel.findByEmail(mail.from);
             return formatMailForResponse(mail, senderUser);
@@ -633,7 +785,7 @@ exports.getImportantMails = async (req, res) => {
             return res.status(404).json({ error: 'User not found' });
         }
 
-        const importantMails = await mailModel.getImportantMails(email);
+        const importantMails = await mailModel.getImportantMails(email, getPageParams(req));
         const formattedImportantMails = await Promise.all(importantMails.map(async mail => {
             const senderUser = await userModel.findByEmail(mail.from);
             return formatMailForResponse(mail, senderUser);
@@ -702,7 +854,7 @@ exports.getStarredMails = async (req, res) => {
             return res.status(404).json({ error: 'User not found' });
         }
 
-        const starredMails = await mailModel.getStarredMails(email);
+        const starredMails = await mailModel.getStarredMails(email, getPageParams(req));
         const formattedStarredMails = await Promise.all(starredMails.map(async mail => {
             const senderUser = await userModel.findByEmail(mail.from);
             return formatMailForResponse(mail, senderUser);
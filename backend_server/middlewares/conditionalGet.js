@@ -0,0 +1,38 @@
+/**
+ * Middleware factory for conditional GETs on list routes.
+ * `versionOf(req)` must cheaply describe the state the list is built from (e.g. the newest updatedAt
+ * of the user's mails) without building the list itself. The version becomes the ETag; when the
+ * client's If-None-Match still matches, the route answers 304 with no body and the list handler
+ * never runs. The user id is part of the tag, so a tag never matches another account's list.
+ *
+ * @param {Function} versionOf - async (req) => string|null; null skips the check.
+ * @returns {Function} Express middleware.
+ */
+function conditionalGet(versionOf) {
+    return async (req, res, next) => {
+        let version;
+        try {
+            version = await versionOf(req);
+        } catch (err) {
+            console.error('Error computing list version:', err);
+            return next(); // fall back to a full response
+        }
+        if (!version) {
+            return next();
+        }
+
+        const etag = `"${req.userId}-${version}"`;
+        res.set('ETag', etag);
+        // private: only the user's own client may keep it; no-cache: revalidate on every use
+        res.set('Cache-Control', 'private, no-cache');
+
+        const ifNoneMatch = req.headers['if-none-match'];
+        // compression() weakens the tag (W/"..."), so compare without the prefix
+        if (ifNoneMatch && ifNoneMatch.split(',').some(tag => tag.trim().replace(/^W\//, '') === etag)) {
+            return res.status(304).end();
+        }
+        next();
+    };
+}
+
+module.exports = conditionalGet;
@@ -0,0 +1,83 @@
+/**
+ * Middleware for requests a client may retry without knowing whether the first attempt arrived,
+ * such as sending a mail from an offline queue. The client puts a key it generated once per send
+ * in the Idempotency-Key header and repeats it on every retry. The first request with a key runs
+ * normally and its response is kept; a repeat gets that same response without the handler running
+ * again, and a repeat that arrives while the first is still running waits for it.
+ * Server errors (5xx) are not kept, so a retry after one runs the handler again.
+ * Keys are scoped to the user and kept in memory for KEY_TTL_MS; requests without the header are
+ * not affected.
+ */
+const HEADER = 'idempotency-key';
+const KEY_TTL_MS = 24 * 60 * 60 * 1000;
+const MAX_KEYS = 10000; // oldest keys are dropped first beyond this
+const MAX_KEY_LENGTH = 128;
+
+// `${userId}:${key}` -> { done: Promise, status, body, expiresAt }, in insertion order
+const entries = new Map();
+
+function prune(now) {
+    for (const [id, entry] of entries) {
+        if (entries.size <= MAX_KEYS && entry.expiresAt > now) {
+            break;
+        }
+        if (entry.status !== undefined || entries.size > MAX_KEYS) {
+            entries.delete(id);
+        }
+    }
+}
+
+/**
+ * @param {Object} req - Express request object (after authentication, so req.userId is set).
+ * @param {Object} res - Express response object.
+ * @param {Function} next - Express next middleware function.
+ */
+async function idempotency(req, res, next) {
+    const key = req.headers[HEADER];
+    if (!key) {
+        return next();
+    }
+    if (key.length > MAX_KEY_LENGTH) {
+        return res.status(400).json({ error: 'Idempotency-Key is too long' });
+    }
+
+    const now = Date.now();
+    prune(now);
+    const id = `${req.userId}:${key}`;
+    const existing = entries.get(id);
+    if (existing && existing.expiresAt > now) {
+        await existing.done;
+        if (existing.status !== undefined) {
+            res.set('Idempotent-Replayed', 'true');
+            return res.status(existing.status).json(existing.body);
+        }
+        // the first attempt failed with a server error: this one runs the handler itself
+    }
+
+    let finish;
+    const entry = { done: new Promise(resolve => { finish = resolve; }), expiresAt: now + KEY_TTL_MS };
+    entries.delete(id); // re-inserted last, so pruning stays oldest first
+    entries.set(id, entry);
+
+    const json = res.json.bind(res);
+    res.json = (body) => {
+        if (res.statusCode < 500) {
+            entry.status = res.statusCode;
+            entry.body = body;
+        } else {
+            entries.delete(id);
+        }
+        finish();
+        return json(body);
+    };
+    // responses that never go through res.json (e.g. a crash before answering) release waiters too
+    res.on('close', () => {
+        if (entry.status === undefined) {
+            entries.delete(id);
+        }
+        finish();
+    });
+    next();
+}
+
+module.exports = idempotency;
@@ -16,6 +16,8 @@ const labelSchema = new mongoose.Schema({
         type: String, // Assuming mailId is a string (e.g., Gmail message ID)
         ref: 'Mail' // If you want to populate mail details later, reference the Mail model
     }]
+}, {
+    timestamps: true // updatedAt versions the label lists (see getLabelsVersion)
 });
 
 // Create the Label Model
@@ -30,6 +32,22 @@ const getAllLabels = async (userId) => {
     return await Label.find({ userId }).exec();
 };
 
+/**
+ * Version of a user's label list: how many labels there are and when the newest change happened.
+ * Creating, renaming or (un)assigning mails saves a label and bumps its updatedAt; deleting one
+ * changes the count.
+ * @param {string} userId - The ID of the user.
+ * @returns {Promise<string>} Promise resolving to "<count>_<newestUpdatedAtMs>".
+ */
+const getLabelsVersion = async (userId) => {
+    const [count, newest] = await Promise.all([
+        Label.countDocuments({ userId }).exec(),
+        Label.findOne({ userId }).sort({ updatedAt: -1 }).select({ updatedAt: 1 }).exec()
+    ]);
+    const newestMs = newest && newest.updatedAt ? newest.updatedAt.getTime() : 0;
+    return `${count}_${newestMs}`;
+};
+
 /**
  * Retrieves a specific label by ID for a given user.
  * @param {string} id - The label ID (MongoDB ObjectId string).
@@ -109,6 +127,9 @@ const deleteLabel = async (id, userId) => {
         return null;
     }
     const result = await Label.findOneAndDelete({ _id: id, userId }).exec();
+    if (result) {
+        await Mail.removeLabelFromAll(id); // so delta sync does not hand out a label that is gone
+    }
     return result; // Returns the deleted document or null
 };
 
@@ -138,6 +159,8 @@ const addMailToLabel = async (labelId, mailId, userId, userEmail) => {
         label.mails.push(mailId);
         await label.save();
     }
+    // mirrored on the mail, so every listing (and delta sync) carries the mail's labels
+    await Mail.addLabel(userEmail, mailId, labelId);
     return label;
 };
 
@@ -146,9 +169,10 @@ const addMailToLabel = async (labelId, mailId, userId, userEmail) => {
  * @param {string} labelId - The ID of the label (MongoDB ObjectId string).
  * @param {string} mailId - The ID of the mail.
  * @param {string} userId - The ID of the user.
+ * @param {string} userEmail - The email of the user (whose side of the mail loses the label).
  * @returns {Promise<Object|null>} Promise resolving to the updated label or null if not found.
  */
-const removeMailFromLabel = async (labelId, mailId, userId) => {
+const removeMailFromLabel = async (labelId, mailId, userId, userEmail) => {
     // Ensure the ID is a valid MongoDB ObjectId before querying
     if (!mongoose.Types.ObjectId.isValid(labelId)) {
         return null;
@@ -158,6 +182,7 @@ const removeMailFromLabel = async (labelId, mailId, userId) => {
 
     label.mails = label.mails.filter(id => id !== mailId);
     await label.save();
+    await Mail.removeLabel(userEmail, mailId, labelId);
     return label;
 };
 
@@ -194,6 +219,7 @@ const getMailsByLabel = async (labelId, userId, userEmail) => {
 
 module.exports = {
     getAllLabels,
+    getLabelsVersion,
     getLabel,
     createLabel,
     updateLabel,
@@ -1,5 +1,6 @@
 const mongoose = require('mongoose');
 const userModel = require('./userModel'); // Assuming you have a user model to validate emails against
+const mailEvents = require('../services/mailEvents');
 
 // Define the Mail Schema
 const mailSchema = new mongoose.Schema({
@@ -76,28 +77,197 @@ const mailSchema = new mongoose.Schema({
     timestamps: true // Adds createdAt and updatedAt fields automatically
 });
 
+// Folder listings page newest-first on (timestamp, _id)
+mailSchema.index({ to: 1, timestamp: -1, _id: -1 });
+mailSchema.index({ from: 1, timestamp: -1, _id: -1 });
+// Delta sync walks a user's mails in (updatedAt, _id) order
+mailSchema.index({ to: 1, updatedAt: 1, _id: 1 });
+mailSchema.index({ from: 1, updatedAt: 1, _id: 1 });
+
+// Every single-mail change goes through save(): push it to the clients of the users involved
+mailSchema.post('save', mail => {
+    mailEvents.mailChanged(mail).catch(err => console.error('Error publishing mail event:', err));
+});
+
 // Create the Mail Model
 const Mail = mongoose.model('Mail', mailSchema);
 
+/**
+ * Publish mails changed by a bulk update, which does not run the save hook.
+ * Not awaited by callers: the response does not wait for the events.
+ * @param {Array<Object>} ids - ObjectIds of the changed mails.
+ */
+function publishChanged(ids) {
+    Mail.find({ _id: { $in: ids } }).exec()
+        .then(mails => Promise.all(mails.map(mail => mailEvents.mailChanged(mail))))
+        .catch(err => console.error('Error publishing mail events:', err));
+}
+
+const MAX_PAGE_SIZE = 100;
+
+/**
+ * Run a folder query as one keyset page: newest first, strictly older than the cursor.
+ * @param {Object} filter - The folder's mongo filter.
+ * @param {Object} page - { before, beforeId, limit, headersOnly } as parsed from the query string (all optional).
+ * @param {number|null} defaultLimit - Limit used when the caller did not ask for one (null = no limit).
+ * @returns {Promise<Array<Object>>} Promise resolving to the page of mail objects.
+ */
+function findPage(filter, page = {}, defaultLimit = null) {
+    const { before, beforeId, limit, headersOnly } = page;
+    let query = filter;
+    if (before !== undefined) {
+        // Rows sharing the cursor's timestamp are ordered by _id, so nothing is skipped or repeated
+        const older = [{ timestamp: { $lt: before } }];
+        if (beforeId && mongoose.Types.ObjectId.isValid(beforeId)) {
+            older.push({ timestamp: before, _id: { $lt: new mongoose.Types.ObjectId(beforeId) } });
+        }
+        query = { $and: [filter, { $or: older }] };
+    }
+    let cursor = Mail.find(query).sort({ timestamp: -1, _id: -1 });
+    const pageSize = limit !== undefined ? Math.min(limit, MAX_PAGE_SIZE) : defaultLimit;
+    if (pageSize) {
+        cursor = cursor.limit(pageSize);
+    }
+    if (headersOnly) {
+        cursor = cursor.select({ body: 0 }); // list rows never show the body
+    }
+    return cursor.exec();
+}
+
+
+/**
+ * Mongo filter of one of the user's folders. The folder listings and the folder counts share it,
+ * so a badge always counts exactly what opening the folder would list.
+ * @param {string} email - The user's email.
+ * @param {string} folder - One of COUNTED_FOLDERS.
+ * @returns {Object} The mongo filter.
+ */
+function folderFilter(email, folder) {
+    switch (folder) {
+        case 'inbox':
+            return { to: email, deletedForReceiver: false, isSpam: false, send: true }; // Only received (sent) mails
+        case 'sent':
+            return { from: email, deletedForSender: false, send: true }; // Only sent mails
+        case 'drafts':
+            return { from: email, send: false, deletedForSender: false };
+        case 'spam':
+            // Spam mails are always received mails
+            return { to: email, isSpam: true, deletedForReceiver: false, send: true };
+        case 'deleted':
+            return {
+                $or: [
+                    { from: email, deletedForSender: true },   // Mails sent by user and deleted by sender
+                    { to: email, deletedForReceiver: true }    // Mails received by user and deleted by receiver
+                ]
+            };
+        case 'important':
+        case 'starred':
+            return {
+                $or: [
+                    { from: email, deletedForSender: false },
+                    { to: email, deletedForReceiver: false }
+                ],
+                [folder === 'important' ? 'isImportant' : 'isStarred']: true
+            };
+        default:
+            throw new Error(`Unknown folder: ${folder}`);
+    }
+}
+
+const COUNTED_FOLDERS = ['inbox', 'sent', 'drafts', 'spam', 'deleted', 'important', 'starred'];
+
+/**
+ * Count the mails in every folder of the user. Each count runs on the to/from indexes and
+ * never loads a document, so the sidebar badges cost a few bytes instead of whole folders.
+ * @param {string} email - The user's email.
+ * @returns {Promise<Object>} Promise resolving to { inbox, sent, drafts, spam, deleted, important, starred }.
+ */
+async function getCounts(email) {
+    const counts = await Promise.all(COUNTED_FOLDERS.map(folder =>
+        Mail.countDocuments(folderFilter(email, folder)).exec()));
+    const result = {};
+    COUNTED_FOLDERS.forEach((folder, i) => {
+        result[folder] = counts[i];
+    });
+    return result;
+}
 
 /**
  * Returns up to 25 most recent mails for this user (sent or received), not spam, not deleted.
  * @param {string} email - The user's email.
+ * @param {Object} [page] - Optional keyset cursor { before, beforeId, limit }.
  * @returns {Promise<Array<Object>>} Promise resolving to an array of mail objects.
  */
-async function getAll(email) {
-    const mails = await Mail.find({
+async function getAll(email, page = {}) {
+    return await findPage({
         $or: [
             { from: email, deletedForSender: false }, // Mails sent by user, not deleted by sender
             { to: email, deletedForReceiver: false }  // Mails received by user, not deleted by receiver
         ],
         isSpam: false, // Not marked as spam
         send: true     // Only consider sent mails (not drafts)
-    })
-    .sort({ timestamp: -1 }) // Sort by most recent first
-    .limit(25) // Limit to 25 mails
-    .exec(); // Execute the query
-    return mails;
+    }, page, 25); // Limit to 25 mails unless a page size was asked for
+}
+
+/**
+ * Build the opaque sync cursor for a mail: its updatedAt in ms and its id.
+ * @param {Object} mail - Mail document.
+ * @returns {string} Cursor string "<updatedAtMs>_<id>".
+ */
+function syncCursorOf(mail) {
+    return `${mail.updatedAt.getTime()}_${mail._id}`;
+}
+
+/**
+ * Version of the user's whole mailbox: the sync cursor of the most recently changed mail.
+ * Every change to a mail (flags, soft delete, send) bumps its updatedAt, so any change to any
+ * folder listing changes the version. Read off the { to/from, updatedAt } indexes.
+ * @param {string} email - The user's email.
+ * @returns {Promise<string>} Promise resolving to "<updatedAtMs>_<id>", or '0_' for an empty mailbox.
+ */
+async function getMailboxVersion(email) {
+    const newest = await Mail.findOne({ $or: [{ from: email }, { to: email }] })
+        .sort({ updatedAt: -1, _id: -1 })
+        .select({ updatedAt: 1 })
+        .exec();
+    return newest ? syncCursorOf(newest) : '0_';
+}
+
+/**
+ * Get the mails of this user (sent or received, drafts included) changed after the cursor,
+ * oldest change first. Soft deletes are ordinary updates, so they come back as changed mails.
+ * When no cursor is given nothing is returned, only the cursor of the newest change, so a new
+ * client starts from "now" instead of downloading the whole mailbox.
+ * @param {string} email - The user's email.
+ * @param {string} [since] - Cursor returned by a previous call.
+ * @param {number} limit - Maximum number of mails to return.
+ * @returns {Promise<Object>} Promise resolving to { mails, cursor, hasMore }.
+ */
+async function getChanges(email, since, limit) {
+    const mine = { $or: [{ from: email }, { to: email }] };
+
+    if (!since) {
+        return { mails: [], cursor: await getMailboxVersion(email), hasMore: false };
+    }
+
+    const [msPart, idPart] = String(since).split('_');
+    const sinceDate = new Date(parseInt(msPart, 10) || 0);
+    const newer = [{ updatedAt: { $gt: sinceDate } }];
+    if (idPart && mongoose.Types.ObjectId.isValid(idPart)) {
+        newer.push({ updatedAt: sinceDate, _id: { $gt: new mongoose.Types.ObjectId(idPart) } });
+    } else {
+        newer.push({ updatedAt: sinceDate });
+    }
+
+    // one extra row tells whether another page is waiting
+    const rows = await Mail.find({ $and: [mine, { $or: newer }] })
+        .sort({ updatedAt: 1, _id: 1 })
+        .limit(limit + 1)
+        .exec();
+    const hasMore = rows.length > limit;
+    const mails = hasMore ? rows.slice(0, limit) : rows;
+    const cursor = mails.length > 0 ? syncCursorOf(mails[mails.length - 1]) : String(since);
+    return { mails, cursor, hasMore };
 }
 
 /**
@@ -146,15 +316,21 @@ async function getDraftById(email, id) {
     return draft;
 }
 
+const MAX_SEARCH_RESULTS = 100;
+
 /**
- * Search this user’s mails for query in subject or body.
+ * Search this user’s mails for query in subject or body, newest first.
+ * The query is matched literally (regex characters are escaped).
  * @param {string} email - The user's email.
  * @param {string} query - The search query string.
+ * @param {Object} [options] - { limit, headersOnly }: at most `limit` results (capped at 100, default 50),
+ *     without the bodies when `headersOnly`.
  * @returns {Promise<Array<Object>>} Promise resolving to an array of matching mail objects.
  */
-async function search(email, query) {
-    const ql = query.toLowerCase();
-    const mails = await Mail.find({
+async function search(email, query, options = {}) {
+    const ql = query.toLowerCase().replace(/[.*+?^${}()|[\]\\]/g, '\\$&');
+    const limit = Math.min(options.limit || 50, MAX_SEARCH_RESULTS);
+    let cursor = Mail.find({
         $or: [
             { from: email }, // Mails sent by user
             { to: email }    // Mails received by user
@@ -169,8 +345,11 @@ async function search(email, query) {
                 ]
             }
         ]
-    }).exec();
-    return mails;
+    }).sort({ timestamp: -1, _id: -1 }).limit(limit);
+    if (options.headersOnly) {
+        cursor = cursor.select({ body: 0 });
+    }
+    return cursor.exec();
 }
 
 /**
@@ -393,6 +572,25 @@ async function removeLabel(email, id, labelId) {
     return null; // Mail doesn't belong to this user or label not found
 }
 
+/**
+ * Remove a deleted label from every mail that carries it, on either side.
+ * The mails' updatedAt is bumped, so delta sync hands out the shorter label lists.
+ * @param {string} labelId - The MongoDB _id of the deleted label.
+ * @returns {Promise<void>}
+ */
+async function removeLabelFromAll(labelId) {
+    if (!mongoose.Types.ObjectId.isValid(labelId)) {
+        return;
+    }
+    const labelled = { $or: [{ labelsForSender: labelId }, { labelsForReceiver: labelId }] };
+    const ids = await Mail.find(labelled).distinct('_id').exec();
+    await Mail.updateMany(
+        { _id: { $in: ids } },
+        { $pull: { labelsForSender: labelId, labelsForReceiver: labelId } }
+    ).exec();
+    publishChanged(ids);
+}
+
 /**
  * Get labels associated with a mail for a specific user.
  * This is based on whether the user is the sender or receiver.
@@ -419,62 +617,41 @@ async function getLabels(email, id) {
 /**
  * Get all drafts for a user.
  * @param {string} email - The user's email.
+ * @param {Object} [page] - Optional keyset cursor { before, beforeId, limit }.
  * @returns {Promise<Array<Object>>} Promise resolving to an array of draft mail objects.
  */
-async function getDrafts(email) {
-    return await Mail.find({ from: email, send: false, deletedForSender: false })
-        .sort({ timestamp: -1 })
-        .exec();
+async function getDrafts(email, page = {}) {
+    return await findPage(folderFilter(email, 'drafts'), page);
 }
 
 /**
  * Get all mails in the inbox for a user.
  * @param {string} email - The user's email.
+ * @param {Object} [page] - Optional keyset cursor { before, beforeId, limit }.
  * @returns {Promise<Array<Object>>} Promise resolving to an array of inbox mail objects.
  */
-async function getInbox(email) {
-    return await Mail.find({
-        to: email,
-        deletedForReceiver: false,
-        isSpam: false,
-        send: true // Only received (sent) mails
-    })
-    .sort({ timestamp: -1 })
-    .limit(25)
-    .exec();
+async function getInbox(email, page = {}) {
+    return await findPage(folderFilter(email, 'inbox'), page, 25);
 }
 
 /**
  * Get all mails sent by a user.
  * @param {string} email - The user's email.
+ * @param {Object} [page] - Optional keyset cursor { before, beforeId, limit }.
  * @returns {Promise<Array<Object>>} Promise resolving to an array of sent mail objects.
  */
-async function getSent(email) {
-    return await Mail.find({
-        from: email,
-        deletedForSender: false,
-        send: true // Only sent mails
-    })
-    .sort({ timestamp: -1 })
-    .limit(25)
-    .exec();
+async function getSent(email, page = {}) {
+    return await findPage(folderFilter(email, 'sent'), page, 25);
 }
 
 /**
  * Get all spam mails for a user.
  * @param {string} email - The user's email.
+ * @param {Object} [page] - Optional keyset cursor { before, beforeId, limit }.
  * @returns {Promise<Array<Object>>} Promise resolving to an array of spam mail objects.
  */
-async function getSpam(email) {
-    return await Mail.find({
-        to: email, // Spam mails are always received mails
-        isSpam: true,
-        deletedForReceiver: false,
-        send: true
-    })
-    .sort({ timestamp: -1 })
-    .limit(25)
-    .exec();
+async function getSpam(email, page = {}) {
+    return await findPage(folderFilter(email, 'spam'), page, 25);
 }
 
 /**
@@ -506,18 +683,11 @@ async function unmarkAsSpam(mail, id) { // mail object is passed directly
 /**
  * Get all deleted mails for a user, including drafts.
  * @param {string} email - The user's email.
+ * @param {Object} [page] - Optional keyset cursor { before, beforeId, limit }.
  * @returns {Promise<Array<Object>>} Promise resolving to an array of deleted mail objects.
  */
-async function getDeletedMails(email) {
-    const deletedMails = await Mail.find({
-        $or: [
-            { from: email, deletedForSender: true },   // Mails sent by user and deleted by sender
-            { to: email, deletedForReceiver: true }    // Mails received by user and deleted by receiver
-        ]
-    })
-    .sort({ timestamp: -1 })
-    .exec();
-    return deletedMails;
+async function getDeletedMails(email, page = {}) {
+    return await findPage(folderFilter(email, 'deleted'), page);
 }
 
 /**
@@ -607,19 +777,11 @@ async function unmarkAsImportant(email, id) {
 /**
  * Get all important mails for a user.
  * @param {string} email - The user's email.
+ * @param {Object} [page] - Optional keyset cursor { before, beforeId, limit }.
  * @returns {Promise<Array<Object>>} Promise resolving to an array of important mail objects.
  */
-async function getImportantMails(email) {
-    return await Mail.find({
-        $or: [
-            { from: email, deletedForSender: false },
-            { to: email, deletedForReceiver: false }
-        ],
-        isImportant: true
-    })
-    .sort({ timestamp: -1 })
-    .limit(25)
-    .exec();
+async function getImportantMails(email, page = {}) {
+    return await findPage(folderFilter(email, 'important'), page, 25);
 }
 
 /**
@@ -673,19 +835,76 @@ async function unmarkAsStarred(email, id) {
 /**
  * Get all starred mails for a user.
  * @param {string} email - The user's email.
+ * @param {Object} [page] - Optional keyset cursor { before, beforeId, limit }.
  * @returns {Promise<Array<Object>>} Promise resolving to an array of starred mail objects.
  */
-async function getStarredMails(email) {
-    return await Mail.find({
-        $or: [
-            { from: email, deletedForSender: false },
-            { to: email, deletedForReceiver: false }
-        ],
-        isStarred: true
-    })
-    .sort({ timestamp: -1 })
-    .limit(25)
-    .exec();
+async function getStarredMails(email, page = {}) {
+    return await findPage(folderFilter(email, 'starred'), page, 25);
+}
+
+/**
+ * Apply one action to many mails of the user in a single bulk write, with the same permission rules
+ * as the single-mail routes (only the recipient marks read/unread; delete is per role).
+ * @param {string} email - The user's email.
+ * @param {Array<string>} ids - MongoDB _ids of the mails; invalid ids are ignored.
+ * @param {string} op - One of BATCH_OPS.
+ * @returns {Promise<number>} Promise resolving to the number of mails the action matched.
+ */
+async function applyBatch(email, ids, op) {
+    const objectIds = ids
+        .filter(id => mongoose.Types.ObjectId.isValid(id))
+        .map(id => new mongoose.Types.ObjectId(id));
+    if (objectIds.length === 0) {
+        return 0;
+    }
+    const mine = { _id: { $in: objectIds }, $or: [{ from: email }, { to: email, send: true }] };
+    let updates;
+    switch (op) {
+        case 'read':
+        case 'unread':
+            updates = [{ filter: { _id: { $in: objectIds }, to: email, send: true }, update: { $set: { isRead: op === 'read' } } }];
+            break;
+        case 'star':
+        case 'unstar':
+            updates = [{ filter: mine, update: { $set: { isStarred: op === 'star' } } }];
+            break;
+        case 'important':
+        case 'unimportant':
+            updates = [{ filter: mine, update: { $set: { isImportant: op === 'important' } } }];
+            break;
+        case 'spam':
+        case 'unspam':
+            updates = [{ filter: mine, update: { $set: { isSpam: op === 'spam' } } }];
+            break;
+        case 'delete':
+            updates = [
+                { filter: { _id: { $in: objectIds }, to: email }, update: { $set: { deletedForReceiver: true } } },
+                { filter: { _id: { $in: objectIds }, from: email }, update: { $set: { deletedForSender: true } } }
+            ];
+            break;
+        default:
+            throw new Error(`Unknown batch op: ${op}`);
+    }
+    // one round trip; timestamps still bump updatedAt, so delta sync sees every changed mail
+    const result = await Mail.bulkWrite(updates.map(u => ({ updateMany: u })), { ordered: false });
+    publishChanged(objectIds);
+    return result.matchedCount;
+}
+
+const BATCH_OPS = ['read', 'unread', 'star', 'unstar', 'important', 'unimportant', 'spam', 'unspam', 'delete'];
+
+/**
+ * Get the subject and body of the user's mails among ids (used to blacklist URLs of batch spam).
+ * @param {string} email - The user's email.
+ * @param {Array<string>} ids - MongoDB _ids of the mails.
+ * @returns {Promise<Array<Object>>} Promise resolving to [{ subject, body }].
+ */
+async function getContents(email, ids) {
+    const objectIds = ids.filter(id => mongoose.Types.ObjectId.isValid(id));
+    return await Mail.find({ _id: { $in: objectIds }, $or: [{ from: email }, { to: email, send: true }] })
+        .select({ subject: 1, body: 1 })
+        .lean()
+        .exec();
 }
 
 /**
@@ -720,6 +939,12 @@ async function attachFromUserDetailsToArray(mails) {
 
 module.exports = {
     getAll,
+    getChanges,
+    getMailboxVersion,
+    getCounts,
+    applyBatch,
+    BATCH_OPS,
+    getContents,
     getById,
     search,
     createDraft,
@@ -728,6 +953,7 @@ module.exports = {
     deleteMail,
     addLabel,
     removeLabel,
+    removeLabelFromAll,
     getDrafts,
     getInbox,
     getSent,
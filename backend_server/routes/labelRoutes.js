@@ -9,7 +9,7 @@ const authenticateToken = require('../middlewares/authMiddleware');
  * POST /api/labels
  */
 router.route('/')
-    .get(authenticateToken, controller.getAllLabels)
+    .get(authenticateToken, controller.ifLabelsChanged, controller.getAllLabels)
     .post(authenticateToken, controller.createLabel);
 
 /**
@@ -26,6 +26,6 @@ router.route('/:id')
 router.route('/:id/mails')
     .post(authenticateToken, controller.addMailToLabel)
     .delete(authenticateToken, controller.removeMailFromLabel)
-    .get(authenticateToken, controller.getMailsByLabel);
+    .get(authenticateToken, controller.ifLabelMailsChanged, controller.getMailsByLabel);
 
 module.exports = router;
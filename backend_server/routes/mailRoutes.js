@@ -2,50 +2,64 @@ const express = require('express');
 const router = express.Router();
 const controller = require('../controllers/mailController');
 const authenticateToken = require('../middlewares/authMiddleware');
+const idempotency = require('../middlewares/idempotency');
 
-// List up to 25 most recent mails
-router.get('/', authenticateToken, controller.listMails);
+// List up to 25 most recent mails (folder listings answer 304 while the mailbox is unchanged)
+router.get('/', authenticateToken, controller.ifMailboxChanged, controller.listMails);
 
-// Create a new mail (with blacklist check)
-router.post('/', authenticateToken, controller.sendMail);
+// Create a new mail (with blacklist check); a retried send with the same Idempotency-Key is answered once
+router.post('/', authenticateToken, idempotency, controller.sendMail);
+
+// Apply one action to many mails (multi-select)
+router.post('/batch', authenticateToken, controller.applyBatch);
 
 // Search mails by query string in subject or body must come before '/:id' to avoid routing conflicts
+router.get('/search', authenticateToken, controller.searchMails);
 router.get('/search/:query', authenticateToken, controller.searchMails);
 
+// Mails changed since a sync cursor (incremental sync), also before '/:id'
+router.get('/changes', authenticateToken, controller.getChanges);
+
+// Number of mails per folder (sidebar badges), also before '/:id'
+router.get('/counts', authenticateToken, controller.getCounts);
+
+// Push stream of mailbox changes (server-sent events), also before '/:id'
+router.get('/events', authenticateToken, controller.streamEvents);
+
 // GET all drafts
-router.get('/drafts', authenticateToken, controller.getDrafts);
+router.get('/drafts', authenticateToken, controller.ifMailboxChanged, controller.getDrafts);
 
 // GET inbox mails
-router.get('/inbox', authenticateToken, controller.getInbox);
+router.get('/inbox', authenticateToken, controller.ifMailboxChanged, controller.getInbox);
 
 // GET sent mails
-router.get('/sent', authenticateToken, controller.getSent);
+router.get('/sent', authenticateToken, controller.ifMailboxChanged, controller.getSent);
 
 // GET spam mails
-router.get('/spam', authenticateToken, controller.getSpamMails); // New route for spam mails
+router.get('/spam', authenticateToken, controller.ifMailboxChanged, controller.getSpamMails); // New route for spam mails
 
-router.get('/deleted', authenticateToken, controller.getDeletedMails); // New route for deleted mails
+router.get('/deleted', authenticateToken, controller.ifMailboxChanged, controller.getDeletedMails); // New route for deleted mails
 
 // Mark a mail as important
 router.post('/:id/important', authenticateToken, controller.markMailAsImportant);
 // Unmark a mail as important
 router.delete('/:id/important', authenticateToken, controller.unmarkMailAsImportant);
 // Get all important mails
-router.get('/important', authenticateToken, controller.getImportantMails);
+router.get('/important', authenticateToken, controller.ifMailboxChanged, controller.getImportantMails);
 
 // Mark a mail as starred
 router.post('/:id/star', authenticateToken, controller.markMailAsStarred);
 // Unmark a mail as starred
 router.delete('/:id/star', authenticateToken, controller.unmarkMailAsStarred);
 // Get all starred mails
-router.get('/starred', authenticateToken, controller.getStarredMails);
+router.get('/starred', authenticateToken, controller.ifMailboxChanged, controller.getStarredMails);
 
 
 // Retrieve a single mail by ID
 router.get('/:id', authenticateToken, controller.getMail);
 
-// Update an existing mail
-router.patch('/:id', authenticateToken, controller.updateDraft);
+// Update an existing mail (or send a draft), idempotent like the create route
+router.patch('/:id', authenticateToken, idempotency, controller.updateDraft);
 
 // Delete a mail
 router.delete('/:id', authenticateToken, controller.deleteMail);
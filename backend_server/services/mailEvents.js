@@ -0,0 +1,131 @@
+const crypto = require('crypto');
+const userModel = require('../models/userModel');
+
+/**
+ * Server-sent events for mailbox changes, so clients learn about new and changed mails without polling.
+ * Every saved mail is published to the users who can see it (the sender, and the receiver once it is
+ * sent) as a `mail` event carrying the mail as GET /api/mails/:id returns it.
+ *
+ * Event ids are "<bootId>-<seq>", seq counting up across all users. The last BUFFER_SIZE events of
+ * each user are kept, so a client reconnecting with Last-Event-ID gets what it missed replayed. When
+ * that is not possible (first connection, a gap older than the buffer, or a server restart, which
+ * changes bootId) it gets a `sync` event instead and catches up through GET /api/mails/changes.
+ * Events live in memory: with several server instances each client only hears its own instance.
+ */
+const BUFFER_SIZE = 200;
+const HEARTBEAT_MS = 25 * 1000; // under the idle timeouts of clients and proxies
+
+const bootId = crypto.randomBytes(4).toString('hex');
+let seq = 0;
+
+// user email -> { clients: Set<res>, events: [{ seq, name, data }] (oldest first) }
+const channels = new Map();
+
+function channelOf(email) {
+    let channel = channels.get(email);
+    if (!channel) {
+        channel = { clients: new Set(), events: [] };
+        channels.set(email, channel);
+    }
+    return channel;
+}
+
+function write(res, event) {
+    res.write(`id: ${bootId}-${event.seq}\nevent: ${event.name}\ndata: ${event.data}\n\n`);
+}
+
+function publish(email, name, payload) {
+    const event = { seq: ++seq, name, data: JSON.stringify(payload) };
+    const channel = channelOf(email);
+    channel.events.push(event);
+    if (channel.events.length > BUFFER_SIZE) {
+        channel.events.shift();
+    }
+    for (const res of channel.clients) {
+        write(res, event);
+    }
+}
+
+/**
+ * Publish a saved mail to everyone who can see it. Called from the mail model after every save.
+ * @param {Object} mail - Mongoose mail document, as saved.
+ * @returns {Promise<void>}
+ */
+async function mailChanged(mail) {
+    const recipients = new Set([mail.from]);
+    if (mail.send && mail.to) {
+        recipients.add(mail.to); // drafts are only the sender's
+    }
+    const payload = mail.toObject();
+    payload.id = payload._id;
+    const senderUser = await userModel.findByEmail(mail.from);
+    if (senderUser) {
+        payload.fromUser = {
+            fullName: senderUser.fullName,
+            email: senderUser.emailAddress,
+            profileImage: senderUser.profileImage || '/uploads/default-profile.png'
+        };
+    }
+    for (const email of recipients) {
+        publish(email, 'mail', payload);
+    }
+}
+
+/**
+ * Replays what the client missed, or tells it to sync when that is not possible.
+ * @param {Object} channel - The user's channel.
+ * @param {string} [lastEventId] - Last-Event-ID sent by the client.
+ * @returns {Array<Object>|null} The events to replay, or null when the client has to sync.
+ */
+function missedEvents(channel, lastEventId) {
+    if (!lastEventId) {
+        return null;
+    }
+    const [boot, seqPart] = String(lastEventId).split('-');
+    const lastSeq = parseInt(seqPart, 10);
+    if (boot !== bootId || Number.isNaN(lastSeq)) {
+        return null;
+    }
+    const missed = channel.events.filter(event => event.seq > lastSeq);
+    // the buffer must reach back to the first event after lastSeq; when nothing is buffered for this
+    // user, no event of theirs can have been dropped since it was sent (seq only grows)
+    const dropped = channel.events.length === BUFFER_SIZE && channel.events[0].seq > lastSeq + 1;
+    return dropped ? null : missed;
+}
+
+/**
+ * GET handler body: keeps the response open as an event stream for the user.
+ * @param {string} email - The user's email.
+ * @param {Object} req - Express request object.
+ * @param {Object} res - Express response object.
+ */
+function subscribe(email, req, res) {
+    res.status(200).set({
+        'Content-Type': 'text/event-stream',
+        // no-store: never written to an HTTP cache; no-transform keeps compression() from buffering it
+        'Cache-Control': 'no-store, no-transform',
+        'Connection': 'keep-alive',
+        'X-Accel-Buffering': 'no'
+    });
+    res.flushHeaders();
+
+    const channel = channelOf(email);
+    const missed = missedEvents(channel, req.headers['last-event-id']);
+    if (missed === null) {
+        write(res, { seq, name: 'sync', data: '{}' });
+    } else {
+        missed.forEach(event => write(res, event));
+    }
+    channel.clients.add(res);
+
+    const heartbeat = setInterval(() => res.write(': ping\n\n'), HEARTBEAT_MS);
+    req.on('close', () => {
+        clearInterval(heartbeat);
+        channel.clients.delete(res);
+    });
+}
+
+module.exports = {
+    mailChanged,
+    subscribe
+};
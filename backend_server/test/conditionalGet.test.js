@@ -0,0 +1,82 @@
+const { describe, it } = require('node:test');
+const assert = require('node:assert');
+const conditionalGet = require('../middlewares/conditionalGet');
+
+function request(userId, ifNoneMatch) {
+    return { userId, headers: ifNoneMatch ? { 'if-none-match': ifNoneMatch } : {} };
+}
+
+function response() {
+    const res = { statusCode: 200, headers: {}, ended: false };
+    res.set = (name, value) => { res.headers[name] = value; return res; };
+    res.status = (code) => { res.statusCode = code; return res; };
+    res.end = () => { res.ended = true; return res; };
+    return res;
+}
+
+/**
+ * Runs the middleware built around `versionOf`.
+ * @returns {Promise<{res: Object, next: boolean}>} whether the list handler would have run.
+ */
+async function run(versionOf, req) {
+    const res = response();
+    let next = false;
+    await conditionalGet(versionOf)(req, res, () => { next = true; });
+    return { res, next };
+}
+
+describe('conditionalGet middleware', () => {
+    it('tags the list with the user and version', async () => {
+        const { res, next } = await run(async () => 'v1', request('u1'));
+
+        assert.ok(next);
+        assert.strictEqual(res.headers.ETag, '"u1-v1"');
+        assert.strictEqual(res.headers['Cache-Control'], 'private, no-cache');
+    });
+
+    it('answers 304 without running the handler when the tag matches', async () => {
+        const { res, next } = await run(async () => 'v1', request('u1', '"u1-v1"'));
+
+        assert.strictEqual(next, false);
+        assert.strictEqual(res.statusCode, 304);
+        assert.ok(res.ended);
+    });
+
+    it('matches weak tags and tag lists', async () => {
+        const weak = await run(async () => 'v1', request('u1', 'W/"u1-v1"'));
+        const list = await run(async () => 'v1', request('u1', '"u1-v0", W/"u1-v1"'));
+
+        assert.strictEqual(weak.res.statusCode, 304);
+        assert.strictEqual(list.res.statusCode, 304);
+    });
+
+    it('sends the list when the version changed', async () => {
+        const { res, next } = await run(async () => 'v2', request('u1', '"u1-v1"'));
+
+        assert.ok(next);
+        assert.strictEqual(res.statusCode, 200);
+        assert.strictEqual(res.headers.ETag, '"u1-v2"');
+    });
+
+    it('never matches another user\'s tag', async () => {
+        const { next } = await run(async () => 'v1', request('u2', '"u1-v1"'));
+
+        assert.ok(next);
+    });
+
+    it('skips the check without a version', async () => {
+        const { res, next } = await run(async () => null, request('u1', '"u1-null"'));
+
+        assert.ok(next);
+        assert.strictEqual(res.headers.ETag, undefined);
+    });
+
+    it('falls back to a full response when the version cannot be computed', async (t) => {
+        t.mock.method(console, 'error', () => {});
+
+        const { res, next } = await run(async () => { throw new Error('db down'); }, request('u1', '"u1-v1"'));
+
+        assert.ok(next);
+        assert.strictEqual(res.headers.ETag, undefined);
+    });
+});
@@ -0,0 +1,122 @@
+const { describe, it } = require('node:test');
+const assert = require('node:assert');
+const { EventEmitter } = require('events');
+const idempotency = require('../middlewares/idempotency');
+
+let keys = 0;
+const newKey = () => `key-${++keys}`;
+
+function request(userId, key) {
+    return { userId, headers: key ? { 'idempotency-key': key } : {} };
+}
+
+// just enough of an Express response for the middleware and a handler
+function response() {
+    const res = new EventEmitter();
+    res.statusCode = 200;
+    res.headers = {};
+    res.status = (code) => { res.statusCode = code; return res; };
+    res.set = (name, value) => { res.headers[name] = value; return res; };
+    res.json = (body) => { res.body = body; res.emit('close'); return res; };
+    return res;
+}
+
+/**
+ * Runs the middleware with a handler that answers `status` and `body`.
+ * @returns {Promise<{res: Object, ran: boolean}>} once the response is sent.
+ */
+async function send(userId, key, status, body, handler) {
+    const req = request(userId, key);
+    const res = response();
+    let ran = false;
+    await idempotency(req, res, () => {
+        ran = true;
+        (handler || (() => res.status(status).json(body)))(req, res);
+    });
+    return { res, ran };
+}
+
+describe('idempotency middleware', () => {
+    it('passes requests without a key through untouched', async () => {
+        const first = await send('u1', null, 201, { id: 'm1' });
+        const second = await send('u1', null, 201, { id: 'm2' });
+
+        assert.ok(first.ran);
+        assert.ok(second.ran);
+        assert.deepStrictEqual(second.res.body, { id: 'm2' });
+    });
+
+    it('refuses keys that are too long', async () => {
+        const { res, ran } = await send('u1', 'k'.repeat(129), 201, {});
+
+        assert.strictEqual(ran, false);
+        assert.strictEqual(res.statusCode, 400);
+    });
+
+    it('replays the first response for a repeated key', async () => {
+        const key = newKey();
+        await send('u1', key, 201, { id: 'm1' });
+
+        const retry = await send('u1', key, 201, { id: 'm2' });
+
+        assert.strictEqual(retry.ran, false);
+        assert.strictEqual(retry.res.statusCode, 201);
+        assert.deepStrictEqual(retry.res.body, { id: 'm1' });
+        assert.strictEqual(retry.res.headers['Idempotent-Replayed'], 'true');
+    });
+
+    it('replays client errors too', async () => {
+        const key = newKey();
+        await send('u1', key, 404, { error: 'Draft not found' });
+
+        const retry = await send('u1', key, 201, { id: 'm1' });
+
+        assert.strictEqual(retry.ran, false);
+        assert.strictEqual(retry.res.statusCode, 404);
+    });
+
+    it('runs the handler again after a server error', async () => {
+        const key = newKey();
+        await send('u1', key, 500, { error: 'boom' });
+
+        const retry = await send('u1', key, 201, { id: 'm1' });
+
+        assert.ok(retry.ran);
+        assert.strictEqual(retry.res.statusCode, 201);
+        const again = await send('u1', key, 201, { id: 'm2' });
+        assert.deepStrictEqual(again.res.body, { id: 'm1' });
+    });
+
+    it('runs the handler again when the first response was never sent', async () => {
+        const key = newKey();
+        await send('u1', key, 0, null, (req, res) => res.emit('close'));
+
+        const retry = await send('u1', key, 201, { id: 'm1' });
+
+        assert.ok(retry.ran);
+    });
+
+    it('keeps keys apart per user', async () => {
+        const key = newKey();
+        await send('u1', key, 201, { id: 'm1' });
+
+        const other = await send('u2', key, 201, { id: 'm2' });
+
+        assert.ok(other.ran);
+        assert.deepStrictEqual(other.res.body, { id: 'm2' });
+    });
+
+    it('makes a concurrent repeat wait for the first attempt', async () => {
+        const key = newKey();
+        let answer;
+        const first = send('u1', key, 0, null, (req, res) => { answer = () => res.status(201).json({ id: 'm1' }); });
+        const retry = send('u1', key, 201, { id: 'm2' });
+
+        await new Promise(resolve => setImmediate(resolve));
+        answer();
+        const [, repeated] = await Promise.all([first, retry]);
+
+        assert.strictEqual(repeated.ran, false);
+        assert.deepStrictEqual(repeated.res.body, { id: 'm1' });
+    });
+});
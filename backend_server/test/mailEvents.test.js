@@ -0,0 +1,153 @@
+const { describe, it, after } = require('node:test');
+const assert = require('node:assert');
+const { EventEmitter } = require('events');
+
+// mailEvents only needs findByEmail from the user model; keep mongoose out of the tests
+const userModelPath = require.resolve('../models/userModel');
+require.cache[userModelPath] = {
+    id: userModelPath,
+    filename: userModelPath,
+    loaded: true,
+    exports: {
+        findByEmail: async (email) => ({ fullName: 'Ann', emailAddress: email })
+    }
+};
+const mailEvents = require('../services/mailEvents');
+
+const BUFFER_SIZE = 200;
+const open = [];
+
+function mail(id, from, to, send = true) {
+    return { from, to, send, toObject: () => ({ _id: id, from, to, send }) };
+}
+
+/**
+ * Opens an event stream for `email`, optionally resuming after `lastEventId`.
+ * @returns {{events: Function, close: Function}} events() parses what was written so far.
+ */
+function connect(email, lastEventId) {
+    const req = new EventEmitter();
+    req.headers = lastEventId ? { 'last-event-id': lastEventId } : {};
+    const res = { out: '', headers: {} };
+    res.status = () => res;
+    res.set = (headers) => { Object.assign(res.headers, headers); return res; };
+    res.flushHeaders = () => {};
+    res.write = (chunk) => { res.out += chunk; };
+    mailEvents.subscribe(email, req, res);
+    const client = {
+        events: () => res.out.split('\n\n').filter(Boolean).map(block => {
+            const fields = {};
+            for (const line of block.split('\n')) {
+                const colon = line.indexOf(': ');
+                fields[line.slice(0, colon)] = line.slice(colon + 2);
+            }
+            return fields;
+        }),
+        headers: res.headers,
+        close: () => req.emit('close')
+    };
+    open.push(client);
+    return client;
+}
+
+async function publish(count, from, to) {
+    for (let i = 0; i < count; i++) {
+        await mailEvents.mailChanged(mail(`m${i}`, from, to));
+    }
+}
+
+after(() => open.forEach(client => client.close())); // stops the heartbeats
+
+describe('mail events', () => {
+    it('asks a first connection to sync', () => {
+        const client = connect('first@smail.com');
+
+        const events = client.events();
+        assert.strictEqual(events.length, 1);
+        assert.strictEqual(events[0].event, 'sync');
+    });
+
+    it('keeps the stream out of HTTP caches', () => {
+        const client = connect('nocache@smail.com');
+
+        assert.strictEqual(client.headers['Content-Type'], 'text/event-stream');
+        assert.match(client.headers['Cache-Control'], /no-store/);
+    });
+
+    it('sends a sent mail to both ends and a draft to the sender only', async () => {
+        const sender = connect('s1@smail.com');
+        const receiver = connect('r1@smail.com');
+
+        await mailEvents.mailChanged(mail('m1', 's1@smail.com', 'r1@smail.com'));
+        await mailEvents.mailChanged(mail('d1', 's1@smail.com', 'r1@smail.com', false));
+
+        const sent = sender.events().filter(e => e.event === 'mail').map(e => JSON.parse(e.data).id);
+        const received = receiver.events().filter(e => e.event === 'mail').map(e => JSON.parse(e.data).id);
+        assert.deepStrictEqual(sent, ['m1', 'd1']);
+        assert.deepStrictEqual(received, ['m1']);
+        assert.strictEqual(JSON.parse(receiver.events()[1].data).fromUser.fullName, 'Ann');
+    });
+
+    it('replays what a reconnecting client missed', async () => {
+        const client = connect('r2@smail.com');
+        await publish(3, 's2@smail.com', 'r2@smail.com');
+        const [, first] = client.events();
+        client.close();
+        await publish(2, 's2@smail.com', 'r2@smail.com');
+
+        const resumed = connect('r2@smail.com', first.id).events();
+
+        assert.strictEqual(resumed.length, 4);
+        assert.ok(resumed.every(e => e.event === 'mail'));
+    });
+
+    it('stops writing to a closed stream', async () => {
+        const client = connect('r3@smail.com');
+        client.close();
+
+        await publish(1, 's3@smail.com', 'r3@smail.com');
+
+        assert.strictEqual(client.events().length, 1); // only the sync
+    });
+
+    it('replays nothing when nothing was published since', async () => {
+        const client = connect('r4@smail.com');
+        await publish(1, 's4@smail.com', 'r4@smail.com');
+        const last = client.events()[1];
+
+        const resumed = connect('r4@smail.com', last.id).events();
+
+        assert.deepStrictEqual(resumed, []);
+    });
+
+    it('asks for a sync after a server restart or a malformed id', () => {
+        assert.strictEqual(connect('r5@smail.com', 'deadbeef-1').events()[0].event, 'sync');
+        assert.strictEqual(connect('r5@smail.com', 'garbage').events()[0].event, 'sync');
+    });
+
+    it('replays a full buffer that still reaches back to the last event', async () => {
+        const client = connect('r6@smail.com');
+        await publish(1, 's6@smail.com', 'r6@smail.com');
+        const last = client.events()[1];
+        client.close();
+        await publish(BUFFER_SIZE - 1, 's6@smail.com', 'r6@smail.com');
+
+        const resumed = connect('r6@smail.com', last.id).events();
+
+        assert.strictEqual(resumed.length, BUFFER_SIZE - 1);
+        assert.ok(resumed.every(e => e.event === 'mail'));
+    });
+
+    it('asks for a sync when missed events fell out of the buffer', async () => {
+        const client = connect('r7@smail.com');
+        await publish(1, 's7@smail.com', 'r7@smail.com');
+        const last = client.events()[1];
+        client.close();
+        await publish(BUFFER_SIZE + 1, 's7@smail.com', 'r7@smail.com');
+
+        const resumed = connect('r7@smail.com', last.id).events();
+
+        assert.strictEqual(resumed.length, 1);
+        assert.strictEqual(resumed[0].event, 'sync');
+    });
+});